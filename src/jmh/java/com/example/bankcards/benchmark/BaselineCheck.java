@@ -0,0 +1,121 @@
+package com.example.bankcards.benchmark;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//сравнение JSON-результата JMH с сохранённой базой, запускается профилем jmh после бенчмарков.
+//аргументы: результат, база, допустимое ухудшение в процентах, true - записать результат как новую базу,
+//true - не ронять сборку, если базы ещё нет.
+//сравниваются только бенчмарки, которые есть в обоих файлах, остальные помечаются new или missing.
+//ухудшение считается регрессией, если оно больше порога и больше суммы погрешностей обоих замеров,
+//иначе шум одного прогона ронял бы сборку
+public class BaselineCheck {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: BaselineCheck <result.json> <baseline.json> <threshold %> [update] [optional]");
+            System.exit(2);
+        }
+        Path result = Path.of(args[0]);
+        Path baseline = Path.of(args[1]);
+        double thresholdPercent = Double.parseDouble(args[2]);
+        boolean update = args.length > 3 && Boolean.parseBoolean(args[3]);
+        boolean optional = args.length > 4 && Boolean.parseBoolean(args[4]);
+
+        if (!Files.exists(result)) {
+            System.err.println("No JMH result at " + result);
+            System.exit(2);
+        }
+        if (update) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(result, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline updated: " + baseline);
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            String message = "No baseline at " + baseline + ", record one with -Djmh.baseline.update=true";
+            if (optional) {
+                System.out.println(message);
+                return;
+            }
+            System.err.println(message + " or skip the check with -Djmh.baseline.optional=true");
+            System.exit(1);
+        }
+
+        List<String> regressions = compare(read(baseline), read(result), thresholdPercent);
+        if (!regressions.isEmpty()) {
+            System.err.printf("%d benchmark(s) regressed by more than %.1f%%:%n", regressions.size(), thresholdPercent);
+            regressions.forEach(line -> System.err.println("  " + line));
+            System.exit(1);
+        }
+    }
+
+    static List<String> compare(Map<String, Score> baseline, Map<String, Score> current, double thresholdPercent) {
+        List<String> regressions = new ArrayList<>();
+        System.out.printf("%n%-90s %14s %14s %-10s %9s%n", "benchmark", "baseline", "current", "unit", "change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score now = entry.getValue();
+            if (before == null || !before.unit().equals(now.unit())) {
+                System.out.printf("%-90s %14s %14.3f %-10s %9s%n", entry.getKey(), "-", now.score(), now.unit(), "new");
+                continue;
+            }
+            //worse > 0 - стало хуже: для пропускной способности меньше, для времени больше
+            double change = (now.score() - before.score()) / before.score() * 100;
+            double worse = now.higherIsBetter() ? -change : change;
+            boolean regressed = worse > thresholdPercent
+                    && Math.abs(now.score() - before.score()) > before.error() + now.error();
+            String line = String.format("%-90s %14.3f %14.3f %-10s %+8.1f%%%s", entry.getKey(), before.score(),
+                    now.score(), now.unit(), change, regressed ? "  REGRESSION" : "");
+            System.out.println(line);
+            if (regressed) {
+                regressions.add(line);
+            }
+        }
+        //есть в базе, но не в этом прогоне: бенчмарк удалён, переименован или не попал в jmh.args
+        for (Map.Entry<String, Score> entry : baseline.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                Score before = entry.getValue();
+                System.out.printf("%-90s %14.3f %14s %-10s %9s%n", entry.getKey(), before.score(), "-", before.unit(), "missing");
+            }
+        }
+        return regressions;
+    }
+
+    static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : JSON.readTree(Files.readString(file))) {
+            JsonNode metric = run.get("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0);
+            String mode = run.get("mode").asString();
+            scores.put(key(run), new Score(metric.get("score").asDouble(), Double.isNaN(error) ? 0 : error,
+                    metric.get("scoreUnit").asString(), mode.equals("thrpt")));
+        }
+        return scores;
+    }
+
+    //имя, режим, число потоков и параметры: один и тот же бенчмарк с разными @Param сравнивается отдельно
+    private static String key(JsonNode run) {
+        Map<String, String> params = new TreeMap<>();
+        JsonNode node = run.path("params");
+        for (String name : node.propertyNames()) {
+            params.put(name, node.get(name).asString());
+        }
+        return run.get("benchmark").asString() + " " + run.get("mode").asString()
+                + " t=" + run.path("threads").asInt(1) + (params.isEmpty() ? "" : " " + params);
+    }
+
+    record Score(double score, double error, String unit, boolean higherIsBetter) {}
+}
@@ -0,0 +1,88 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSliceResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.StatusCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.SliceImpl;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//ответ списка карт: Card -> CardResponse и запись страницы в JSON тем же Jackson 3, что у Spring MVC.
+//страница Page (GET /api/cards) против keyset-среза (GET /api/cards/cursor)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CardMappingBenchmark {
+
+    @Param({"20"})
+    private int pageSize;
+
+    private JsonMapper jsonMapper;
+    private Card card;
+    private List<Card> cards;
+    private Page<CardResponse> page;
+    private CardSliceResponse slice;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+        UUID ownerId = UUID.randomUUID();
+        cards = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            cards.add(new Card(UUID.randomUUID(), ownerId, new byte[]{}, UUID.randomUUID().toString(),
+                    String.format("%04d", i), (short) 12, (short) 2030, StatusCard.ACTIVE,
+                    new BigDecimal("12345.67")));
+        }
+        card = cards.get(0);
+        List<CardResponse> content = cards.stream().map(CardResponse::from).toList();
+        PageRequest pageable = PageRequest.of(3, pageSize, Sort.by("id"));
+        page = new PageImpl<>(content, pageable, 1_000);
+        slice = CardSliceResponse.from(new SliceImpl<>(content, pageable, true), StatusCard.ACTIVE);
+    }
+
+    @Benchmark
+    public CardResponse fromCard() {
+        return CardResponse.from(card);
+    }
+
+    //прежний маппинг страницы Page<Card>.map(CardResponse::from); списки теперь читаются проекцией сразу в CardResponse,
+    //через from проходят только ответы на создание и изменение карты
+    @Benchmark
+    public Page<CardResponse> mapPage() {
+        return new PageImpl<>(cards, page.getPageable(), page.getTotalElements()).map(CardResponse::from);
+    }
+
+    @Benchmark
+    public byte[] serializePage() {
+        return jsonMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serializeSlice() {
+        return jsonMapper.writeValueAsBytes(slice);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.PanCryptoServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//пропускная способность и аллокации шифрования/хэширования PAN; legacy* - прежняя реализация для сравнения.
+//масштабирование по ядрам и аллокации на операцию:
+//mvn -Pjmh -DskipTests test -Djmh.args="PanCryptoBenchmark -prof gc -t 1"  и затем с -t <число ядер>
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PanCryptoBenchmark {
+
+    private static final String KEY = "4NChuYrFKlRukuC57BOLpl6SaAk0gzs64+vAgdRALIE=";
+    private static final String PEPPER = "pepper";
+    private static final int BATCH = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class Crypto {
+        private PanCryptoServiceImpl service;
+        private SecretKey legacyKey;
+        private SecureRandom legacyRandom;
+
+        @Setup
+        public void setUp() {
+            service = new PanCryptoServiceImpl(KEY, PEPPER);
+            legacyKey = new SecretKeySpec(Base64.getDecoder().decode(KEY), "AES");
+            legacyRandom = new SecureRandom();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pans {
+        private String pan;
+        private char[] panChars;
+        private List<char[]> batch;
+
+        @Setup
+        public void setUp() {
+            pan = "4000001234567899";
+            panChars = pan.toCharArray();
+            batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                batch.add(String.format("4000%012d", i).toCharArray());
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] encrypt(Crypto crypto, Pans pans) {
+        return crypto.service.encrypt(pans.panChars);
+    }
+
+    @Benchmark
+    public String hash(Crypto crypto, Pans pans) {
+        return crypto.service.hash(pans.panChars);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<byte[]> encryptAll(Crypto crypto, Pans pans) {
+        return crypto.service.encryptAll(pans.batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<String> hashAll(Crypto crypto, Pans pans) {
+        return crypto.service.hashAll(pans.batch);
+    }
+
+    @Benchmark
+    public byte[] legacyEncrypt(Crypto crypto, Pans pans) throws Exception {
+        byte[] iv = new byte[12];
+        crypto.legacyRandom.nextBytes(iv);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, crypto.legacyKey, new GCMParameterSpec(128, iv));
+
+        byte[] ciphertext = cipher.doFinal(pans.pan.getBytes(StandardCharsets.UTF_8));
+
+        return ByteBuffer.allocate(iv.length + ciphertext.length)
+                .put(iv)
+                .put(ciphertext)
+                .array();
+    }
+
+    @Benchmark
+    public String legacyHash(Pans pans) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest((pans.pan + PEPPER).getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+}
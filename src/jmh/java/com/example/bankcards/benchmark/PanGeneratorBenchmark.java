@@ -0,0 +1,36 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.PanGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//генерация номера для пула PAN: SecureRandom на каждую цифру и контрольная цифра Луна
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PanGeneratorBenchmark {
+
+    @Param({"400000"})
+    private String bin;
+
+    @Param({"16"})
+    private int length;
+
+    @Benchmark
+    public char[] generate() {
+        return PanGenerator.generate(bin, length);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.service.CardStripedSequencer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+//пропускная способность переводов с CardStripedSequencer и без него при Zipfian-нагрузке на карты.
+//пул соединений - семафор, блокировки строк - ReentrantLock по порядку карт, запрос к БД - ожидание.
+//в unit-тесте проверяется только детерминированное: с sequencer соединения не ждут row lock;
+//сравнение скорости - здесь, под базой jmh-baseline.json
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SequencerContentionBenchmark {
+
+    @Param({"OFF", "ON"})
+    private String sequencer;
+
+    @Param({"200"})
+    private int cards;
+
+    @Param({"8"})
+    private int connections;
+
+    @Param({"200"})
+    private long queryMicros;
+
+    private CardStripedSequencer cardSequencer;
+    private UUID[] cardIds;
+    private ReentrantLock[] rowLocks;
+    private double[] zipf;
+    private Semaphore pool;
+
+    @Setup
+    public void setUp() {
+        cardSequencer = new CardStripedSequencer(sequencer.equals("ON"), 1024, 60_000, 16, new SimpleMeterRegistry());
+        cardIds = new UUID[cards];
+        rowLocks = new ReentrantLock[cards];
+        for (int i = 0; i < cards; i++) {
+            cardIds[i] = UUID.randomUUID();
+            rowLocks[i] = new ReentrantLock();
+        }
+        zipf = zipfCdf(cards, 1.1);
+        pool = new Semaphore(connections, true);
+    }
+
+    @Benchmark
+    public int transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = pick(random);
+        int to = pick(random);
+        while (to == from) {
+            to = pick(random);
+        }
+        int first = Math.min(from, to);
+        int second = Math.max(from, to);
+        return cardSequencer.execute(List.of(cardIds[from], cardIds[to]), () -> {
+            pool.acquireUninterruptibly();
+            try {
+                rowLocks[first].lock();
+                rowLocks[second].lock();
+                try {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(queryMicros));
+                } finally {
+                    rowLocks[second].unlock();
+                    rowLocks[first].unlock();
+                }
+            } finally {
+                pool.release();
+            }
+            return first;
+        });
+    }
+
+    private int pick(ThreadLocalRandom random) {
+        int index = Arrays.binarySearch(zipf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, zipf.length - 1);
+    }
+
+    private static double[] zipfCdf(int n, double s) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1.0 / Math.pow(k, s);
+            cdf[k - 1] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.config.JwtService;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.service.RefreshTokenService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//стоимость выдачи токенов на один запрос: вход по паролю против /auth/refresh.
+//обращения к БД не входят ни в один из путей, сравнивается только CPU
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TokenIssuanceBenchmark {
+
+    private static final String SECRET = "isPxGPpM9eGfCqJd2uM6jL+cuXOqe96uaPU0ZU8w2v4=";
+    private static final String PASSWORD = "user-password";
+    private static final List<Role> ROLES = List.of(Role.USER);
+
+    @Param({"12"})
+    private int bcryptStrength;
+
+    private BCryptPasswordEncoder passwordEncoder;
+    private String passwordHash;
+    private JwtService jwtService;
+    private SecureRandom random;
+    private UUID userId;
+    private String presentedRefreshToken;
+
+    @Setup
+    public void setUp() {
+        passwordEncoder = new BCryptPasswordEncoder(bcryptStrength);
+        passwordHash = passwordEncoder.encode(PASSWORD);
+        jwtService = new JwtService(SECRET, 3_600_000);
+        random = new SecureRandom();
+        userId = UUID.randomUUID();
+        presentedRefreshToken = newRefreshToken();
+    }
+
+    //POST /auth/login: проверка пароля, access токен и новый refresh токен
+    @Benchmark
+    public void login(Blackhole bh) {
+        bh.consume(passwordEncoder.matches(PASSWORD, passwordHash));
+        bh.consume(jwtService.generateToken(userId, "alice", ROLES));
+        issueRefreshToken(bh);
+    }
+
+    //POST /auth/refresh: поиск по хэшу предъявленного токена, access токен и следующий refresh токен
+    @Benchmark
+    public void refresh(Blackhole bh) {
+        bh.consume(RefreshTokenService.hash(presentedRefreshToken));
+        bh.consume(jwtService.generateToken(userId, "alice", ROLES));
+        issueRefreshToken(bh);
+    }
+
+    //access токен с заранее собранным ключом подписи
+    @Benchmark
+    public String accessTokenPrebuiltKey() {
+        return jwtService.generateToken(userId, "alice", ROLES);
+    }
+
+    //прежний вариант: ключ собирается из байтов secret на каждый токен.
+    //устаревший signWith(SignatureAlgorithm, byte[]) оставлен намеренно - это и есть сравниваемый путь
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public String accessTokenKeyPerCall() {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject("alice")
+                .claim("userId", userId.toString())
+                .claim("roles", List.of("USER"))
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + 3_600_000))
+                .signWith(SignatureAlgorithm.HS256, SECRET.getBytes(StandardCharsets.UTF_8))
+                .compact();
+    }
+
+    private void issueRefreshToken(Blackhole bh) {
+        String token = newRefreshToken();
+        bh.consume(token);
+        bh.consume(RefreshTokenService.hash(token));
+    }
+
+    private String newRefreshToken() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.config.ReadYourWrites;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.repository.CardBalanceSnapshotRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import com.example.bankcards.service.CardStripedSequencer;
+import com.example.bankcards.service.CardViewCache;
+import com.example.bankcards.service.LockingTransactionExecutor;
+import com.example.bankcards.service.TransferLedger;
+import com.example.bankcards.service.TransferMode;
+import com.example.bankcards.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+//TransferService.transfer в режиме JPA без БД: репозитории заменены картами в памяти, транзакция - пустая.
+//остаются проверки, порядок блокировок, sequencer, перенос денег, сброс кэша и записи журнала,
+//то есть CPU-часть перевода, которая добавляется к времени запросов
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransferBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    private TransferService transferService;
+    private UUID ownerId;
+    private TransferRequest forward;
+    private TransferRequest backward;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        ownerId = UUID.randomUUID();
+        Card first = card(ownerId);
+        Card second = card(ownerId);
+        Map<UUID, Card> cards = new ConcurrentHashMap<>(Map.of(first.getId(), first, second.getId(), second));
+
+        //из CardRepository для JPA-перевода нужны только выборка с блокировкой и save
+        CardRepository cardRepository = standIn(CardRepository.class, (method, args) -> switch (method) {
+            case "findForUpdateByIdAndOwnerId" -> Optional.ofNullable(cards.get((UUID) args[0]))
+                    .filter(card -> card.getOwnerId().equals(args[1]));
+            case "save" -> args[0];
+            default -> throw new UnsupportedOperationException(method);
+        });
+        LedgerEntryRepository ledgerEntryRepository = standIn(LedgerEntryRepository.class, (method, args) -> {
+            if (method.equals("saveAll")) {
+                return args[0];
+            }
+            throw new UnsupportedOperationException(method);
+        });
+        CardBalanceSnapshotRepository snapshotRepository = standIn(CardBalanceSnapshotRepository.class,
+                (method, args) -> {
+                    throw new UnsupportedOperationException(method);
+                });
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Clock clock = Clock.systemUTC();
+        transferService = new TransferService(cardRepository,
+                new LockingTransactionExecutor(new NoOpTransactionManager(), meterRegistry, 3, 0, 0),
+                new CardStripedSequencer(true, 1024, 5_000, 16, meterRegistry),
+                new TransferLedger(ledgerEntryRepository, snapshotRepository, cardRepository, clock),
+                new CardViewCache(meterRegistry, 10_000, 60_000),
+                new ReadYourWrites("", 0, 0),
+                meterRegistry, TransferMode.JPA, clock);
+
+        forward = new TransferRequest(first.getId(), second.getId(), AMOUNT);
+        backward = new TransferRequest(second.getId(), first.getId(), AMOUNT);
+    }
+
+    //туда и обратно по очереди, чтобы баланс не кончался
+    @Benchmark
+    public UUID transfer() {
+        flip = !flip;
+        return transferService.transfer(ownerId, flip ? forward : backward, transferId -> true);
+    }
+
+    private static Card card(UUID ownerId) {
+        return new Card(UUID.randomUUID(), ownerId, new byte[]{}, UUID.randomUUID().toString(), "1234",
+                (short) 12, (short) 2099, StatusCard.ACTIVE, new BigDecimal("1000000.00"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T standIn(Class<T> repository, RepositoryMethod body) {
+        return (T) Proxy.newProxyInstance(repository.getClassLoader(), new Class<?>[]{repository},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> repository.getSimpleName() + " stand-in";
+                    default -> body.invoke(method.getName(), args);
+                });
+    }
+
+    @FunctionalInterface
+    private interface RepositoryMethod {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.config.ConnectionLimitingDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+//пачка запросов на пуле из 200 платформенных потоков (как у Tomcat по умолчанию) против потока на запрос.
+//запрос сначала ждёт вне БД (проверка пароля в очереди BCrypt, внешний вызов), затем берёт соединение
+//через ConnectionLimitingDataSource; доля запросов - переводы, которые ждут блокировку одной из немногих
+//горячих карт, держа соединение. БД заменена ожиданием, сравнивается только планирование потоков.
+//время - на всю пачку; перцентили задержки одного запроса печатаются после прогона
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VirtualThreadContentionBenchmark {
+
+    private static final int REQUESTS = 2_000;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private String threads;
+
+    @Param({"200"})
+    private int platformThreads;
+
+    @Param({"20"})
+    private int connections;
+
+    @Param({"4"})
+    private int hotCards;
+
+    @Param({"20"})
+    private int transferPercent;
+
+    @Param({"2000", "10000"})
+    private long waitOutsideDbMicros;
+
+    @Param({"200"})
+    private long queryMicros;
+
+    private ExecutorService executor;
+    private ConnectionLimitingDataSource dataSource;
+    private ReentrantLock[] rowLocks;
+    private long[] latencies;
+    private int recorded;
+
+    @Setup
+    public void setUp() {
+        executor = threads.equals("VIRTUAL")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+        dataSource = new ConnectionLimitingDataSource(new StubDataSource(), "bench", connections, 60_000,
+                new SimpleMeterRegistry());
+        rowLocks = new ReentrantLock[hotCards];
+        for (int i = 0; i < hotCards; i++) {
+            rowLocks[i] = new ReentrantLock();
+        }
+        latencies = new long[REQUESTS * 64];
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        long[] samples = Arrays.copyOf(latencies, Math.min(recorded, latencies.length));
+        Arrays.sort(samples);
+        System.out.printf("%n%s threads, %d requests: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                threads, samples.length, percentile(samples, 0.50), percentile(samples, 0.99),
+                percentile(samples, 0.999), percentile(samples, 1.0));
+    }
+
+    @Benchmark
+    public int burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        AtomicInteger failed = new AtomicInteger();
+        long[] burst = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            int request = i;
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    handle(request);
+                } catch (SQLException e) {
+                    failed.incrementAndGet();
+                } finally {
+                    burst[request] = System.nanoTime() - submitted;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        record(burst);
+        return failed.get();
+    }
+
+    private void handle(int request) throws SQLException {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(waitOutsideDbMicros));
+        try (Connection ignored = dataSource.getConnection()) {
+            if (request % 100 < transferPercent) {
+                //SELECT ... FOR UPDATE по горячей карте: ожидание блокировки строки идёт с занятым соединением
+                ReentrantLock row = rowLocks[ThreadLocalRandom.current().nextInt(hotCards)];
+                row.lock();
+                try {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(queryMicros));
+                } finally {
+                    row.unlock();
+                }
+            } else {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(queryMicros));
+            }
+        }
+    }
+
+    private void record(long[] burst) {
+        for (long latency : burst) {
+            latencies[recorded++ % latencies.length] = latency;
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    //соединение без БД: закрытие и любые вызовы ничего не делают
+    private static class StubDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> null);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//на виртуальных потоках число одновременных запросов больше не ограничено пулом потоков Tomcat.
+//соединения выдаются по честному семафору с числом разрешений по размеру пула: ожидающий поток паркуется
+//на семафоре в порядке очереди, не занимая носитель, а пул получает не больше запросов, чем у него соединений.
+//разрешение возвращается при закрытии соединения
+public class ConnectionLimitingDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final long waitTimeoutMs;
+
+    public ConnectionLimitingDataSource(DataSource target, String name, int maxConnections, long waitTimeoutMs,
+                                        MeterRegistry meterRegistry) {
+        super(target);
+        this.permits = new Semaphore(maxConnections, true);
+        this.waitTimeoutMs = waitTimeoutMs;
+        Gauge.builder("bankcards.datasource.permits.available", permits, Semaphore::availablePermits)
+                .tag("pool", name)
+                .register(meterRegistry);
+        Gauge.builder("bankcards.datasource.permits.waiting", permits, Semaphore::getQueueLength)
+                .tag("pool", name)
+                .register(meterRegistry);
+    }
+
+    //разрешений столько же, сколько соединений в пуле Hikari
+    public static ConnectionLimitingDataSource forPool(HikariDataSource pool, long waitTimeoutMs,
+                                                       MeterRegistry meterRegistry) {
+        return new ConnectionLimitingDataSource(pool, pool.getPoolName(), pool.getMaximumPoolSize(), waitTimeoutMs,
+                meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return limited(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return limited(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(waitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "No database connection available within " + waitTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    //повторный close не возвращает разрешение второй раз
+    private Connection limited(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "close":
+                            if (released.compareAndSet(false, true)) {
+                                try {
+                                    connection.close();
+                                } finally {
+                                    permits.release();
+                                }
+                                return null;
+                            }
+                            break;
+                        default:
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+//сколько сессий этой базы сейчас ждут блокировку и сколько ждёт самая старая из них.
+//pg_stat_activity опрашивается по расписанию, а не при каждом сборе метрик, поэтому частый scrape не нагружает БД.
+//если опрос не удался, gauge показывают NaN, а не последнее значение
+@Component
+public class DatabaseLockMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseLockMetrics.class);
+
+    private static final String LOCK_WAITERS = """
+            SELECT count(*) AS waiting,
+                   COALESCE(EXTRACT(EPOCH FROM max(clock_timestamp() - query_start)), 0) AS oldest
+            FROM pg_stat_activity
+            WHERE wait_event_type = 'Lock' AND datname = current_database()
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile double waiting = Double.NaN;
+    private volatile double oldestSeconds = Double.NaN;
+
+    public DatabaseLockMetrics(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("bankcards.db.lock.waiting", this, metrics -> metrics.waiting)
+                .description("Database sessions currently waiting for a lock")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.db.lock.wait.oldest", this, metrics -> metrics.oldestSeconds)
+                .description("How long the oldest lock-waiting query has been running")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${card.metrics.lock-poll-interval-ms:10000}")
+    public void poll() {
+        try {
+            Map<String, Object> row = jdbcTemplate.queryForMap(LOCK_WAITERS);
+            waiting = ((Number) row.get("waiting")).doubleValue();
+            oldestSeconds = ((Number) row.get("oldest")).doubleValue();
+        } catch (DataAccessException e) {
+            log.debug("Lock wait poll failed: {}", e.getMessage());
+            waiting = Double.NaN;
+            oldestSeconds = Double.NaN;
+        }
+    }
+}
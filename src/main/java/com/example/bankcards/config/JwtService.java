@@ -3,9 +3,11 @@ package com.example.bankcards.config;
 import com.example.bankcards.entity.enums.Role;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
@@ -14,14 +16,19 @@ import java.util.UUID;
 @Service
 public class JwtService {
 
-    @Value("${spring.security.jwt.secret}")
-    private String secret;
+    //ключ подписи собирается один раз, а не из строки secret на каждый токен
+    private final SecretKey signingKey;
+    private final long expirationMs;
 
-    private static final long EXPIRATION_MS = 60 * 60 * 1000;
+    public JwtService(@Value("${spring.security.jwt.secret}") String secret,
+                      @Value("${card.security.jwt.access-ttl-ms:3600000}") long expirationMs) {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.expirationMs = expirationMs;
+    }
 
     public String generateToken(UUID userId, String username, List<Role> roles) {
         Date now = new Date();
-        Date exp = new Date(now.getTime() + EXPIRATION_MS);
+        Date exp = new Date(now.getTime() + expirationMs);
 
         List<String> roleNames = roles.stream()
                 .map(Role::name)
@@ -33,7 +40,7 @@ public class JwtService {
                 .claim("roles", roleNames)
                 .setIssuedAt(now)
                 .setExpiration(exp)
-                .signWith(SignatureAlgorithm.HS256, secret.getBytes(StandardCharsets.UTF_8))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.example.bankcards.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+//чтение своих записей при работе с репликами: в течение окна после записи владельца
+//его чтения идут на primary, а не на реплику, которая могла ещё не получить изменения.
+//без реплик окно не ведётся и read просто выполняет действие
+@Component
+public class ReadYourWrites {
+
+    //счётчик, а не флаг: onPrimary может быть вложенным
+    private static final ThreadLocal<int[]> PRIMARY = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final Cache<UUID, Boolean> recentWriters;
+
+    public ReadYourWrites(@Value("${card.datasource.replica.urls:}") String replicaUrls,
+                          @Value("${card.datasource.replica.read-your-writes-ms:5000}") long windowMs,
+                          @Value("${card.datasource.replica.read-your-writes-max-size:100000}") long maxSize) {
+        this.recentWriters = replicaUrls.isBlank() || windowMs <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(windowMs))
+                .build();
+    }
+
+    public void recordWrite(UUID ownerId) {
+        if (recentWriters != null) {
+            recentWriters.put(ownerId, Boolean.TRUE);
+        }
+    }
+
+    //вызывается внутри readOnly-транзакции до первого запроса: соединение берётся лениво, при первом запросе
+    public <T> T read(UUID ownerId, Supplier<T> action) {
+        if (recentWriters != null && recentWriters.getIfPresent(ownerId) != null) {
+            return onPrimary(action);
+        }
+        return action.get();
+    }
+
+    public static <T> T onPrimary(Supplier<T> action) {
+        int[] depth = PRIMARY.get();
+        depth[0]++;
+        try {
+            return action.get();
+        } finally {
+            if (--depth[0] == 0) {
+                PRIMARY.remove();
+            }
+        }
+    }
+
+    static boolean isPrimaryRequired() {
+        return PRIMARY.get()[0] > 0;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+//включается непустым card.datasource.replica.urls. readOnly-транзакции получают соединение реплики:
+//LazyConnectionDataSourceProxy берёт настоящее соединение при первом запросе, когда флаг readOnly
+//транзакции уже выставлен. open-in-view выключен, иначе соединение первой транзакции держалось бы весь запрос
+@Configuration
+@ConditionalOnExpression("!'${card.datasource.replica.urls:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    //с виртуальными потоками у каждого пула свой семафор, см. ConnectionLimitingDataSource
+    @Bean
+    public DataSource primaryConnections(HikariDataSource primaryDataSource,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                         @Value("${card.datasource.connection-wait-ms:30000}") long waitMs) {
+        return virtualThreads
+                ? ConnectionLimitingDataSource.forPool(primaryDataSource, waitMs, meterRegistry)
+                : primaryDataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            @Qualifier("primaryConnections") DataSource primaryConnections,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${card.datasource.connection-wait-ms:30000}") long waitMs,
+            @Value("${card.datasource.replica.urls}") String urls,
+            @Value("${card.datasource.replica.username:}") String username,
+            @Value("${card.datasource.replica.password:}") String password,
+            @Value("${card.datasource.replica.pool-size:10}") int poolSize,
+            @Value("${card.datasource.replica.strategy:ROUND_ROBIN}") ReplicaRoutingDataSource.Strategy strategy,
+            @Value("${card.datasource.replica.max-lag-ms:5000}") long maxLagMs) {
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        int index = 0;
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + index++);
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username.isBlank() ? properties.determineUsername() : username);
+            replica.setPassword(password.isBlank() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            //реплика может быть недоступна при старте, приложение всё равно поднимается на primary
+            replica.setInitializationFailTimeout(-1);
+            //пулы реплик не бины, поэтому hikaricp-метрики для них подключаются здесь
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            DataSource connections = virtualThreads
+                    ? ConnectionLimitingDataSource.forPool(replica, waitMs, meterRegistry)
+                    : replica;
+            replicas.add(new ReplicaRoutingDataSource.Replica(replica.getPoolName(), connections, () -> {
+                HikariPoolMXBean pool = replica.getHikariPoolMXBean();
+                return pool == null ? 0 : pool.getActiveConnections();
+            }));
+        }
+        return new ReplicaRoutingDataSource(primaryConnections, replicas, strategy, maxLagMs, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryConnections") DataSource primaryConnections,
+                                 ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryConnections);
+        proxy.setReadOnlyDataSource(replicaRoutingDataSource);
+        return proxy;
+    }
+}
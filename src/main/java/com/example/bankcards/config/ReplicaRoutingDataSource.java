@@ -0,0 +1,204 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+//источник соединений для readOnly-транзакций: одна из здоровых реплик по round-robin или по наименьшему
+//числу занятых соединений. реплика выбывает, если не отвечает или отстаёт больше maxLagMs, и возвращается
+//после успешной проверки; если здоровых реплик нет, соединение берётся у primary
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    //на idle primary время последней транзакции стареет, поэтому совпадение LSN считается нулевым отставанием
+    static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END
+            """;
+
+    public enum Strategy {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Strategy strategy;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter fallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, Strategy strategy, long maxLagMs,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.strategy = strategy;
+        this.maxLagMs = maxLagMs;
+        this.fallbacks = Counter.builder("bankcards.datasource.replica.fallbacks")
+                .description("Read-only connections served by the primary because no replica was usable")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.datasource.replicas.healthy", this,
+                        source -> source.replicas.stream().filter(replica -> replica.healthy).count())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    //реплика выбывает только при ошибке подключения. занятый пул (таймаут Hikari или семафора)
+    //означает нагрузку, а не отказ: берётся следующая реплика, а эта остаётся в ротации.
+    //реплика, не умеющая отдавать соединение под другим пользователем, тоже не считается упавшей
+    private Connection route(ConnectionOpener opener) throws SQLException {
+        if (ReadYourWrites.isPrimaryRequired()) {
+            return opener.open(primary);
+        }
+        for (Replica replica : candidates()) {
+            try {
+                return opener.open(replica.dataSource);
+            } catch (SQLFeatureNotSupportedException e) {
+                throw e;
+            } catch (SQLException e) {
+                if (isConnectFailure(e)) {
+                    markDown(replica, e.getMessage());
+                } else {
+                    log.debug("Replica {} is busy, trying the next one: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+        fallbacks.increment();
+        return opener.open(primary);
+    }
+
+    //SQLState класса 08 - ошибка соединения. Hikari при таймауте выдачи переносит в исключение SQLState
+    //последней неудачной попытки подключения, поэтому недоступная реплика тоже распознаётся здесь
+    static boolean isConnectFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //проверка доступности и отставания
+    @Scheduled(fixedDelayString = "${card.datasource.replica.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                rs.next();
+                long lagMs = rs.getLong(1);
+                if (lagMs > maxLagMs) {
+                    markDown(replica, "lag " + lagMs + " ms");
+                } else if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("Replica {} is back, lag {} ms", replica.name, lagMs);
+                }
+            } catch (SQLException e) {
+                markDown(replica, e.getMessage());
+            }
+        }
+    }
+
+    //пулы реплик не бины, закрываются вместе с этим источником
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            DataSource pool = replica.dataSource instanceof DelegatingDataSource limited
+                    ? limited.getTargetDataSource()
+                    : replica.dataSource;
+            if (pool instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    List<Replica> candidates() {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy.add(replica);
+            }
+        }
+        if (healthy.size() < 2) {
+            return healthy;
+        }
+        if (strategy == Strategy.LEAST_LOADED) {
+            healthy.sort(Comparator.comparingInt(replica -> replica.activeConnections.getAsInt()));
+            return healthy;
+        }
+        //начало обхода сдвигается на каждый вызов, остальные реплики - запасные на случай отказа
+        int start = Math.floorMod(next.getAndIncrement(), healthy.size());
+        List<Replica> ordered = new ArrayList<>(healthy.size());
+        for (int i = 0; i < healthy.size(); i++) {
+            ordered.add(healthy.get((start + i) % healthy.size()));
+        }
+        return ordered;
+    }
+
+    private void markDown(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Replica {} is excluded from reads: {}", replica.name, reason);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final IntSupplier activeConnections;
+        private volatile boolean healthy = true;
+
+        public Replica(String name, DataSource dataSource, IntSupplier activeConnections) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.activeConnections = activeConnections;
+        }
+
+        String name() {
+            return name;
+        }
+
+        boolean healthy() {
+            return healthy;
+        }
+    }
+}
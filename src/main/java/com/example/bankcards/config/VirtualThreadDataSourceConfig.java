@@ -0,0 +1,39 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+//spring.threads.virtual.enabled без реплик: пул primary закрыт семафором по своему размеру.
+//с репликами то же делает ReplicaDataSourceConfig для каждого пула
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnExpression("'${card.datasource.replica.urls:}'.isBlank()")
+public class VirtualThreadDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${card.datasource.connection-wait-ms:30000}") long waitMs) {
+        return ConnectionLimitingDataSource.forPool(primaryDataSource, waitMs, meterRegistry);
+    }
+}
@@ -2,11 +2,24 @@ package com.example.bankcards.controller.advice;
 
 
 import com.example.bankcards.exception.CardAlreadyExistsException;
+import com.example.bankcards.exception.CardExpiredException;
 import com.example.bankcards.exception.CardNotActiveException;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.IdempotencyKeyInProgressException;
+import com.example.bankcards.exception.IdempotencyKeyReusedException;
 import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.exception.InvalidIdempotencyKeyException;
+import com.example.bankcards.exception.InvalidRefreshTokenException;
 import com.example.bankcards.exception.InvalidTransferAmountException;
 import com.example.bankcards.exception.InvalidTransferToSameCardException;
+import com.example.bankcards.exception.IssuanceJobNotFoundException;
+import com.example.bankcards.exception.IssuanceJobNotResumableException;
+import com.example.bankcards.exception.IssuanceQueueFullException;
+import com.example.bankcards.exception.IssuanceTooLargeException;
+import com.example.bankcards.exception.LoginThrottledException;
+import com.example.bankcards.exception.TransferLockTimeoutException;
+import com.example.bankcards.exception.UnknownCardOwnerException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -33,6 +46,14 @@ public class RestExceptionHandler {
         return new ResponseEntity<>(response, status);
     }
 
+    @ExceptionHandler(CardExpiredException.class)
+    public ResponseEntity<ExceptionResponse> handleExpiredException(CardExpiredException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.CONFLICT;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
     @ExceptionHandler(CardNotFoundException.class)
     public ResponseEntity<ExceptionResponse> handleNotFoundException(CardNotFoundException ex) {
         String ms = LocalDateTime.now() + " " + ex.getMessage();
@@ -64,4 +85,100 @@ public class RestExceptionHandler {
         ExceptionResponse response = new ExceptionResponse(ms, status.value());
         return new ResponseEntity<>(response, status);
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(TransferLockTimeoutException.class)
+    public ResponseEntity<ExceptionResponse> handleTransferLockTimeoutException(TransferLockTimeoutException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<ExceptionResponse> handleInvalidIdempotencyKeyException(InvalidIdempotencyKeyException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.BAD_REQUEST;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<ExceptionResponse> handleIdempotencyKeyInProgressException(IdempotencyKeyInProgressException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.CONFLICT;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ExceptionResponse> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.UNPROCESSABLE_CONTENT;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ExceptionResponse> handleInvalidCursorException(InvalidCursorException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.BAD_REQUEST;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<ExceptionResponse> handleLoginThrottledException(LoginThrottledException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<ExceptionResponse> handleInvalidRefreshTokenException(InvalidRefreshTokenException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.UNAUTHORIZED;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(IssuanceJobNotFoundException.class)
+    public ResponseEntity<ExceptionResponse> handleIssuanceJobNotFoundException(IssuanceJobNotFoundException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.NOT_FOUND;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(IssuanceTooLargeException.class)
+    public ResponseEntity<ExceptionResponse> handleIssuanceTooLargeException(IssuanceTooLargeException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.BAD_REQUEST;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(UnknownCardOwnerException.class)
+    public ResponseEntity<ExceptionResponse> handleUnknownCardOwnerException(UnknownCardOwnerException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.BAD_REQUEST;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(IssuanceJobNotResumableException.class)
+    public ResponseEntity<ExceptionResponse> handleIssuanceJobNotResumableException(IssuanceJobNotResumableException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.CONFLICT;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+
+    @ExceptionHandler(IssuanceQueueFullException.class)
+    public ResponseEntity<ExceptionResponse> handleIssuanceQueueFullException(IssuanceQueueFullException ex) {
+        String ms = LocalDateTime.now() + " " + ex.getMessage();
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        ExceptionResponse response = new ExceptionResponse(ms, status.value());
+        return new ResponseEntity<>(response, status);
+    }
+}
@@ -1,21 +1,32 @@
 package com.example.bankcards.controller.external;
 
 import com.example.bankcards.controller.advice.ExceptionResponse;
+import com.example.bankcards.dto.BulkIssuanceRequest;
+import com.example.bankcards.dto.CardBalanceResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSliceResponse;
+import com.example.bankcards.dto.IssuanceJobResponse;
 import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.service.CardExportFormat;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.UUID;
 
 @Tag(name = "Admin card", description = "Operations related to bank cards for admin")
@@ -54,4 +65,69 @@ public interface AdminCardApi {
             @ApiResponse(responseCode = "200", description = "Ok")
     })
     Page<CardResponse> getAllByStatus(@RequestParam StatusCard status, @ParameterObject Pageable pageable);
+
+    @Operation(summary = "Get cards with status by cursor, without total count. Empty cursor returns the first slice")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok"),
+            @ApiResponse(responseCode = "400",
+                    description = "Cursor is invalid or was issued for another status",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    CardSliceResponse getAllByStatusByCursor(@RequestParam StatusCard status,
+                                             @RequestParam(defaultValue = "") String cursor,
+                                             @RequestParam(defaultValue = "20") int size);
+
+    @Operation(summary = "Export every card with status as NDJSON or CSV. The body is streamed, gzip if Accept-Encoding allows it")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok")
+    })
+    void exportByStatus(@RequestParam StatusCard status,
+                        @RequestParam(defaultValue = "NDJSON") CardExportFormat format,
+                        @RequestHeader(value = "Accept-Encoding", defaultValue = "") String acceptEncoding,
+                        HttpServletResponse response) throws IOException;
+
+    @Operation(summary = "Get card balance at a point in time from the transfer ledger")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok"),
+            @ApiResponse(responseCode = "404",
+                    description = "Card not found in database",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    CardBalanceResponse getBalanceAt(@PathVariable UUID cardId, @RequestParam Instant at);
+
+    @Operation(summary = "Start bulk card issuance for a list of owners. Runs in the background, poll the job for progress")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Job accepted"),
+            @ApiResponse(responseCode = "400",
+                    description = "Validation error, unknown owner ids or too many cards in one job",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class))),
+            @ApiResponse(responseCode = "503",
+                    description = "Too many issuance jobs are queued",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    ResponseEntity<IssuanceJobResponse> startBulkIssuance(@Valid @RequestBody BulkIssuanceRequest request);
+
+    @Operation(summary = "Get bulk issuance job status and progress")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok"),
+            @ApiResponse(responseCode = "404",
+                    description = "Job not found",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    IssuanceJobResponse getIssuanceJob(@PathVariable UUID jobId);
+
+    @Operation(summary = "Resume a failed bulk issuance job. Only the cards each owner has not received yet are issued")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Job queued again"),
+            @ApiResponse(responseCode = "404",
+                    description = "Job not found",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class))),
+            @ApiResponse(responseCode = "409",
+                    description = "Job has not failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class))),
+            @ApiResponse(responseCode = "503",
+                    description = "Too many issuance jobs are queued",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    ResponseEntity<IssuanceJobResponse> resumeIssuanceJob(@PathVariable UUID jobId);
 }
@@ -1,31 +1,55 @@
 package com.example.bankcards.controller.external;
 
+import com.example.bankcards.dto.BulkIssuanceRequest;
+import com.example.bankcards.dto.CardBalanceResponse;
+import com.example.bankcards.dto.CardCursor;
 import com.example.bankcards.dto.CardResponse;
-import com.example.bankcards.entity.Card;
+import com.example.bankcards.dto.CardSliceResponse;
+import com.example.bankcards.dto.IssuanceJobResponse;
 import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.service.BulkCardIssuanceService;
+import com.example.bankcards.service.CardExportFormat;
+import com.example.bankcards.service.CardExportService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransferLedger;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/admin")
 public class AdminCardController implements AdminCardApi{
 
     private final CardService cardService;
+    private final TransferLedger transferLedger;
+    private final BulkCardIssuanceService bulkCardIssuanceService;
+    private final CardExportService cardExportService;
 
-    public AdminCardController(CardService cardService) {
+    public AdminCardController(CardService cardService, TransferLedger transferLedger,
+                               BulkCardIssuanceService bulkCardIssuanceService, CardExportService cardExportService) {
         this.cardService = cardService;
+        this.transferLedger = transferLedger;
+        this.bulkCardIssuanceService = bulkCardIssuanceService;
+        this.cardExportService = cardExportService;
     }
 
 
@@ -48,8 +72,87 @@ public class AdminCardController implements AdminCardApi{
 
     @GetMapping("/cards")
     public Page<CardResponse> getAllByStatus(@RequestParam StatusCard status, Pageable pageable) {
-        Page<Card> pages = cardService.adminGetAllByStatus(status, pageable);
-        return pages.map(CardResponse::from);
+        return cardService.adminGetAllByStatus(status, pageable);
     }
 
-}
\ No newline at end of file
+    @GetMapping(value = "/cards", params = "cursor")
+    public CardSliceResponse getAllByStatusByCursor(@RequestParam StatusCard status,
+                                                    @RequestParam(defaultValue = "") String cursor,
+                                                    @RequestParam(defaultValue = "20") int size) {
+        CardCursor after = CardCursor.decode(cursor, status);
+        Slice<CardResponse> cards = cardService.adminGetAllByStatusAfter(status, after == null ? null : after.lastId(), size);
+        return CardSliceResponse.from(cards, status);
+    }
+
+    //синхронно в потоке запроса: у async-ответа был бы таймаут, а выгрузка миллионов карт идёт минутами.
+    //после первых байт статус уже отправлен, поэтому ошибка посередине обрывает ответ
+    @GetMapping("/cards/export")
+    public void exportByStatus(@RequestParam StatusCard status,
+                               @RequestParam(defaultValue = "NDJSON") CardExportFormat format,
+                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, defaultValue = "") String acceptEncoding,
+                               HttpServletResponse response) throws IOException {
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"cards-" + status.name().toLowerCase() + format.extension() + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!acceptsGzip(acceptEncoding)) {
+            cardExportService.exportByStatus(status, format, response.getOutputStream());
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        GZIPOutputStream gzip = new GZIPOutputStream(response.getOutputStream(), 64 * 1024);
+        cardExportService.exportByStatus(status, format, gzip);
+        gzip.finish();
+    }
+
+    @GetMapping("/cards/{cardId}/balance")
+    public CardBalanceResponse getBalanceAt(@PathVariable UUID cardId, @RequestParam Instant at) {
+        return new CardBalanceResponse(cardId, at, transferLedger.balanceAt(cardId, at));
+    }
+
+    @PostMapping("/cards/issuance-jobs")
+    public ResponseEntity<IssuanceJobResponse> startBulkIssuance(@Valid @RequestBody BulkIssuanceRequest request) {
+        return ResponseEntity.accepted().body(bulkCardIssuanceService.submit(request));
+    }
+
+    @GetMapping("/cards/issuance-jobs/{jobId}")
+    public IssuanceJobResponse getIssuanceJob(@PathVariable UUID jobId) {
+        return bulkCardIssuanceService.getJob(jobId);
+    }
+
+    @PostMapping("/cards/issuance-jobs/{jobId}/resume")
+    public ResponseEntity<IssuanceJobResponse> resumeIssuanceJob(@PathVariable UUID jobId) {
+        return ResponseEntity.accepted().body(bulkCardIssuanceService.resume(jobId));
+    }
+
+    //gzip;q=0 - явный отказ; явное значение gzip важнее, чем *
+    static boolean acceptsGzip(String acceptEncoding) {
+        Double gzip = null;
+        Double any = null;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.bankcards.controller.external;
+
+import com.example.bankcards.dto.KeyRotationResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+
+@Tag(name = "Admin crypto", description = "PAN encryption key management for admin")
+public interface AdminCryptoApi {
+
+    @Operation(summary = "Start re-encrypting card numbers with the active key version. "
+            + "Runs in the background and resumes from its checkpoint after a restart")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Rotation started or already running")
+    })
+    ResponseEntity<KeyRotationResponse> startKeyRotation();
+
+    @Operation(summary = "Get progress of the re-encryption to the active key version")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Ok")
+    })
+    KeyRotationResponse getKeyRotation();
+}
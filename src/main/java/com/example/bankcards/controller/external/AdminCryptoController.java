@@ -0,0 +1,30 @@
+package com.example.bankcards.controller.external;
+
+import com.example.bankcards.dto.KeyRotationResponse;
+import com.example.bankcards.service.PanKeyRotationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/crypto")
+public class AdminCryptoController implements AdminCryptoApi {
+
+    private final PanKeyRotationService panKeyRotationService;
+
+    public AdminCryptoController(PanKeyRotationService panKeyRotationService) {
+        this.panKeyRotationService = panKeyRotationService;
+    }
+
+    @PostMapping("/rotation")
+    public ResponseEntity<KeyRotationResponse> startKeyRotation() {
+        return ResponseEntity.accepted().body(panKeyRotationService.start());
+    }
+
+    @GetMapping("/rotation")
+    public KeyRotationResponse getKeyRotation() {
+        return panKeyRotationService.status();
+    }
+}
@@ -17,16 +17,40 @@ public interface AuthApi {
 
     @Operation(summary = "Login and get JWT token")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Token issued"),
+            @ApiResponse(responseCode = "200", description = "Token issued, with a refresh token unless rememberMe is false"),
             @ApiResponse(responseCode = "400", description = "Validation error",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = ExceptionResponse.class))),
             @ApiResponse(responseCode = "401", description = "Invalid username or password",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class))),
+            @ApiResponse(responseCode = "503", description = "Too many logins at the moment, retry later",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = ExceptionResponse.class)))
     })
     AuthController.LoginResponse login(@Valid @RequestBody AuthController.LoginRequest request);
 
+    @Operation(summary = "Exchange a refresh token for a new access and refresh token")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Tokens issued, the presented refresh token is revoked"),
+            @ApiResponse(responseCode = "400", description = "Validation error",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Refresh token is invalid, expired or revoked",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    AuthController.LoginResponse refresh(@Valid @RequestBody AuthController.RefreshRequest request);
+
+    @Operation(summary = "Revoke a refresh token and every token rotated from the same login")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Revoked"),
+            @ApiResponse(responseCode = "400", description = "Validation error",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    void logout(@Valid @RequestBody AuthController.RefreshRequest request);
+
     @Operation(summary = "Get current user info from JWT")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Ok"),
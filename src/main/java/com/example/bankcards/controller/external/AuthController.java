@@ -2,7 +2,9 @@ package com.example.bankcards.controller.external;
 
 import com.example.bankcards.config.JwtService;
 import com.example.bankcards.entity.enums.Role;
-import com.example.bankcards.service.UserService;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.RefreshTokenService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.http.HttpStatus;
@@ -21,7 +23,6 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/auth")
@@ -29,16 +30,18 @@ public class AuthController implements AuthApi{
 
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
-    private final UserService userService;
+    private final RefreshTokenService refreshTokenService;
 
     public AuthController(JwtService jwtService,
                           AuthenticationManager authenticationManager,
-                          UserService userService) {
+                          RefreshTokenService refreshTokenService) {
         this.jwtService = jwtService;
         this.authenticationManager = authenticationManager;
-        this.userService = userService;
+        this.refreshTokenService = refreshTokenService;
     }
 
+    //refresh токен выдаётся при каждом логине, иначе клиент раз в час снова платит за BCrypt;
+    //rememberMe=false - исключение для клиентов, которым он не нужен
     @PostMapping("/login")
     public LoginResponse login(@Valid @RequestBody LoginRequest request) {
         Authentication authentication;
@@ -50,7 +53,8 @@ public class AuthController implements AuthApi{
             throw new UnauthorizedException("Invalid username or password");
         }
 
-        String username = authentication.getName();
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        String username = principal.getUsername();
 
         List<Role> roles = authentication.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
@@ -60,10 +64,27 @@ public class AuthController implements AuthApi{
                 .map(Role::valueOf)
                 .toList();
 
-        UUID userId = userService.getIdByUsername(username);
+        String token = jwtService.generateToken(principal.getId(), username, roles);
+        String refreshToken = Boolean.FALSE.equals(request.rememberMe())
+                ? null
+                : refreshTokenService.issue(principal.getId());
+        return new LoginResponse(token, "Bearer", refreshToken);
+    }
+
+    //новая пара токенов без пароля и BCrypt; предъявленный refresh токен больше не действует
+    @PostMapping("/refresh")
+    public LoginResponse refresh(@Valid @RequestBody RefreshRequest request) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.refreshToken());
+        User user = rotation.user();
+        String token = jwtService.generateToken(user.getId(), user.getUsername(), user.getRoles());
+        return new LoginResponse(token, "Bearer", rotation.refreshToken());
+    }
 
-        String token = jwtService.generateToken(userId, username, roles);
-        return new LoginResponse(token, "Bearer");
+    //выданный access токен остаётся действительным до своего exp
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void logout(@Valid @RequestBody RefreshRequest request) {
+        refreshTokenService.revoke(request.refreshToken());
     }
 
     @GetMapping("/me")
@@ -76,10 +97,12 @@ public class AuthController implements AuthApi{
     }
 
     public record LoginRequest(
-            @NotBlank String username, @NotBlank String password
+            @NotBlank String username, @NotBlank String password, Boolean rememberMe
     ) {}
 
-    public record LoginResponse(String token, String tokenType) {}
+    public record RefreshRequest(@NotBlank String refreshToken) {}
+
+    public record LoginResponse(String token, String tokenType, String refreshToken) {}
 
     public record MeResponse(String userId, String username, Object roles) {}
 
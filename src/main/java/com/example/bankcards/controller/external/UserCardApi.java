@@ -1,17 +1,23 @@
 package com.example.bankcards.controller.external;
 
 import com.example.bankcards.controller.advice.ExceptionResponse;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSliceResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.enums.StatusCard;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -36,6 +42,18 @@ public interface UserCardApi {
     Page<CardResponse> getMyCards(@RequestParam(required = false) StatusCard status, Pageable pageable,
                                   @RequestHeader("X-User-Id") UUID ownerId);
 
+    @Operation(summary = "Get user's cards by cursor, without total count. Empty cursor returns the first slice")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Slice of user`s cards, nextCursor points to the next one"),
+            @ApiResponse(responseCode = "400", description = "Cursor is invalid or was issued for another status filter",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    CardSliceResponse getMyCardsByCursor(@RequestParam(required = false) StatusCard status,
+                                         @RequestParam(defaultValue = "") String cursor,
+                                         @RequestParam(defaultValue = "20") int size,
+                                         @RequestHeader("X-User-Id") UUID ownerId);
+
     @Operation(summary = "Block set on user`s card by user id")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Card was blocked"),
@@ -57,9 +75,35 @@ public interface UserCardApi {
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = ExceptionResponse.class))),
 
-            @ApiResponse(responseCode = "409", description = "Transfer cannot be completed due to business rules",
+            @ApiResponse(responseCode = "409", description = "Transfer cannot be completed due to business rules (card not active or expired, insufficient funds) "
+                    + "or transfer with the same Idempotency-Key is still in progress",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class))),
+
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different transfer",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class))),
+
+            @ApiResponse(responseCode = "503", description = "Card is locked by concurrent transfers, retry later",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExceptionResponse.class)))
+    })
+    void transferForMyCard(@RequestBody TransferRequest transferRequest, @RequestHeader("X-User-Id") UUID ownerId,
+                           @Parameter(description = "Retries with the same key return the result of the first transfer")
+                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
+
+    @Operation(summary = "Apply a batch of transfers between user`s cards in one transaction")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Batch processed, see per-item results"),
+
+            @ApiResponse(responseCode = "400", description = "Invalid batch request"),
+
+            @ApiResponse(responseCode = "409", description = "ALL_OR_NOTHING batch was rolled back, see per-item results"),
+
+            @ApiResponse(responseCode = "503", description = "Cards are locked by concurrent transfers, retry later",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = ExceptionResponse.class)))
     })
-    void transferForMyCard(@RequestBody TransferRequest transferRequest, @RequestHeader("X-User-Id") UUID ownerId);
+    ResponseEntity<BatchTransferResponse> transferBatchForMyCards(@Valid @RequestBody BatchTransferRequest request,
+                                                                  @RequestHeader("X-User-Id") UUID ownerId);
 }
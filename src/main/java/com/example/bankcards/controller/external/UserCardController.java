@@ -1,14 +1,22 @@
 package com.example.bankcards.controller.external;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CardCursor;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.CardSliceResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.service.IdempotentTransferService;
 import com.example.bankcards.service.TransferService;
 import com.example.bankcards.service.CardService;
+import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -28,27 +36,37 @@ public class UserCardController implements UserCardApi {
 
     private final CardService cardService;
     private final TransferService transferService;
+    private final IdempotentTransferService idempotentTransferService;
 
-    public UserCardController(CardService cardService, TransferService transferService) {
+    public UserCardController(CardService cardService, TransferService transferService,
+                              IdempotentTransferService idempotentTransferService) {
         this.cardService = cardService;
         this.transferService = transferService;
+        this.idempotentTransferService = idempotentTransferService;
     }
 
     @GetMapping("/cards/{cardId}")
     public CardResponse getCardById(@PathVariable UUID cardId, @RequestHeader("X-User-Id") UUID ownerId) {
-
-        Card card = cardService.getMyById(ownerId, cardId);
-        return CardResponse.from(card);
+        return cardService.getMyById(ownerId, cardId);
     }
 
     @GetMapping("/cards")
     public Page<CardResponse> getMyCards(@RequestParam(required = false) StatusCard status,
                                          Pageable pageable,
                                          @RequestHeader("X-User-Id") UUID ownerId) {
-        Page<Card> cards = (status == null) ? cardService.getMyCards(ownerId, pageable)
+        return (status == null) ? cardService.getMyCards(ownerId, pageable)
                 : cardService.getMyCardsByStatus(ownerId, status, pageable);
+    }
 
-        return cards.map(CardResponse::from);
+    //keyset-режим включается параметром cursor, первая порция - пустой cursor
+    @GetMapping(value = "/cards", params = "cursor")
+    public CardSliceResponse getMyCardsByCursor(@RequestParam(required = false) StatusCard status,
+                                                @RequestParam(defaultValue = "") String cursor,
+                                                @RequestParam(defaultValue = "20") int size,
+                                                @RequestHeader("X-User-Id") UUID ownerId) {
+        CardCursor after = CardCursor.decode(cursor, status);
+        Slice<CardResponse> cards = cardService.getMyCardsAfter(ownerId, status, after == null ? null : after.lastId(), size);
+        return CardSliceResponse.from(cards, status);
     }
 
     @PatchMapping("/cards/{cardId}/block")
@@ -59,8 +77,23 @@ public class UserCardController implements UserCardApi {
 
     @PostMapping("/cards/transfer")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void transferForMyCard(@RequestBody TransferRequest transferRequest, @RequestHeader("X-User-Id") UUID ownerId) {
-        transferService.transfer(ownerId, transferRequest);
+    public void transferForMyCard(@RequestBody TransferRequest transferRequest, @RequestHeader("X-User-Id") UUID ownerId,
+                                  @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            transferService.transfer(ownerId, transferRequest);
+        } else {
+            idempotentTransferService.transfer(ownerId, idempotencyKey, transferRequest);
+        }
     }
 
-}
\ No newline at end of file
+    @PostMapping("/cards/transfers:batch")
+    public ResponseEntity<BatchTransferResponse> transferBatchForMyCards(@Valid @RequestBody BatchTransferRequest request,
+                                                                         @RequestHeader("X-User-Id") UUID ownerId) {
+        BatchTransferRequest.Mode mode = request.modeOrDefault();
+        BatchTransferResponse response = transferService.transferBatch(ownerId, request.transfers(), mode);
+
+        HttpStatus status = (mode == BatchTransferRequest.Mode.ALL_OR_NOTHING && response.failed() > 0)
+                ? HttpStatus.CONFLICT : HttpStatus.OK;
+        return ResponseEntity.status(status).body(response);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchTransferRequest(Mode mode,
+                                   @NotEmpty @Size(max = MAX_SIZE) List<@Valid @NotNull TransferRequest> transfers) {
+
+    public static final int MAX_SIZE = 1000;
+
+    public enum Mode {
+        //любая ошибка откатывает весь пакет
+        ALL_OR_NOTHING,
+        //ошибочные переводы пропускаются, остальные применяются
+        BEST_EFFORT
+    }
+
+    public Mode modeOrDefault() {
+        return mode == null ? Mode.ALL_OR_NOTHING : mode;
+    }
+}
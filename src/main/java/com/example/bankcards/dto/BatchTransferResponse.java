@@ -0,0 +1,25 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+public record BatchTransferResponse(int applied, int failed, List<Item> results) {
+
+    public enum Status {
+        APPLIED, FAILED, ROLLED_BACK
+    }
+
+    public record Item(int index, Status status, String message) {}
+
+    public static BatchTransferResponse of(List<Item> results) {
+        int applied = 0;
+        int failed = 0;
+        for (Item item : results) {
+            if (item.status() == Status.APPLIED) {
+                applied++;
+            } else if (item.status() == Status.FAILED) {
+                failed++;
+            }
+        }
+        return new BatchTransferResponse(applied, failed, List.copyOf(results));
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BulkIssuanceRequest(@NotEmpty @Size(max = MAX_OWNERS) List<@Valid @NotNull Item> items) {
+
+    public static final int MAX_OWNERS = 100_000;
+
+    public record Item(@NotNull UUID ownerId, @Min(1) @Max(100) int count) {}
+
+    public int totalCards() {
+        return items.stream().mapToInt(Item::count).sum();
+    }
+}
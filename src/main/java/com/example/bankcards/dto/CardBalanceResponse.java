@@ -0,0 +1,8 @@
+package com.example.bankcards.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public record CardBalanceResponse(UUID cardId, Instant at, BigDecimal balance) {
+}
@@ -0,0 +1,39 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
+
+//непрозрачный курсор keyset-пагинации: последний показанный id и фильтр по статусу, с которым он получен
+public record CardCursor(StatusCard status, UUID lastId) {
+
+    public String encode() {
+        String raw = (status == null ? "" : status.name()) + ":" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //пустой курсор - первая порция; курсор от другого фильтра не принимается
+    public static CardCursor decode(String cursor, StatusCard expectedStatus) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        CardCursor decoded;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            String status = raw.substring(0, separator);
+            decoded = new CardCursor(status.isEmpty() ? null : StatusCard.valueOf(status),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException();
+        }
+        if (!Objects.equals(decoded.status(), expectedStatus)) {
+            throw new InvalidCursorException();
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.StatusCard;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+public record CardSliceResponse(List<CardResponse> content, int size, boolean hasNext, String nextCursor) {
+
+    public static CardSliceResponse from(Slice<CardResponse> slice, StatusCard status) {
+        List<CardResponse> content = slice.getContent();
+        String nextCursor = slice.hasNext()
+                ? new CardCursor(status, content.get(content.size() - 1).cardId()).encode()
+                : null;
+        return new CardSliceResponse(content, slice.getSize(), slice.hasNext(), nextCursor);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record IssuanceJobResponse(UUID jobId, Status status, int requested, int issued,
+                                  Instant createdAt, Instant finishedAt, String error) {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        //карты из уже завершённых порций остаются выпущенными, issued показывает сколько;
+        //resume выпускает только недостающие
+        FAILED
+    }
+}
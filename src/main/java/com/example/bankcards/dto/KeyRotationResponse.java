@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record KeyRotationResponse(short targetVersion, Status status, long processed, UUID lastCardId,
+                                  Instant startedAt, Instant updatedAt, Instant finishedAt, String error) {
+
+    public enum Status {
+        //для активной версии перешифрование не запускалось
+        NOT_STARTED,
+        RUNNING,
+        //остановлено ошибкой или рестартом, продолжится с контрольной точки
+        PAUSED,
+        COMPLETED
+    }
+}
@@ -46,6 +46,10 @@ public class Card {
     @Column(name = "pan_encrypted", nullable = false)
     private byte[] panEncryptedCard;
 
+    //версия ключа, которым зашифрован pan_encrypted
+    @Column(name = "pan_key_version", nullable = false)
+    private short panKeyVersion = 1;
+
     @Column(name = "pan_hash", nullable = false, length = 64, unique = true)
     private String panHash;
 
@@ -89,6 +93,14 @@ public class Card {
         this.panEncryptedCard = panEncryptedCard;
     }
 
+    public short getPanKeyVersion() {
+        return panKeyVersion;
+    }
+
+    public void setPanKeyVersion(short panKeyVersion) {
+        this.panKeyVersion = panKeyVersion;
+    }
+
     public String getPanHash() {
         return panHash;
     }
@@ -155,6 +167,7 @@ public class Card {
                 "id=" + id +
                 ", ownerId=" + ownerId +
                 ", panEncryptedCard=" + Arrays.toString(panEncryptedCard) +
+                ", panKeyVersion=" + panKeyVersion +
                 ", panHash='" + panHash + '\'' +
                 ", panLastFourNumber='" + panLastFourNumber + '\'' +
                 ", expiryMonth=" + expiryMonth +
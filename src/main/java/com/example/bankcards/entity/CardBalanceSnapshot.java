@@ -0,0 +1,88 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+//контрольная точка баланса карты: balance после записи журнала ledgerSeq
+@Entity
+@Table(name = "card_balance_snapshot")
+public class CardBalanceSnapshot {
+
+    public CardBalanceSnapshot() {
+    }
+
+    public CardBalanceSnapshot(UUID cardId, long ledgerSeq, BigDecimal balance, Instant asOf) {
+        this.cardId = cardId;
+        this.ledgerSeq = ledgerSeq;
+        this.balance = balance;
+        this.asOf = asOf;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Column(name = "ledger_seq", nullable = false)
+    private long ledgerSeq;
+
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Column(name = "as_of", nullable = false)
+    private Instant asOf;
+
+    public Long getId() {
+        return id;
+    }
+
+    public UUID getCardId() {
+        return cardId;
+    }
+
+    public long getLedgerSeq() {
+        return ledgerSeq;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public Instant getAsOf() {
+        return asOf;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        CardBalanceSnapshot that = (CardBalanceSnapshot) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "CardBalanceSnapshot{" +
+                "id=" + id +
+                ", cardId=" + cardId +
+                ", ledgerSeq=" + ledgerSeq +
+                ", balance=" + balance +
+                ", asOf=" + asOf +
+                '}';
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.entity.enums.LedgerEntryType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+//запись журнала переводов, только вставляется и никогда не изменяется
+@Entity
+@Table(name = "transfer_ledger")
+public class LedgerEntry {
+
+    public LedgerEntry() {
+    }
+
+    public LedgerEntry(UUID transferId, UUID cardId, UUID ownerId, LedgerEntryType entryType,
+                       BigDecimal amount, BigDecimal balanceAfter, Instant createdAt) {
+        this.transferId = transferId;
+        this.cardId = cardId;
+        this.ownerId = ownerId;
+        this.entryType = entryType;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.createdAt = createdAt;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    //заполняется sequence в БД при вставке, пока держится блокировка карты,
+    //поэтому для одной карты seq возрастает в порядке применения переводов
+    @Column(name = "seq", insertable = false, updatable = false)
+    private Long seq;
+
+    @Column(name = "transfer_id", nullable = false, updatable = false)
+    private UUID transferId;
+
+    @Column(name = "card_id", nullable = false, updatable = false)
+    private UUID cardId;
+
+    @Column(name = "owner_id", nullable = false, updatable = false)
+    private UUID ownerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false, updatable = false)
+    private LedgerEntryType entryType;
+
+    //со знаком: списание отрицательное, зачисление положительное
+    @Column(name = "amount", nullable = false, updatable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "balance_after", nullable = false, updatable = false, precision = 19, scale = 2)
+    private BigDecimal balanceAfter;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public UUID getTransferId() {
+        return transferId;
+    }
+
+    public UUID getCardId() {
+        return cardId;
+    }
+
+    public UUID getOwnerId() {
+        return ownerId;
+    }
+
+    public LedgerEntryType getEntryType() {
+        return entryType;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public BigDecimal getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        LedgerEntry that = (LedgerEntry) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerEntry{" +
+                "id=" + id +
+                ", seq=" + seq +
+                ", transferId=" + transferId +
+                ", cardId=" + cardId +
+                ", entryType=" + entryType +
+                ", amount=" + amount +
+                ", balanceAfter=" + balanceAfter +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
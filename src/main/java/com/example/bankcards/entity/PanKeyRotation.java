@@ -0,0 +1,103 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+//контрольная точка перешифрования PAN под ключ target_version: после рестарта задача продолжает с last_card_id
+@Entity
+@Table(name = "pan_key_rotation")
+public class PanKeyRotation {
+
+    public PanKeyRotation() {
+    }
+
+    public PanKeyRotation(short targetVersion, Instant startedAt) {
+        this.targetVersion = targetVersion;
+        this.startedAt = startedAt;
+        this.updatedAt = startedAt;
+    }
+
+    @Id
+    @Column(name = "target_version", nullable = false, updatable = false)
+    private short targetVersion;
+
+    @Column(name = "last_card_id")
+    private UUID lastCardId;
+
+    @Column(name = "processed", nullable = false)
+    private long processed;
+
+    @Column(name = "started_at", nullable = false, updatable = false)
+    private Instant startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    public void advance(UUID lastCardId, int processed, Instant now) {
+        this.lastCardId = lastCardId;
+        this.processed += processed;
+        this.updatedAt = now;
+    }
+
+    public void finish(Instant now) {
+        this.updatedAt = now;
+        this.finishedAt = now;
+    }
+
+    public short getTargetVersion() {
+        return targetVersion;
+    }
+
+    public UUID getLastCardId() {
+        return lastCardId;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        PanKeyRotation that = (PanKeyRotation) o;
+        return targetVersion == that.targetVersion;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(targetVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "PanKeyRotation{" +
+                "targetVersion=" + targetVersion +
+                ", lastCardId=" + lastCardId +
+                ", processed=" + processed +
+                ", startedAt=" + startedAt +
+                ", updatedAt=" + updatedAt +
+                ", finishedAt=" + finishedAt +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+//результат перевода по Idempotency-Key, вставляется в одной транзакции с переводом
+@Entity
+@Table(name = "transfer_idempotency")
+public class TransferIdempotency {
+
+    public TransferIdempotency() {
+    }
+
+    @Id
+    @Column(name = "transfer_id", nullable = false, updatable = false)
+    private UUID transferId;
+
+    @Column(name = "owner_id", nullable = false, updatable = false)
+    private UUID ownerId;
+
+    @Column(name = "idempotency_key", nullable = false, updatable = false)
+    private String idempotencyKey;
+
+    @Column(name = "request_hash", nullable = false, updatable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public UUID getTransferId() {
+        return transferId;
+    }
+
+    public UUID getOwnerId() {
+        return ownerId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        TransferIdempotency that = (TransferIdempotency) o;
+        return Objects.equals(transferId, that.transferId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(transferId);
+    }
+
+    @Override
+    public String toString() {
+        return "TransferIdempotency{" +
+                "transferId=" + transferId +
+                ", ownerId=" + ownerId +
+                ", idempotencyKey='" + idempotencyKey + '\'' +
+                ", requestHash='" + requestHash + '\'' +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.exception;
+
+public class CardExpiredException extends RuntimeException{
+
+    private final String cardNumber;
+
+    public CardExpiredException(String cardLastFourNumber){
+        this.cardNumber = cardLastFourNumber;
+    }
+
+    @Override
+    public String getMessage()
+    {
+        return "Card is expired: **** **** **** " + cardNumber;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Transfer with this Idempotency-Key is still in progress, try again later";
+    }
+}
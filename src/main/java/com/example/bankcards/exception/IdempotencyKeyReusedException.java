@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Idempotency-Key was already used for a different transfer";
+    }
+}
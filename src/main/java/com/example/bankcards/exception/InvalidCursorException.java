@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Cursor is invalid or was issued for another filter";
+    }
+}
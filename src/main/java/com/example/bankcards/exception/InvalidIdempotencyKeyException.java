@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Idempotency-Key must be from 1 to 255 characters";
+    }
+}
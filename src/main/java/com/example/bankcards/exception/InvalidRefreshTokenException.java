@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Refresh token is invalid, expired or revoked";
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class IssuanceJobNotFoundException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Issuance job not found";
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class IssuanceJobNotResumableException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Only a failed issuance job can be resumed";
+    }
+}
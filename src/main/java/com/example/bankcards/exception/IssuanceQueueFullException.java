@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class IssuanceQueueFullException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Too many issuance jobs are queued, try again later";
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.exception;
+
+public class IssuanceTooLargeException extends RuntimeException {
+
+    private final int maxCards;
+
+    public IssuanceTooLargeException(int maxCards) {
+        this.maxCards = maxCards;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Bulk issuance is limited to " + maxCards + " cards per job";
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class LoginThrottledException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Too many logins at the moment, try again later";
+    }
+}
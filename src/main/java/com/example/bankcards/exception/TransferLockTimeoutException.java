@@ -0,0 +1,9 @@
+package com.example.bankcards.exception;
+
+public class TransferLockTimeoutException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "Card is busy with another transfer, try again later";
+    }
+}
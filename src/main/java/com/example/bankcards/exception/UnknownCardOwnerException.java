@@ -0,0 +1,22 @@
+package com.example.bankcards.exception;
+
+import java.util.List;
+import java.util.UUID;
+
+public class UnknownCardOwnerException extends RuntimeException {
+
+    //в сообщение попадают только первые id, запрос может содержать тысячи владельцев
+    private static final int SHOWN = 10;
+
+    private final List<UUID> unknownOwners;
+
+    public UnknownCardOwnerException(List<UUID> unknownOwners) {
+        this.unknownOwners = List.copyOf(unknownOwners);
+    }
+
+    @Override
+    public String getMessage() {
+        String shown = unknownOwners.subList(0, Math.min(SHOWN, unknownOwners.size())).toString();
+        return "Unknown card owners (" + unknownOwners.size() + "): " + shown;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardBalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface CardBalanceSnapshotRepository extends JpaRepository<CardBalanceSnapshot, Long> {
+
+    Optional<CardBalanceSnapshot> findFirstByCardIdAndAsOfLessThanEqualOrderByLedgerSeqDesc(UUID cardId, Instant at);
+
+    @Query("select coalesce(max(s.ledgerSeq), 0) from CardBalanceSnapshot s")
+    long findMaxLedgerSeq();
+
+    //для каждой карты из диапазона журнала сохраняет баланс после её последней записи
+    @Modifying
+    @Query(value = """
+            INSERT INTO card_balance_snapshot (card_id, ledger_seq, balance, as_of)
+            SELECT DISTINCT ON (e.card_id) e.card_id, e.seq, e.balance_after, e.created_at
+            FROM transfer_ledger e
+            WHERE e.seq > :fromSeq AND e.seq <= :toSeq
+            ORDER BY e.card_id, e.seq DESC
+            ON CONFLICT (card_id, ledger_seq) DO NOTHING
+            """, nativeQuery = true)
+    int compactRange(long fromSeq, long toSeq);
+}
@@ -0,0 +1,135 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+//массовые операции с картами мимо persistence context: выпуск (один запрос на проверку хэшей
+//и один JDBC batch на вставку) и перешифрование PAN порциями по id
+@Repository
+public class CardBulkRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CardBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Set<String> findExistingPanHashes(Collection<String> panHashes) {
+        if (panHashes.isEmpty()) {
+            return Set.of();
+        }
+        List<String> existing = jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "SELECT pan_hash FROM bank_card WHERE pan_hash = ANY(?)");
+                    Array hashes = connection.createArrayOf("varchar", panHashes.toArray());
+                    ps.setArray(1, hashes);
+                    return ps;
+                },
+                (rs, rowNum) -> rs.getString(1));
+        return new HashSet<>(existing);
+    }
+
+    //у bank_card.owner_id нет внешнего ключа, поэтому владельцев массового выпуска проверяет этот запрос
+    public Set<UUID> findExistingOwnerIds(Collection<UUID> ownerIds) {
+        if (ownerIds.isEmpty()) {
+            return Set.of();
+        }
+        List<UUID> existing = jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement("SELECT id FROM users WHERE id = ANY(?)");
+                    Array ids = connection.createArrayOf("uuid", ownerIds.toArray());
+                    ps.setArray(1, ids);
+                    return ps;
+                },
+                (rs, rowNum) -> rs.getObject(1, UUID.class));
+        return new HashSet<>(existing);
+    }
+
+    //0 в результате - строка не вставлена: такой pan_hash успел появиться в параллельной транзакции
+    public int[] insertIgnoringDuplicates(List<Card> cards) {
+        return jdbcTemplate.batchUpdate("""
+                INSERT INTO bank_card (id, owner_id, pan_encrypted, pan_hash, pan_last4,
+                                       expiry_month, expiry_year, status_card, balance, pan_key_version)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT (pan_hash) DO NOTHING
+                """, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Card card = cards.get(i);
+                ps.setObject(1, card.getId());
+                ps.setObject(2, card.getOwnerId());
+                ps.setBytes(3, card.getPanEncryptedCard());
+                ps.setString(4, card.getPanHash());
+                ps.setString(5, card.getPanLastFourNumber());
+                ps.setShort(6, card.getExpiryMonth());
+                ps.setShort(7, card.getExpiryYear());
+                ps.setString(8, card.getStatus().name());
+                ps.setBigDecimal(9, card.getBalance());
+                ps.setShort(10, card.getPanKeyVersion());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return cards.size();
+            }
+        });
+    }
+
+    //порция карт с PAN не под целевым ключом; fetchSize - строки читаются курсором, а не целиком
+    public List<EncryptedPan> findNotEncryptedWith(short keyVersion, UUID afterId, int limit) {
+        return jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement("""
+                            SELECT id, pan_encrypted, pan_key_version FROM bank_card
+                            WHERE id > ? AND pan_key_version <> ?
+                            ORDER BY id
+                            LIMIT ?
+                            """);
+                    ps.setObject(1, afterId);
+                    ps.setShort(2, keyVersion);
+                    ps.setInt(3, limit);
+                    ps.setFetchSize(Math.min(limit, 1000));
+                    return ps;
+                },
+                (rs, rowNum) -> new EncryptedPan(rs.getObject(1, UUID.class), rs.getBytes(2), rs.getShort(3)));
+    }
+
+    //обновляется только строка, всё ещё зашифрованная прочитанной версией ключа.
+    //lock_timeout действует до конца текущей транзакции: занятая карта не держит задачу, а роняет порцию на повтор
+    public int[] updateEncrypted(List<EncryptedPan> previous, List<byte[]> reencrypted, short keyVersion,
+                                 long lockTimeoutMs) {
+        jdbcTemplate.queryForObject("SELECT set_config('lock_timeout', ?, true)", String.class, lockTimeoutMs + "ms");
+        return jdbcTemplate.batchUpdate("""
+                UPDATE bank_card SET pan_encrypted = ?, pan_key_version = ?
+                WHERE id = ? AND pan_key_version = ?
+                """, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                EncryptedPan pan = previous.get(i);
+                ps.setBytes(1, reencrypted.get(i));
+                ps.setShort(2, keyVersion);
+                ps.setObject(3, pan.cardId());
+                ps.setShort(4, pan.keyVersion());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return previous.size();
+            }
+        });
+    }
+
+    public record EncryptedPan(UUID cardId, byte[] encrypted, short keyVersion) {}
+}
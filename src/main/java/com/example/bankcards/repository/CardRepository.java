@@ -1,34 +1,135 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card,UUID> {
 
-    boolean existsByPanHash(String panHash);
-
     Optional<Card> findByPanHash(String panHash);
 
-    Page<Card> findAllByOwnerId(UUID ownerId, Pageable pageable);
-
     Optional<Card> findByIdAndOwnerId(UUID id, UUID ownerId);
 
-    Page<Card> findAllByOwnerIdAndStatus(UUID ownerId, StatusCard status, Pageable pageable);
-
     @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "3000"))
     @Query("select c from Card c where c.id = :id and c.ownerId = :ownerId")
     Optional<Card> findForUpdateByIdAndOwnerId(UUID id, UUID ownerId);
 
-    Page<Card> findAllByStatus(StatusCard status, Pageable pageable);
+    //блокирует все карты пакета одним запросом; ORDER BY id задаёт тот же порядок блокировок, что и у одиночных переводов
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "3000"))
+    @Query("select c from Card c where c.id in :ids and c.ownerId = :ownerId order by c.id")
+    List<Card> findAllForUpdateByIdInAndOwnerId(Collection<UUID> ids, UUID ownerId);
+
+    //чтения для ответов API: строки сразу собираются в CardResponse, без управляемых сущностей и их снимков.
+    //pan_encrypted и pan_hash не выбираются; маска собирается так же, как в CardResponse.from
+    String CARD_VIEW = "select new com.example.bankcards.dto.CardResponse(c.id, "
+            + "concat('**** **** **** ', c.panLastFourNumber), c.expiryMonth, c.expiryYear, c.status, c.balance) "
+            + "from Card c ";
+
+    @Query(CARD_VIEW + "where c.id = :id and c.ownerId = :ownerId")
+    Optional<CardResponse> findViewByIdAndOwnerId(UUID id, UUID ownerId);
+
+    @Query(value = CARD_VIEW + "where c.ownerId = :ownerId",
+            countQuery = "select count(c) from Card c where c.ownerId = :ownerId")
+    Page<CardResponse> findViewsByOwnerId(UUID ownerId, Pageable pageable);
+
+    @Query(value = CARD_VIEW + "where c.ownerId = :ownerId and c.status = :status",
+            countQuery = "select count(c) from Card c where c.ownerId = :ownerId and c.status = :status")
+    Page<CardResponse> findViewsByOwnerIdAndStatus(UUID ownerId, StatusCard status, Pageable pageable);
+
+    @Query(value = CARD_VIEW + "where c.status = :status",
+            countQuery = "select count(c) from Card c where c.status = :status")
+    Page<CardResponse> findViewsByStatus(StatusCard status, Pageable pageable);
+
+    //keyset-пагинация: следующая порция после последнего показанного id, без OFFSET и COUNT
+    @Query(CARD_VIEW + "where c.ownerId = :ownerId and c.id > :afterId order by c.id")
+    List<CardResponse> findViewsByOwnerIdAfter(UUID ownerId, UUID afterId, Limit limit);
+
+    @Query(CARD_VIEW + "where c.ownerId = :ownerId and c.status = :status and c.id > :afterId order by c.id")
+    List<CardResponse> findViewsByOwnerIdAndStatusAfter(UUID ownerId, StatusCard status, UUID afterId, Limit limit);
+
+    @Query(CARD_VIEW + "where c.status = :status and c.id > :afterId order by c.id")
+    List<CardResponse> findViewsByStatusAfter(StatusCard status, UUID afterId, Limit limit);
+
+    //выгрузка всех карт со статусом: драйвер читает курсором по fetch size строк (только внутри транзакции).
+    //сущностей нет, поэтому persistence context не растёт с числом строк; вызывающий закрывает поток
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(CARD_VIEW + "where c.status = :status order by c.id")
+    Stream<CardResponse> streamViewsByStatus(StatusCard status);
+
+    //перевод одним запросом: обе строки блокируются в порядке id, затем списание и зачисление
+    //выполняются только если обе карты активны, не просрочены к месяцу (:year, :month) и денег хватает.
+    //Возвращает состояние карт до перевода и флаг applied, по которому сервис определяет причину отказа
+    @Query(value = """
+            WITH locked AS (
+                SELECT id, status_card, balance, pan_last4, expiry_year, expiry_month
+                FROM bank_card
+                WHERE id IN (:fromId, :toId) AND owner_id = :ownerId
+                ORDER BY id
+                FOR UPDATE
+            ), debit AS (
+                UPDATE bank_card b
+                SET balance = b.balance - :amount
+                WHERE b.id = :fromId
+                  AND b.owner_id = :ownerId
+                  AND b.status_card = 'ACTIVE'
+                  AND (b.expiry_year, b.expiry_month) >= (:year, :month)
+                  AND b.balance >= :amount
+                  AND EXISTS (SELECT 1 FROM locked l WHERE l.id = :toId AND l.status_card = 'ACTIVE'
+                              AND (l.expiry_year, l.expiry_month) >= (:year, :month))
+                RETURNING b.id
+            ), credit AS (
+                UPDATE bank_card b
+                SET balance = b.balance + :amount
+                WHERE b.id = :toId
+                  AND EXISTS (SELECT 1 FROM debit)
+                RETURNING b.id
+            )
+            SELECT l.id AS id,
+                   l.status_card AS status,
+                   l.balance AS balance,
+                   l.pan_last4 AS panLastFour,
+                   l.expiry_year AS expiryYear,
+                   l.expiry_month AS expiryMonth,
+                   EXISTS (SELECT 1 FROM credit) AS applied
+            FROM locked l
+            """, nativeQuery = true)
+    List<TransferLegView> transferAtomically(UUID ownerId, UUID fromId, UUID toId, BigDecimal amount,
+                                             short year, short month);
+
+    //порция просроченных карт за один короткий UPDATE; занятые переводом строки пропускаются до следующего прохода.
+    //карта действует до конца месяца expiry, просрочена - если (expiry_year, expiry_month) раньше (:year, :month)
+    @Modifying
+    @Query(value = """
+            UPDATE bank_card SET status_card = 'EXPIRED'
+            WHERE id IN (
+                SELECT id FROM bank_card
+                WHERE status_card <> 'EXPIRED'
+                  AND (expiry_year, expiry_month) < (:year, :month)
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            """, nativeQuery = true)
+    int expireBefore(short year, short month, int limit);
 }
@@ -0,0 +1,27 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, UUID> {
+
+    Optional<LedgerEntry> findFirstByCardIdOrderBySeqAsc(UUID cardId);
+
+    //хвост журнала после контрольной точки, идёт по индексу (card_id, seq)
+    @Query("""
+            select coalesce(sum(e.amount), 0) from LedgerEntry e
+            where e.cardId = :cardId and e.seq > :afterSeq and e.createdAt <= :at
+            """)
+    BigDecimal sumAmountsAfter(UUID cardId, long afterSeq, Instant at);
+
+    @Query("select max(e.seq) from LedgerEntry e where e.createdAt < :before")
+    Optional<Long> findMaxSeqCreatedBefore(Instant before);
+}
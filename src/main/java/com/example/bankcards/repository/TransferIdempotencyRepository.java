@@ -0,0 +1,30 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIdempotency;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface TransferIdempotencyRepository extends JpaRepository<TransferIdempotency, UUID> {
+
+    Optional<TransferIdempotency> findByOwnerIdAndIdempotencyKey(UUID ownerId, String idempotencyKey);
+
+    //0 - ключ уже занят; если занявшая его транзакция ещё не завершилась, PostgreSQL дожидается её commit
+    @Modifying
+    @Query(value = """
+            INSERT INTO transfer_idempotency (transfer_id, owner_id, idempotency_key, request_hash, created_at)
+            VALUES (:transferId, :ownerId, :idempotencyKey, :requestHash, :createdAt)
+            ON CONFLICT (owner_id, idempotency_key) DO NOTHING
+            """, nativeQuery = true)
+    int claim(UUID transferId, UUID ownerId, String idempotencyKey, String requestHash, Instant createdAt);
+
+    @Modifying
+    @Query("delete from TransferIdempotency t where t.createdAt < :before")
+    int deleteCreatedBefore(Instant before);
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.repository;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+//строка результата CardRepository.transferAtomically: состояние карты до перевода
+public interface TransferLegView {
+
+    UUID getId();
+
+    String getStatus();
+
+    BigDecimal getBalance();
+
+    String getPanLastFour();
+
+    Short getExpiryYear();
+
+    Short getExpiryMonth();
+
+    Boolean getApplied();
+}
@@ -1,6 +1,7 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,6 +11,8 @@ import java.util.UUID;
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
 
+    //роли загружаются тем же запросом, без отдельного select по user_roles
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
@@ -0,0 +1,108 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.LoginThrottledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//хэширование и проверка пароля выполняются на отдельном ограниченном пуле: волна логинов занимает
+//только его потоки, а не все ядра и потоки запросов. Переполненная очередь - сразу 503
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long waitTimeoutMs;
+    private final Timer verifyTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long waitTimeoutMs,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.waitTimeoutMs = waitTimeoutMs;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-encoder-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("bankcards.auth.password.queue", executor, e -> e.getQueue().size())
+                .description("Password hashing tasks waiting for a free thread")
+                .register(meterRegistry);
+        Gauge.builder("bankcards.auth.password.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks being computed")
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("bankcards.auth.password.verify")
+                .description("Time spent computing a password hash")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("bankcards.auth.password.queue.wait")
+                .description("Time a password hashing task waited in the queue")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bankcards.auth.password.rejected")
+                .description("Password hashing tasks rejected because the queue was full or the wait timed out")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    //только разбирает стоимость из хэша, в пул не отправляется
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Timer.Sample queued = Timer.start();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queued.stop(queueWaitTimer);
+                return verifyTimer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new LoginThrottledException();
+        }
+
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new LoginThrottledException();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new LoginThrottledException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
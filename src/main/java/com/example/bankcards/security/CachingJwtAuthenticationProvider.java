@@ -0,0 +1,106 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.OutcomeTimer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+//кэш проверенных JWT перед NimbusJwtDecoder: повторный запрос с тем же токеном
+//не разбирает его и не проверяет подпись заново, а берёт готовые роли по SHA-256 токена.
+//запись живёт не дольше ttl и не дольше exp самого токена
+public class CachingJwtAuthenticationProvider implements AuthenticationProvider {
+
+    private final JwtAuthenticationProvider delegate;
+    private final Clock clock;
+    private final Duration maxTtl;
+    private final Cache<String, JwtAuthenticationToken> verified;
+    private final OutcomeTimer decodeTimer;
+
+    public CachingJwtAuthenticationProvider(JwtDecoder jwtDecoder,
+                                            Converter<Jwt, ? extends AbstractAuthenticationToken> jwtAuthConverter,
+                                            Clock clock,
+                                            MeterRegistry meterRegistry,
+                                            long maxSize,
+                                            long ttlMs) {
+        this.delegate = new JwtAuthenticationProvider(jwtDecoder);
+        this.delegate.setJwtAuthenticationConverter(jwtAuthConverter);
+        this.clock = clock;
+        this.maxTtl = Duration.ofMillis(ttlMs);
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((String digest, JwtAuthenticationToken auth) -> ttl(auth.getToken())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "security.jwt");
+        //замеряются только промахи кэша: разбор и проверка подписи. попадания видны в метриках кэша
+        this.decodeTimer = new OutcomeTimer(meterRegistry, "bankcards.auth.jwt.decode",
+                "JWT decoding and signature checks on cache misses");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        BearerTokenAuthenticationToken bearer = (BearerTokenAuthenticationToken) authentication;
+        String digest = digest(bearer.getToken());
+
+        JwtAuthenticationToken cached = verified.getIfPresent(digest);
+        if (cached == null) {
+            Authentication result = decodeTimer.record(() -> delegate.authenticate(bearer));
+            if (!(result instanceof JwtAuthenticationToken auth)) {
+                return result;
+            }
+            cached = auth;
+            if (ttl(auth.getToken()).compareTo(Duration.ZERO) > 0) {
+                verified.put(digest, auth);
+            }
+        }
+
+        //details у каждого запроса свои, поэтому наружу отдаётся копия
+        JwtAuthenticationToken copy = new JwtAuthenticationToken(cached.getToken(), cached.getAuthorities(), cached.getName());
+        copy.setDetails(bearer.getDetails());
+        return copy;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return BearerTokenAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    private Duration ttl(Jwt jwt) {
+        Instant exp = jwt.getExpiresAt();
+        if (exp == null) {
+            return maxTtl;
+        }
+        Duration untilExp = Duration.between(clock.instant(), exp);
+        return untilExp.compareTo(maxTtl) < 0 ? untilExp : maxTtl;
+    }
+
+    //в ключе кэша хранится не сам токен, а его хэш
+    private static String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Token hashing failed", e);
+        }
+    }
+}
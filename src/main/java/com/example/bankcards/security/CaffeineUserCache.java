@@ -0,0 +1,60 @@
+package com.example.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+//кэш пользователей для DaoAuthenticationProvider: id, хэш пароля и роли по username.
+//если пароль не совпал с закэшированным, провайдер сам перечитывает пользователя из БД.
+//при тёплом кэше /auth/login не читает пользователя из БД; запись строки refresh_token остаётся,
+//но она дешевле BCrypt, который логин платит в любом случае
+@Component
+public class CaffeineUserCache implements UserCache {
+
+    private final Cache<String, UserPrincipal> users;
+
+    public CaffeineUserCache(MeterRegistry meterRegistry,
+                             @Value("${card.security.user-cache.max-size:10000}") long maxSize,
+                             @Value("${card.security.user-cache.ttl-ms:300000}") long ttlMs) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "security.users");
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        UserPrincipal user = users.getIfPresent(username);
+        return user == null ? null : user.copy();
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (user instanceof UserPrincipal principal && principal.getPassword() != null) {
+            users.put(principal.getUsername(), principal.copy());
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        users.invalidate(username);
+    }
+
+    //username мог измениться, поэтому удаляются и записи с тем же id
+    public void removeUserFromCache(UUID userId, String username) {
+        if (username != null) {
+            users.invalidate(username);
+        }
+        users.asMap().values().removeIf(user -> user.getId().equals(userId));
+    }
+}
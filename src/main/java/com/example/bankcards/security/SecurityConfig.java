@@ -1,5 +1,6 @@
 package com.example.bankcards.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,6 +15,8 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -29,6 +32,7 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -44,17 +48,27 @@ public class SecurityConfig {
 
     //создание набора фильтров на вход с проверкой jvt токена
     @Bean
-    public SecurityFilterChain configure(HttpSecurity http) throws Exception {
+    public SecurityFilterChain configure(HttpSecurity http,
+                                         MeterRegistry meterRegistry,
+                                         Clock clock,
+                                         @Value("${card.security.jwt-cache.max-size:10000}") long jwtCacheSize,
+                                         @Value("${card.security.jwt-cache.ttl-ms:300000}") long jwtCacheTtlMs) throws Exception {
+        //проверенные токены кэшируются, провайдер не регистрируется бином, чтобы не попасть в AuthenticationManager логина
+        var jwtAuthenticationProvider = new CachingJwtAuthenticationProvider(jwtDecoder(), jwtAuthConverter(),
+                clock, meterRegistry, jwtCacheSize, jwtCacheTtlMs);
         http.csrf(csrf -> csrf.disable())
                 .sessionManagement(sessionManagement -> sessionManagement
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .httpBasic(basic -> basic.disable())
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/auth/**", "/swagger-ui/**","/swagger-ui.html", "/v3/api-docs/**",  "/v3/api-docs.yaml").permitAll()
+                        //actuator обслуживается только на management.server.port, на порту API этих путей нет;
+                        //цепочка фильтров общая, поэтому здесь открываются пробы и сбор метрик на порту управления
+                        .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
                         .requestMatchers("/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated())
                 .oauth2ResourceServer(aout -> aout
-                        .jwt(jwt -> jwt.decoder(jwtDecoder()).jwtAuthenticationConverter(jwtAuthConverter())));
+                        .jwt(jwt -> jwt.authenticationManager(new ProviderManager(jwtAuthenticationProvider))));
         return http.build();
     }
 
@@ -96,10 +110,15 @@ public class SecurityConfig {
     @Bean
     public DaoAuthenticationProvider daoAuthenticationProvider(
             UserDetailsService userDetailsService,
-            PasswordEncoder passwordEncoder
+            UserDetailsPasswordService userDetailsPasswordService,
+            PasswordEncoder passwordEncoder,
+            UserCache userCache
     ) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider(userDetailsService);
         provider.setPasswordEncoder(passwordEncoder);
+        provider.setUserCache(userCache);
+        //при входе хэш с устаревшей стоимостью BCrypt пересчитывается с текущей
+        provider.setUserDetailsPasswordService(userDetailsPasswordService);
         return provider;
     }
 
@@ -108,8 +127,15 @@ public class SecurityConfig {
         return new ProviderManager(provider);
     }
 
+    //BCrypt считается на своём пуле из доли ядер, пул не регистрируется как Executor-бин
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${card.security.bcrypt.strength:12}") int strength,
+                                           @Value("${card.security.bcrypt.cpu-share:0.5}") double cpuShare,
+                                           @Value("${card.security.bcrypt.queue-capacity:64}") int queueCapacity,
+                                           @Value("${card.security.bcrypt.wait-timeout-ms:5000}") long waitTimeoutMs) {
+        int threads = Math.max(1, (int) (Runtime.getRuntime().availableProcessors() * cpuShare));
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), threads, queueCapacity, waitTimeoutMs,
+                meterRegistry);
     }
 }
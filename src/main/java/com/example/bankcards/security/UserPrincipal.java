@@ -0,0 +1,28 @@
+package com.example.bankcards.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+import java.util.UUID;
+
+//пользователь вместе с id: после входа id берётся из Authentication без повторного запроса в БД
+public class UserPrincipal extends User {
+
+    private final UUID id;
+
+    public UserPrincipal(UUID id, String username, String password,
+                         Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    //ProviderManager стирает пароль у principal после входа, поэтому наружу отдаются только копии
+    public UserPrincipal copy() {
+        return new UserPrincipal(id, getUsername(), getPassword(), getAuthorities());
+    }
+}
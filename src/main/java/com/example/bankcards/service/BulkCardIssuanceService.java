@@ -0,0 +1,342 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BulkIssuanceRequest;
+import com.example.bankcards.dto.IssuanceJobResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.exception.IssuanceJobNotFoundException;
+import com.example.bankcards.exception.IssuanceJobNotResumableException;
+import com.example.bankcards.exception.IssuanceQueueFullException;
+import com.example.bankcards.exception.IssuanceTooLargeException;
+import com.example.bankcards.exception.UnknownCardOwnerException;
+import com.example.bankcards.repository.CardBulkRepository;
+import com.example.bankcards.util.PanCryptoService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//массовый выпуск карт фоновыми задачами. задача идёт порциями: номера генерируются и шифруются
+//параллельно на пуле воркеров, занятость хэшей проверяется одним запросом на порцию,
+//вставка - один JDBC batch; каждая порция - своя транзакция, прогресс виден по jobId.
+//выпущенное считается по владельцам после commit порции, поэтому упавшую задачу можно продолжить
+//через resume: она выпустит только недостающие карты, без повторов для уже обслуженных владельцев
+@Service
+public class BulkCardIssuanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkCardIssuanceService.class);
+    //совпадение случайных 16-значных номеров - редкость, повторы нужны только на случай коллизий
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final CardBulkRepository cardBulkRepository;
+    private final PanCryptoService panCryptoService;
+    private final PanAllocator panAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int chunkSize;
+    private final int maxCardsPerJob;
+    private final int workers;
+    private final Duration retention;
+    private final ThreadPoolExecutor jobExecutor;
+    private final ExecutorService workerPool;
+    private final ConcurrentMap<UUID, Job> jobs = new ConcurrentHashMap<>();
+
+    public BulkCardIssuanceService(CardBulkRepository cardBulkRepository,
+                                   PanCryptoService panCryptoService,
+                                   PanAllocator panAllocator,
+                                   PlatformTransactionManager transactionManager,
+                                   Clock clock,
+                                   @Value("${card.issuance.chunk-size:1000}") int chunkSize,
+                                   @Value("${card.issuance.max-cards-per-job:100000}") int maxCardsPerJob,
+                                   @Value("${card.issuance.max-queued-jobs:4}") int maxQueuedJobs,
+                                   @Value("${card.issuance.threads:0}") int threads,
+                                   @Value("${card.issuance.job-retention-ms:86400000}") long retentionMs) {
+        this.cardBulkRepository = cardBulkRepository;
+        this.panCryptoService = panCryptoService;
+        this.panAllocator = panAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+        this.maxCardsPerJob = maxCardsPerJob;
+        this.retention = Duration.ofMillis(retentionMs);
+        //0 - по числу ядер
+        this.workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        //задачи выполняются по одной, остальные ждут в ограниченной очереди
+        CustomizableThreadFactory jobThreads = new CustomizableThreadFactory("card-issuance-");
+        jobThreads.setDaemon(true);
+        this.jobExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueuedJobs), jobThreads, new ThreadPoolExecutor.AbortPolicy());
+
+        CustomizableThreadFactory workerThreads = new CustomizableThreadFactory("card-issuance-worker-");
+        workerThreads.setDaemon(true);
+        this.workerPool = Executors.newFixedThreadPool(workers, workerThreads);
+    }
+
+    public IssuanceJobResponse submit(BulkIssuanceRequest request) {
+        int total = request.totalCards();
+        if (total > maxCardsPerJob) {
+            throw new IssuanceTooLargeException(maxCardsPerJob);
+        }
+
+        //один запрос на все различные владельцы до постановки в очередь: опечатка в id не даёт карт-сирот
+        Set<UUID> owners = new LinkedHashSet<>();
+        request.items().forEach(item -> owners.add(item.ownerId()));
+        Set<UUID> existing = cardBulkRepository.findExistingOwnerIds(owners);
+        if (existing.size() < owners.size()) {
+            throw new UnknownCardOwnerException(owners.stream().filter(owner -> !existing.contains(owner)).toList());
+        }
+
+        Job job = new Job(UUID.randomUUID(), request.items(), clock.instant());
+        jobs.put(job.id, job);
+        try {
+            jobExecutor.execute(() -> run(job, request.items()));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new IssuanceQueueFullException();
+        }
+        return job.toResponse();
+    }
+
+    //продолжение упавшей задачи: в очередь уходят только недостающие карты каждого владельца
+    public IssuanceJobResponse resume(UUID jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new IssuanceJobNotFoundException();
+        }
+        synchronized (job) {
+            if (job.status != IssuanceJobResponse.Status.FAILED) {
+                throw new IssuanceJobNotResumableException();
+            }
+            List<BulkIssuanceRequest.Item> remaining = job.remaining();
+            String error = job.error;
+            Instant finishedAt = job.finishedAt;
+            job.status = IssuanceJobResponse.Status.QUEUED;
+            job.error = null;
+            job.finishedAt = null;
+            try {
+                jobExecutor.execute(() -> run(job, remaining));
+            } catch (RejectedExecutionException e) {
+                job.finish(IssuanceJobResponse.Status.FAILED, error, finishedAt);
+                throw new IssuanceQueueFullException();
+            }
+        }
+        return job.toResponse();
+    }
+
+    public IssuanceJobResponse getJob(UUID jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new IssuanceJobNotFoundException();
+        }
+        return job.toResponse();
+    }
+
+    @Scheduled(fixedDelayString = "${card.issuance.cleanup-interval-ms:3600000}",
+            initialDelayString = "${card.issuance.cleanup-interval-ms:3600000}")
+    public void purgeFinished() {
+        Instant before = clock.instant().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(before));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+    private void run(Job job, List<BulkIssuanceRequest.Item> items) {
+        job.status = IssuanceJobResponse.Status.RUNNING;
+        try {
+            List<UUID> chunk = new ArrayList<>(chunkSize);
+            for (BulkIssuanceRequest.Item item : items) {
+                for (int i = 0; i < item.count(); i++) {
+                    chunk.add(item.ownerId());
+                    if (chunk.size() == chunkSize) {
+                        issueChunk(job, chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                issueChunk(job, chunk);
+            }
+            job.finish(IssuanceJobResponse.Status.COMPLETED, null, clock.instant());
+        } catch (RuntimeException e) {
+            log.error("Issuance job {} failed after {} of {} cards", job.id, job.issued(), job.requested, e);
+            job.finish(IssuanceJobResponse.Status.FAILED, e.getMessage(), clock.instant());
+        }
+    }
+
+    private void issueChunk(Job job, List<UUID> owners) {
+        List<UUID> pending = owners;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<Card> cards = prepare(pending);
+            List<UUID> retry = new ArrayList<>();
+            List<UUID> inserted = transactionTemplate.execute(status -> insert(cards, retry));
+            //учитывается только после commit: откатившаяся порция будет выпущена заново при resume
+            if (inserted != null) {
+                inserted.forEach(job::issuedTo);
+            }
+            pending = retry;
+        }
+        if (!pending.isEmpty()) {
+            throw new IllegalStateException("Could not generate unique PANs for " + pending.size() + " cards");
+        }
+    }
+
+    //номера, хэши и шифротексты считаются параллельно, на каждый воркер - непрерывная часть порции
+    private List<Card> prepare(List<UUID> owners) {
+        int parts = Math.min(workers, owners.size());
+        int partSize = (owners.size() + parts - 1) / parts;
+        LocalDate today = LocalDate.now(clock);
+
+        List<CompletableFuture<List<Card>>> futures = new ArrayList<>(parts);
+        for (int from = 0; from < owners.size(); from += partSize) {
+            List<UUID> part = owners.subList(from, Math.min(owners.size(), from + partSize));
+            futures.add(CompletableFuture.supplyAsync(() -> build(part, today), workerPool));
+        }
+
+        List<Card> cards = new ArrayList<>(owners.size());
+        for (CompletableFuture<List<Card>> future : futures) {
+            cards.addAll(future.join());
+        }
+        return cards;
+    }
+
+    private List<Card> build(List<UUID> owners, LocalDate today) {
+        List<char[]> pans = new ArrayList<>(owners.size());
+        for (int i = 0; i < owners.size(); i++) {
+            pans.add(panAllocator.newPan());
+        }
+        try {
+            List<String> hashes = panCryptoService.hashAll(pans);
+            List<byte[]> encrypted = panCryptoService.encryptAll(pans);
+
+            short expiryMonth = (short) today.getMonthValue();
+            short expiryYear = (short) (today.getYear() + CardService.CARD_VALID_YEARS);
+            short keyVersion = panCryptoService.activeKeyVersion();
+            List<Card> cards = new ArrayList<>(owners.size());
+            for (int i = 0; i < owners.size(); i++) {
+                char[] pan = pans.get(i);
+                Card card = new Card(UUID.randomUUID(), owners.get(i), encrypted.get(i), hashes.get(i),
+                        new String(pan, pan.length - 4, 4), expiryMonth, expiryYear, StatusCard.ACTIVE,
+                        BigDecimal.ZERO);
+                card.setPanKeyVersion(keyVersion);
+                cards.add(card);
+            }
+            return cards;
+        } finally {
+            pans.forEach(pan -> Arrays.fill(pan, '0'));
+        }
+    }
+
+    //карты с уже занятым хэшем (в БД или повтор внутри порции) уходят в retry и получат новые номера
+    private List<UUID> insert(List<Card> cards, List<UUID> retry) {
+        Set<String> taken = cardBulkRepository.findExistingPanHashes(cards.stream().map(Card::getPanHash).toList());
+        Set<String> seen = new HashSet<>();
+        List<Card> fresh = new ArrayList<>(cards.size());
+        for (Card card : cards) {
+            if (taken.contains(card.getPanHash()) || !seen.add(card.getPanHash())) {
+                retry.add(card.getOwnerId());
+            } else {
+                fresh.add(card);
+            }
+        }
+
+        int[] counts = cardBulkRepository.insertIgnoringDuplicates(fresh);
+        List<UUID> inserted = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                retry.add(fresh.get(i).getOwnerId());
+            } else {
+                inserted.add(fresh.get(i).getOwnerId());
+            }
+        }
+        return inserted;
+    }
+
+    private static final class Job {
+
+        private final UUID id;
+        private final int requested;
+        private final Instant createdAt;
+        //заказано и выпущено по владельцам; один владелец может встречаться в запросе несколько раз
+        private final Map<UUID, Integer> requestedByOwner = new LinkedHashMap<>();
+        private final ConcurrentMap<UUID, AtomicInteger> issuedByOwner = new ConcurrentHashMap<>();
+        private final AtomicInteger issued = new AtomicInteger();
+        private volatile IssuanceJobResponse.Status status = IssuanceJobResponse.Status.QUEUED;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        private Job(UUID id, List<BulkIssuanceRequest.Item> items, Instant createdAt) {
+            this.id = id;
+            this.createdAt = createdAt;
+            for (BulkIssuanceRequest.Item item : items) {
+                requestedByOwner.merge(item.ownerId(), item.count(), Integer::sum);
+            }
+            this.requested = items.stream().mapToInt(BulkIssuanceRequest.Item::count).sum();
+        }
+
+        private void issuedTo(UUID ownerId) {
+            issuedByOwner.computeIfAbsent(ownerId, owner -> new AtomicInteger()).incrementAndGet();
+            issued.incrementAndGet();
+        }
+
+        private int issued() {
+            return issued.get();
+        }
+
+        private List<BulkIssuanceRequest.Item> remaining() {
+            List<BulkIssuanceRequest.Item> remaining = new ArrayList<>();
+            requestedByOwner.forEach((owner, count) -> {
+                AtomicInteger done = issuedByOwner.get(owner);
+                int left = count - (done == null ? 0 : done.get());
+                if (left > 0) {
+                    remaining.add(new BulkIssuanceRequest.Item(owner, left));
+                }
+            });
+            return remaining;
+        }
+
+        private void finish(IssuanceJobResponse.Status status, String error, Instant finishedAt) {
+            this.error = error;
+            this.finishedAt = finishedAt;
+            this.status = status;
+        }
+
+        private IssuanceJobResponse toResponse() {
+            return new IssuanceJobResponse(id, status, requested, issued.get(), createdAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.YearMonth;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//переводит карты с истёкшим сроком в EXPIRED. каждая порция - отдельный короткий UPDATE в своей транзакции,
+//между порциями пауза, поэтому проход не держит блокировки долго и не отнимает соединения у переводов.
+//проход идёт на своём потоке: у планировщика Spring один поток, и многоминутный проход остановил бы
+//проверку реплик, пополнение пула PAN, снимки журнала и метрики блокировок
+@Service
+public class CardExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(CardExpirySweeper.class);
+
+    private final CardRepository cardRepository;
+    private final CardViewCache cardViewCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int chunkSize;
+    private final long pauseMs;
+    private final Counter expiredCounter;
+    private final ExecutorService sweepExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CardExpirySweeper(CardRepository cardRepository,
+                             CardViewCache cardViewCache,
+                             PlatformTransactionManager transactionManager,
+                             Clock clock,
+                             MeterRegistry meterRegistry,
+                             @Value("${card.expiry.chunk-size:1000}") int chunkSize,
+                             @Value("${card.expiry.pause-ms:100}") long pauseMs) {
+        this.cardRepository = cardRepository;
+        this.cardViewCache = cardViewCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+        this.pauseMs = pauseMs;
+        this.expiredCounter = Counter.builder("bankcards.card.expired")
+                .description("Cards moved to EXPIRED by the expiry sweeper")
+                .register(meterRegistry);
+
+        CustomizableThreadFactory sweepThreads = new CustomizableThreadFactory("card-expiry-");
+        sweepThreads.setDaemon(true);
+        this.sweepExecutor = Executors.newSingleThreadExecutor(sweepThreads);
+    }
+
+    //планировщик только передаёт проход своему потоку; если прошлый проход ещё идёт, новый не запускается
+    @Scheduled(fixedDelayString = "${card.expiry.sweep-interval-ms:3600000}",
+            initialDelayString = "${card.expiry.initial-delay-ms:60000}")
+    public void scheduleSweep() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sweepExecutor.execute(() -> {
+                try {
+                    sweep();
+                } catch (RuntimeException e) {
+                    log.warn("Expiry sweep failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweepExecutor.shutdownNow();
+    }
+
+    //порция меньше chunkSize - просроченных карт больше нет (или остались только занятые, они уйдут в следующий проход)
+    public int sweep() {
+        YearMonth current = YearMonth.now(clock);
+        short year = (short) current.getYear();
+        short month = (short) current.getMonthValue();
+
+        int total = 0;
+        while (true) {
+            Integer expired = transactionTemplate.execute(status -> cardRepository.expireBefore(year, month, chunkSize));
+            int count = expired == null ? 0 : expired;
+            total += count;
+            expiredCounter.increment(count);
+            if (count < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (total > 0) {
+            //UPDATE не возвращает, какие карты сменили статус; проход с изменениями бывает раз в месяц
+            cardViewCache.evictAll();
+            log.info("Expiry sweep moved {} cards to EXPIRED", total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.bankcards.service;
+
+public enum CardExportFormat {
+
+    NDJSON("application/x-ndjson", ".ndjson"),
+    CSV("text/csv", ".csv");
+
+    private final String contentType;
+    private final String extension;
+
+    CardExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
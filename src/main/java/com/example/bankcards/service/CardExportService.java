@@ -0,0 +1,81 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.repository.CardRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+//выгрузка карт со статусом для сверки: строки идут из курсора БД сразу в поток ответа как CardResponse,
+//без управляемых сущностей, поэтому память не растёт с числом карт.
+//readOnly-транзакция нужна драйверу для чтения по fetch size и уводит выгрузку на реплику, если она есть
+@Service
+public class CardExportService {
+
+    private static final String CSV_HEADER = "cardId,panMasked,expiryMonth,expiryYear,statusCard,balance\n";
+
+    private final CardRepository cardRepository;
+    //поток ответа закрывает вызывающий
+    private final ObjectWriter ndjsonWriter;
+
+    public CardExportService(CardRepository cardRepository, JsonMapper jsonMapper) {
+        this.cardRepository = cardRepository;
+        this.ndjsonWriter = jsonMapper.writerFor(CardResponse.class)
+                .withRootValueSeparator("")
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET);
+    }
+
+    //возвращает число выгруженных карт
+    @Transactional(readOnly = true)
+    public long exportByStatus(StatusCard status, CardExportFormat format, OutputStream out) throws IOException {
+        try (Stream<CardResponse> cards = cardRepository.streamViewsByStatus(status)) {
+            return format == CardExportFormat.CSV
+                    ? writeCsv(cards.iterator(), out)
+                    : writeNdjson(cards.iterator(), out);
+        }
+    }
+
+    private long writeNdjson(Iterator<CardResponse> cards, OutputStream out) {
+        long count = 0;
+        try (JsonGenerator generator = ndjsonWriter.createGenerator(out)) {
+            while (cards.hasNext()) {
+                ndjsonWriter.writeValue(generator, cards.next());
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long writeCsv(Iterator<CardResponse> cards, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        while (cards.hasNext()) {
+            CardResponse row = cards.next();
+            //ни одно поле не содержит запятых, кавычек и переводов строк, экранирование не нужно
+            writer.append(row.cardId().toString()).append(',')
+                    .append(row.panMasked()).append(',')
+                    .append(Short.toString(row.expiryMonth())).append(',')
+                    .append(Short.toString(row.expiryYear())).append(',')
+                    .append(row.statusCard().name()).append(',')
+                    .append(row.balance().toPlainString()).append('\n');
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+}
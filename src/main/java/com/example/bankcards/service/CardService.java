@@ -1,82 +1,119 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.OutcomeTimer;
+import com.example.bankcards.config.ReadYourWrites;
+import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
 import com.example.bankcards.exception.CardAlreadyExistsException;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardBulkRepository;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.util.PanCryptoServiceImpl;
-import com.example.bankcards.util.PanGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 @Service
 public class CardService {
 
-    private static final int CARD_VALID_YEARS = 5;
+    static final int CARD_VALID_YEARS = 5;
+    //повторы нужны только если номер из пула успели занять после его проверки
+    static final int MAX_CREATE_ATTEMPTS = 3;
+    static final int MAX_SLICE_SIZE = 100;
+    //nil uuid меньше любого id карты в порядке PostgreSQL, с него начинается первая порция
+    private static final UUID FIRST_SLICE = new UUID(0, 0);
 
     private final CardRepository cardRepository;
-    private final PanCryptoServiceImpl panCryptoService;
+    private final CardBulkRepository cardBulkRepository;
+    private final PanAllocator panAllocator;
+    private final CardViewCache cardViewCache;
+    private final ReadYourWrites readYourWrites;
     private final Clock clock;
+    private final OutcomeTimer createTimer;
 
-    public CardService(CardRepository cardRepository, PanCryptoServiceImpl pan, Clock clock) {
+    public CardService(CardRepository cardRepository, CardBulkRepository cardBulkRepository,
+                       PanAllocator panAllocator, CardViewCache cardViewCache, ReadYourWrites readYourWrites,
+                       MeterRegistry meterRegistry, Clock clock) {
         this.cardRepository = cardRepository;
-        this.panCryptoService = pan;
+        this.cardBulkRepository = cardBulkRepository;
+        this.panAllocator = panAllocator;
+        this.cardViewCache = cardViewCache;
+        this.readYourWrites = readYourWrites;
         this.clock = clock;
+        this.createTimer = new OutcomeTimer(meterRegistry, "bankcards.card.create",
+                "Card issuance by outcome: success or the exception type");
     }
 
+    //номер берётся готовым из пула, без отдельной проверки existsByPanHash;
+    //ON CONFLICT по pan_hash - последняя защита, при совпадении берётся следующий номер
     @Transactional
     public Card create(UUID ownerId) {
-        String pan = PanGenerator.generate();
-        String panHash = panCryptoService.hash(pan);
-
-        if (cardRepository.existsByPanHash(panHash)) {
+        return createTimer.record(() -> {
+            LocalDate now = LocalDate.now(clock);
+            short expiryMonth = (short) now.getMonthValue();
+            short expiryYear = (short) (now.getYear() + CARD_VALID_YEARS);
+
+            for (int attempt = 0; attempt < MAX_CREATE_ATTEMPTS; attempt++) {
+                PanAllocator.AllocatedPan pan = panAllocator.take();
+                Card card = new Card(
+                        UUID.randomUUID(),
+                        ownerId,
+                        pan.encrypted(),
+                        pan.panHash(),
+                        pan.last4(),
+                        expiryMonth,
+                        expiryYear,
+                        StatusCard.ACTIVE,
+                        BigDecimal.ZERO
+                );
+                card.setPanKeyVersion(pan.keyVersion());
+                if (cardBulkRepository.insertIgnoringDuplicates(List.of(card))[0] == 1) {
+                    readYourWrites.recordWrite(ownerId);
+                    return card;
+                }
+            }
             throw new CardAlreadyExistsException();
-        }
-
-        String last4 = last4(pan);
-        byte[] encryptedPan = panCryptoService.encrypt(pan);
-
-        LocalDate now = LocalDate.now(clock);
-        short expiryMonth = (short) now.getMonthValue();
-        short expiryYear = (short) (now.getYear() + CARD_VALID_YEARS);
-
-        Card card = new Card(
-                null,
-                ownerId,
-                encryptedPan,
-                panHash,
-                last4,
-                expiryMonth,
-                expiryYear,
-                StatusCard.ACTIVE,
-                BigDecimal.ZERO
-        );
+        });
+    }
 
-        return cardRepository.save(card);
+    //без транзакции: при попадании в кэш соединение с БД не берётся.
+    //кэш заполняется с primary, чтобы отстающая реплика не закрепила в нём старые данные
+    public CardResponse getMyById(UUID ownerId, UUID cardId) {
+        return cardViewCache.get(ownerId, cardId, () -> ReadYourWrites.onPrimary(
+                () -> cardRepository.findViewByIdAndOwnerId(cardId, ownerId)
+                        .orElseThrow(CardNotFoundException::new)));
     }
 
     @Transactional(readOnly = true)
-    public Card getMyById(UUID ownerId, UUID cardId) {
-        return cardRepository.findByIdAndOwnerId(cardId, ownerId)
-                .orElseThrow(CardNotFoundException::new);
+    public Page<CardResponse> getMyCards(UUID ownerId, Pageable pageable) {
+        return readYourWrites.read(ownerId, () -> cardRepository.findViewsByOwnerId(ownerId, pageable));
     }
 
     @Transactional(readOnly = true)
-    public Page<Card> getMyCards(UUID ownerId, Pageable pageable) {
-        return cardRepository.findAllByOwnerId(ownerId, pageable);
+    public Page<CardResponse> getMyCardsByStatus(UUID ownerId, StatusCard status, Pageable pageable) {
+        return readYourWrites.read(ownerId, () -> cardRepository.findViewsByOwnerIdAndStatus(ownerId, status, pageable));
     }
 
     @Transactional(readOnly = true)
-    public Page<Card> getMyCardsByStatus(UUID ownerId, StatusCard status, Pageable pageable) {
-        return cardRepository.findAllByOwnerIdAndStatus(ownerId, status, pageable);
+    public Slice<CardResponse> getMyCardsAfter(UUID ownerId, StatusCard status, UUID afterId, int size) {
+        int limit = sliceSize(size);
+        UUID after = afterId == null ? FIRST_SLICE : afterId;
+        List<CardResponse> cards = readYourWrites.read(ownerId, () -> (status == null)
+                ? cardRepository.findViewsByOwnerIdAfter(ownerId, after, Limit.of(limit + 1))
+                : cardRepository.findViewsByOwnerIdAndStatusAfter(ownerId, status, after, Limit.of(limit + 1)));
+        return toSlice(cards, limit);
     }
 
     @Transactional
@@ -85,6 +122,8 @@ public class CardService {
                 .orElseThrow(CardNotFoundException::new);
 
         card.setStatus(StatusCard.BLOCKED);
+        cardViewCache.evict(ownerId, cardId);
+        readYourWrites.recordWrite(ownerId);
         return cardRepository.save(card);
     }
 
@@ -94,23 +133,40 @@ public class CardService {
                 .orElseThrow(CardNotFoundException::new);
 
         card.setStatus(status);
+        cardViewCache.evict(card.getOwnerId(), cardId);
+        readYourWrites.recordWrite(card.getOwnerId());
         return cardRepository.save(card);
     }
 
+    //карта загружается, а не проверяется existsById: для сброса кэша нужен её владелец
     @Transactional
     public void adminDelete(UUID cardId) {
-        if (!cardRepository.existsById(cardId)) {
-            throw new CardNotFoundException();
-        }
-        cardRepository.deleteById(cardId);
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(CardNotFoundException::new);
+        cardViewCache.evict(card.getOwnerId(), cardId);
+        readYourWrites.recordWrite(card.getOwnerId());
+        cardRepository.delete(card);
     }
 
     @Transactional(readOnly = true)
-    public Page<Card> adminGetAllByStatus(StatusCard status, Pageable pageable) {
-        return cardRepository.findAllByStatus(status, pageable);
+    public Page<CardResponse> adminGetAllByStatus(StatusCard status, Pageable pageable) {
+        return cardRepository.findViewsByStatus(status, pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<CardResponse> adminGetAllByStatusAfter(StatusCard status, UUID afterId, int size) {
+        int limit = sliceSize(size);
+        UUID after = afterId == null ? FIRST_SLICE : afterId;
+        return toSlice(cardRepository.findViewsByStatusAfter(status, after, Limit.of(limit + 1)), limit);
+    }
+
+    //запрашивается на одну карту больше: по ней видно, есть ли следующая порция
+    private static Slice<CardResponse> toSlice(List<CardResponse> cards, int size) {
+        boolean hasNext = cards.size() > size;
+        return new SliceImpl<>(hasNext ? cards.subList(0, size) : cards, PageRequest.ofSize(size), hasNext);
     }
 
-    private String last4(String pan) {
-        return pan.substring(pan.length() - 4);
+    private static int sliceSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SLICE_SIZE));
     }
 }
\ No newline at end of file
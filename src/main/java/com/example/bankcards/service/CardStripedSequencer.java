@@ -0,0 +1,115 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.TransferLockTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+//очередь в памяти перед блокировкой строк bank_card: переводы по одной карте ждут здесь,
+//а не на row lock в PostgreSQL, и не держат соединение из пула, пока ждут.
+//карта попадает в один из фиксированного числа stripe по хешу id.
+//крупные пакеты (больше max-cards карт) идут мимо очереди: иначе пакет держал бы большую часть stripe
+//всю транзакцию, и одиночные переводы по несвязанным картам ждали бы его и получали 503.
+//такие пакеты полагаются на свой упорядоченный FOR UPDATE
+@Component
+public class CardStripedSequencer {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final boolean enabled;
+    private final long waitTimeoutMs;
+    private final int maxCards;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public CardStripedSequencer(
+            @Value("${card.transfer.sequencer.enabled:true}") boolean enabled,
+            @Value("${card.transfer.sequencer.stripes:1024}") int stripes,
+            @Value("${card.transfer.sequencer.wait-timeout-ms:5000}") long waitTimeoutMs,
+            @Value("${card.transfer.sequencer.max-cards:16}") int maxCards,
+            MeterRegistry meterRegistry
+    ) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.enabled = enabled;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.maxCards = maxCards;
+        this.waitTimer = Timer.builder("bankcards.transfer.sequencer.wait")
+                .description("Time transfers spent queued in memory behind other transfers of the same card")
+                .register(meterRegistry);
+        meterRegistry.gauge("bankcards.transfer.sequencer.waiting", waiting);
+    }
+
+    public <T> T execute(Collection<UUID> cardIds, Supplier<T> action) {
+        if (!enabled || cardIds.size() > maxCards) {
+            return action.get();
+        }
+        //stripe всегда берутся по возрастанию индекса, иначе два перевода могли бы ждать друг друга
+        int[] indexes = stripeIndexes(cardIds);
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                ReentrantLock lock = stripes[index];
+                if (!lock.tryLock()) {
+                    await(lock);
+                }
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+
+    private void await(ReentrantLock lock) {
+        waiting.incrementAndGet();
+        Timer.Sample sample = Timer.start();
+        try {
+            if (!lock.tryLock(waitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new TransferLockTimeoutException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferLockTimeoutException();
+        } finally {
+            sample.stop(waitTimer);
+            waiting.decrementAndGet();
+        }
+    }
+
+    private int[] stripeIndexes(Collection<UUID> cardIds) {
+        return cardIds.stream()
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    int stripeOf(UUID cardId) {
+        int h = cardId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    int waitingCount() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+//кэш карточек для GET /api/cards/{cardId} по (владелец, карта). в кэше лежит future загрузки: одновременные
+//чтения одной карты ждут одну загрузку, а сам запрос к БД идёт вне блокировки кэша и не держит носитель
+//виртуального потока. сброс ключа убирает и незавершённую загрузку, так что значение, прочитанное до commit,
+//в кэш уже не попадёт. ttl ограничивает устаревание от записей, которые этот экземпляр не видит
+@Component
+public class CardViewCache {
+
+    private final AsyncCache<Key, CardResponse> views;
+
+    public CardViewCache(MeterRegistry meterRegistry,
+                         @Value("${card.view-cache.max-size:100000}") long maxSize,
+                         @Value("${card.view-cache.ttl-ms:60000}") long ttlMs) {
+        this.views = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, views, "cards.view");
+    }
+
+    //исключение загрузчика (карта не найдена) наружу, в кэш ничего не попадает
+    public CardResponse get(UUID ownerId, UUID cardId, Supplier<CardResponse> loader) {
+        CompletableFuture<CardResponse> mine = new CompletableFuture<>();
+        CompletableFuture<CardResponse> view = views.get(new Key(ownerId, cardId), (key, executor) -> mine);
+        if (view == mine) {
+            try {
+                mine.complete(loader.get());
+            } catch (RuntimeException e) {
+                mine.completeExceptionally(e);
+            }
+        }
+        try {
+            return view.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    //сброс сразу и ещё раз после завершения транзакции: чтение между изменением и commit
+    //видит старую строку и могло вернуть её в кэш
+    public void evict(UUID ownerId, UUID cardId) {
+        Key key = new Key(ownerId, cardId);
+        views.synchronous().invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    views.synchronous().invalidate(key);
+                }
+            });
+        }
+    }
+
+    //для массовых UPDATE, после которых неизвестно, какие карты изменились
+    public void evictAll() {
+        views.synchronous().invalidateAll();
+    }
+
+    long size() {
+        views.synchronous().cleanUp();
+        return views.synchronous().estimatedSize();
+    }
+
+    private record Key(UUID ownerId, UUID cardId) {}
+}
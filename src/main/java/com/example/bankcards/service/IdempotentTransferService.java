@@ -0,0 +1,181 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.TransferIdempotency;
+import com.example.bankcards.exception.IdempotencyKeyInProgressException;
+import com.example.bankcards.exception.IdempotencyKeyReusedException;
+import com.example.bankcards.exception.InvalidIdempotencyKeyException;
+import com.example.bankcards.repository.TransferIdempotencyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//перевод с Idempotency-Key: выполненный перевод повторно не применяется.
+//результаты хранятся в transfer_idempotency, перед таблицей - ограниченный кэш в памяти,
+//а одновременный дубликат на этом же экземпляре ждёт результат первого запроса
+@Service
+public class IdempotentTransferService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final TransferService transferService;
+    private final TransferIdempotencyRepository idempotencyRepository;
+    private final Clock clock;
+    private final Cache<Key, Outcome> outcomes;
+    private final ConcurrentMap<Key, Pending> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutMs;
+    private final Duration retention;
+
+    public IdempotentTransferService(TransferService transferService,
+                                     TransferIdempotencyRepository idempotencyRepository,
+                                     Clock clock,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${card.transfer.idempotency.cache-size:10000}") long cacheSize,
+                                     @Value("${card.transfer.idempotency.cache-ttl-ms:600000}") long cacheTtlMs,
+                                     @Value("${card.transfer.idempotency.wait-timeout-ms:10000}") long waitTimeoutMs,
+                                     @Value("${card.transfer.idempotency.retention-ms:86400000}") long retentionMs) {
+        this.transferService = transferService;
+        this.idempotencyRepository = idempotencyRepository;
+        this.clock = clock;
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .recordStats()
+                .build();
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.retention = Duration.ofMillis(retentionMs);
+        CaffeineCacheMetrics.monitor(meterRegistry, outcomes, "transfer.idempotency");
+    }
+
+    //возвращает id перевода; для повтора - id перевода, выполненного первым запросом
+    public UUID transfer(UUID ownerId, String idempotencyKey, TransferRequest req) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException();
+        }
+        Key key = new Key(ownerId, idempotencyKey);
+        String requestHash = requestHash(req);
+
+        while (true) {
+            Outcome cached = outcomes.getIfPresent(key);
+            if (cached != null) {
+                return replay(cached, requestHash);
+            }
+
+            Pending mine = new Pending(requestHash, new CompletableFuture<>());
+            Pending running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                try {
+                    Outcome outcome = execute(key, requestHash, req);
+                    outcomes.put(key, outcome);
+                    mine.result().complete(outcome);
+                    return replay(outcome, requestHash);
+                } catch (RuntimeException ex) {
+                    mine.result().completeExceptionally(ex);
+                    throw ex;
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            }
+
+            if (!running.requestHash().equals(requestHash)) {
+                throw new IdempotencyKeyReusedException();
+            }
+            //ошибка первого запроса откатила перевод и ключ не занят, поэтому дубликат получает ту же ошибку
+            Outcome outcome = await(running.result());
+            if (outcome != null) {
+                return replay(outcome, requestHash);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${card.transfer.idempotency.cleanup-interval-ms:3600000}",
+            initialDelayString = "${card.transfer.idempotency.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        idempotencyRepository.deleteCreatedBefore(clock.instant().minus(retention));
+    }
+
+    private Outcome execute(Key key, String requestHash, TransferRequest req) {
+        //повтор после рестарта или с другого экземпляра: результат уже в таблице
+        Optional<TransferIdempotency> stored = idempotencyRepository
+                .findByOwnerIdAndIdempotencyKey(key.ownerId(), key.idempotencyKey());
+        if (stored.isPresent()) {
+            return Outcome.from(stored.get());
+        }
+
+        UUID transferId = transferService.transfer(key.ownerId(), req, id -> idempotencyRepository.claim(
+                id, key.ownerId(), key.idempotencyKey(), requestHash, clock.instant()) == 1);
+        if (transferId != null) {
+            return new Outcome(transferId, requestHash);
+        }
+
+        //ключ занял параллельный запрос на другом экземпляре, его транзакция уже зафиксирована
+        return idempotencyRepository.findByOwnerIdAndIdempotencyKey(key.ownerId(), key.idempotencyKey())
+                .map(Outcome::from)
+                .orElseThrow(IdempotencyKeyInProgressException::new);
+    }
+
+    private Outcome await(CompletableFuture<Outcome> result) {
+        try {
+            return result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException();
+        }
+    }
+
+    private static UUID replay(Outcome outcome, String requestHash) {
+        if (!outcome.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException();
+        }
+        return outcome.transferId();
+    }
+
+    //сумма приводится к каноничному виду: 10 и 10.00 - один и тот же перевод
+    static String requestHash(TransferRequest req) {
+        String payload = req.fromCard() + "|" + req.toCard() + "|" + req.amount().stripTrailingZeros().toPlainString();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Request hashing failed", e);
+        }
+    }
+
+    private record Key(UUID ownerId, String idempotencyKey) {}
+
+    private record Outcome(UUID transferId, String requestHash) {
+        static Outcome from(TransferIdempotency stored) {
+            return new Outcome(stored.getTransferId(), stored.getRequestHash());
+        }
+    }
+
+    private record Pending(String requestHash, CompletableFuture<Outcome> result) {}
+}
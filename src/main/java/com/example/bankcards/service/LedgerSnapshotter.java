@@ -0,0 +1,55 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardBalanceSnapshotRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+
+//фоновое сжатие журнала: для карт с новыми записями сохраняет контрольную точку баланса.
+//журнал обрабатывается диапазонами seq, каждый диапазон - отдельная короткая транзакция
+@Component
+public class LedgerSnapshotter {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final CardBalanceSnapshotRepository snapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final long chunkSize;
+    private final Duration safetyLag;
+
+    public LedgerSnapshotter(LedgerEntryRepository ledgerEntryRepository,
+                             CardBalanceSnapshotRepository snapshotRepository,
+                             PlatformTransactionManager transactionManager,
+                             Clock clock,
+                             @Value("${card.ledger.snapshot.chunk-size:10000}") long chunkSize,
+                             @Value("${card.ledger.snapshot.safety-lag-ms:5000}") long safetyLagMs) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+        this.safetyLag = Duration.ofMillis(safetyLagMs);
+    }
+
+    @Scheduled(fixedDelayString = "${card.ledger.snapshot.interval-ms:60000}",
+            initialDelayString = "${card.ledger.snapshot.interval-ms:60000}")
+    public void compact() {
+        //свежие записи не трогаем: транзакция с меньшим seq может ещё не закоммититься
+        long upperSeq = ledgerEntryRepository.findMaxSeqCreatedBefore(clock.instant().minus(safetyLag))
+                .orElse(0L);
+        long fromSeq = snapshotRepository.findMaxLedgerSeq();
+
+        while (fromSeq < upperSeq) {
+            long from = fromSeq;
+            long to = Math.min(upperSeq, fromSeq + chunkSize);
+            transactionTemplate.executeWithoutResult(status -> snapshotRepository.compactRange(from, to));
+            fromSeq = to;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.TransferLockTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+//выполняет транзакцию с блокировками строк bank_card и повторяет её при deadlock / lock timeout.
+//каждая попытка - новая транзакция, поэтому повтор нельзя делать внутри @Transactional метода
+@Component
+public class LockingTransactionExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final Counter retryCounter;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+
+    public LockingTransactionExecutor(
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${card.transfer.lock-retry.max-attempts:3}") int maxAttempts,
+            @Value("${card.transfer.lock-retry.backoff-ms:20}") long backoffMs,
+            @Value("${card.transfer.lock-retry.max-backoff-ms:200}") long maxBackoffMs
+    ) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retryCounter = meterRegistry.counter("bankcards.transfer.lock.retries");
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public <T> T execute(TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (PessimisticLockingFailureException ex) {
+                if (attempt >= maxAttempts) {
+                    throw new TransferLockTimeoutException();
+                }
+                retryCounter.increment();
+                pause(attempt);
+            }
+        }
+    }
+
+    //экспоненциальная задержка с jitter, ограниченная сверху maxBackoffMs
+    private void pause(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 16));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferLockTimeoutException();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardBulkRepository;
+import com.example.bankcards.util.PanCryptoService;
+import com.example.bankcards.util.PanGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//выдача номеров карт: Luhn-валидные PAN в настроенных диапазонах BIN.
+//фоновое пополнение держит пул уже захэшированных и зашифрованных номеров, свободных на момент проверки,
+//так что создание карты берёт готовый номер из очереди без запроса к БД
+@Component
+public class PanAllocator {
+
+    private final PanCryptoService panCryptoService;
+    private final CardBulkRepository cardBulkRepository;
+    private final List<BinRange> binRanges;
+    private final long binCount;
+    private final int panLength;
+    private final int poolSize;
+    private final int refillBatch;
+    private final Queue<AllocatedPan> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger available = new AtomicInteger();
+    private final Counter misses;
+
+    public PanAllocator(PanCryptoService panCryptoService,
+                        CardBulkRepository cardBulkRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${card.pan.bin-ranges:400000-400999}") String binRanges,
+                        @Value("${card.pan.length:16}") int panLength,
+                        @Value("${card.pan.pool.size:1000}") int poolSize,
+                        @Value("${card.pan.pool.refill-batch:200}") int refillBatch) {
+        this.panCryptoService = panCryptoService;
+        this.cardBulkRepository = cardBulkRepository;
+        this.binRanges = BinRange.parseAll(binRanges, panLength);
+        this.binCount = this.binRanges.stream().mapToLong(BinRange::size).sum();
+        this.panLength = panLength;
+        this.poolSize = poolSize;
+        this.refillBatch = refillBatch;
+
+        Gauge.builder("bankcards.pan.pool.available", available, AtomicInteger::get)
+                .description("Prepared PANs ready for card creation")
+                .register(meterRegistry);
+        this.misses = Counter.builder("bankcards.pan.pool.misses")
+                .description("Card creations that found the PAN pool empty")
+                .register(meterRegistry);
+    }
+
+    //пустой пул не ошибка: номер готовится на месте, от совпадения защищает ON CONFLICT при вставке
+    public AllocatedPan take() {
+        AllocatedPan pan = pool.poll();
+        if (pan != null) {
+            available.decrementAndGet();
+            return pan;
+        }
+        misses.increment();
+        return prepare(1).get(0);
+    }
+
+    //новый номер в одном из диапазонов BIN; вызывающий затирает массив после использования
+    public char[] newPan() {
+        long index = ThreadLocalRandom.current().nextLong(binCount);
+        for (BinRange range : binRanges) {
+            if (index < range.size()) {
+                return PanGenerator.generate(range.bin(index), panLength);
+            }
+            index -= range.size();
+        }
+        throw new IllegalStateException("BIN range selection failed");
+    }
+
+    @Scheduled(fixedDelayString = "${card.pan.pool.refill-interval-ms:1000}")
+    public void refill() {
+        while (available.get() < poolSize) {
+            List<AllocatedPan> batch = prepare(Math.min(refillBatch, poolSize - available.get()));
+            Set<String> taken = cardBulkRepository.findExistingPanHashes(
+                    batch.stream().map(AllocatedPan::panHash).toList());
+
+            int added = 0;
+            for (AllocatedPan pan : batch) {
+                if (!taken.contains(pan.panHash())) {
+                    pool.add(pan);
+                    added++;
+                }
+            }
+            available.addAndGet(added);
+            if (added == 0) {
+                return;
+            }
+        }
+    }
+
+    int available() {
+        return available.get();
+    }
+
+    private List<AllocatedPan> prepare(int count) {
+        List<char[]> pans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pans.add(newPan());
+        }
+        try {
+            List<String> hashes = panCryptoService.hashAll(pans);
+            List<byte[]> encrypted = panCryptoService.encryptAll(pans);
+            short keyVersion = panCryptoService.activeKeyVersion();
+
+            List<AllocatedPan> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                char[] pan = pans.get(i);
+                result.add(new AllocatedPan(hashes.get(i), encrypted.get(i), keyVersion, new String(pan, pan.length - 4, 4)));
+            }
+            return result;
+        } finally {
+            pans.forEach(pan -> Arrays.fill(pan, '0'));
+        }
+    }
+
+    //открытый номер в пуле не хранится
+    public record AllocatedPan(String panHash, byte[] encrypted, short keyVersion, String last4) {}
+
+    //диапазон BIN одной длины, например 400000-400999; одиночный BIN - диапазон из одного значения
+    private record BinRange(long from, long to, int digits) {
+
+        long size() {
+            return to - from + 1;
+        }
+
+        String bin(long index) {
+            String value = Long.toString(from + index);
+            return "0".repeat(digits - value.length()) + value;
+        }
+
+        static List<BinRange> parseAll(String ranges, int panLength) {
+            List<BinRange> result = new ArrayList<>();
+            for (String range : ranges.split(",")) {
+                String trimmed = range.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                String[] bounds = trimmed.split("-", 2);
+                String from = bounds[0].trim();
+                String to = bounds.length == 2 ? bounds[1].trim() : from;
+                if (!from.matches("\\d{6,8}") || from.length() != to.length() || !to.matches("\\d+")
+                        || Long.parseLong(from) > Long.parseLong(to) || from.length() >= panLength - 1) {
+                    throw new IllegalArgumentException("Invalid BIN range: " + trimmed);
+                }
+                result.add(new BinRange(Long.parseLong(from), Long.parseLong(to), from.length()));
+            }
+            if (result.isEmpty()) {
+                throw new IllegalArgumentException("At least one BIN range is required");
+            }
+            return List.copyOf(result);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.KeyRotationResponse;
+import com.example.bankcards.entity.PanKeyRotation;
+import com.example.bankcards.repository.CardBulkRepository;
+import com.example.bankcards.repository.PanKeyRotationRepository;
+import com.example.bankcards.util.PanCryptoService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+//перешифрование PAN под активную версию ключа. карты читаются порциями по id, шифротексты
+//пересчитываются параллельно, запись порции и контрольная точка - одна короткая транзакция.
+//после ошибки или рестарта задача продолжает с last_card_id, уже перешифрованные карты отсекает фильтр по версии
+@Service
+public class PanKeyRotationService {
+
+    private static final Logger log = LoggerFactory.getLogger(PanKeyRotationService.class);
+    private static final int MAX_ATTEMPTS = 5;
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final CardBulkRepository cardBulkRepository;
+    private final PanKeyRotationRepository rotationRepository;
+    private final PanCryptoService panCryptoService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int chunkSize;
+    private final long pauseMs;
+    private final long lockTimeoutMs;
+    private final int workers;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService workerPool;
+    //не synchronized: внутри запросы к БД, на виртуальном потоке монитор держал бы носитель
+    private final ReentrantLock launchLock = new ReentrantLock();
+
+    private volatile boolean running;
+    private volatile String error;
+
+    public PanKeyRotationService(CardBulkRepository cardBulkRepository,
+                                 PanKeyRotationRepository rotationRepository,
+                                 PanCryptoService panCryptoService,
+                                 PlatformTransactionManager transactionManager,
+                                 Clock clock,
+                                 @Value("${card.crypto.rotation.chunk-size:500}") int chunkSize,
+                                 @Value("${card.crypto.rotation.pause-ms:50}") long pauseMs,
+                                 @Value("${card.crypto.rotation.lock-timeout-ms:2000}") long lockTimeoutMs,
+                                 @Value("${card.crypto.rotation.threads:0}") int threads) {
+        this.cardBulkRepository = cardBulkRepository;
+        this.rotationRepository = rotationRepository;
+        this.panCryptoService = panCryptoService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+        this.pauseMs = pauseMs;
+        this.lockTimeoutMs = lockTimeoutMs;
+        //0 - по числу ядер
+        this.workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        CustomizableThreadFactory jobThreads = new CustomizableThreadFactory("pan-rotation-");
+        jobThreads.setDaemon(true);
+        this.jobExecutor = Executors.newSingleThreadExecutor(jobThreads);
+
+        CustomizableThreadFactory workerThreads = new CustomizableThreadFactory("pan-rotation-worker-");
+        workerThreads.setDaemon(true);
+        this.workerPool = Executors.newFixedThreadPool(workers, workerThreads);
+    }
+
+    //повторный вызов во время работы ничего не запускает; после завершения проходит таблицу заново
+    public KeyRotationResponse start() {
+        launchLock.lock();
+        try {
+            if (!running) {
+                short target = panCryptoService.activeKeyVersion();
+                PanKeyRotation checkpoint = rotationRepository.findById(target)
+                        .filter(rotation -> rotation.getFinishedAt() == null)
+                        .orElseGet(() -> rotationRepository.save(new PanKeyRotation(target, clock.instant())));
+                launch(checkpoint);
+            }
+        } finally {
+            launchLock.unlock();
+        }
+        return status();
+    }
+
+    public KeyRotationResponse status() {
+        short target = panCryptoService.activeKeyVersion();
+        PanKeyRotation checkpoint = rotationRepository.findById(target).orElse(null);
+        if (checkpoint == null) {
+            return new KeyRotationResponse(target, KeyRotationResponse.Status.NOT_STARTED, 0, null,
+                    null, null, null, null);
+        }
+        KeyRotationResponse.Status status = running ? KeyRotationResponse.Status.RUNNING
+                : checkpoint.getFinishedAt() != null ? KeyRotationResponse.Status.COMPLETED
+                : KeyRotationResponse.Status.PAUSED;
+        return new KeyRotationResponse(target, status, checkpoint.getProcessed(), checkpoint.getLastCardId(),
+                checkpoint.getStartedAt(), checkpoint.getUpdatedAt(), checkpoint.getFinishedAt(),
+                status == KeyRotationResponse.Status.COMPLETED ? null : error);
+    }
+
+    //незавершённое перешифрование продолжается само после рестарта
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        launchLock.lock();
+        try {
+            if (!running) {
+                rotationRepository.findById(panCryptoService.activeKeyVersion())
+                        .filter(rotation -> rotation.getFinishedAt() == null)
+                        .ifPresent(this::launch);
+            }
+        } finally {
+            launchLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+    private void launch(PanKeyRotation checkpoint) {
+        running = true;
+        error = null;
+        jobExecutor.execute(() -> run(checkpoint));
+    }
+
+    private void run(PanKeyRotation checkpoint) {
+        try {
+            UUID after = checkpoint.getLastCardId() == null ? MIN_ID : checkpoint.getLastCardId();
+            while (!Thread.currentThread().isInterrupted()) {
+                List<CardBulkRepository.EncryptedPan> chunk =
+                        cardBulkRepository.findNotEncryptedWith(checkpoint.getTargetVersion(), after, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                rotateChunk(checkpoint, chunk);
+                after = chunk.get(chunk.size() - 1).cardId();
+                Thread.sleep(pauseMs);
+            }
+            if (!Thread.currentThread().isInterrupted()) {
+                checkpoint.finish(clock.instant());
+                rotationRepository.save(checkpoint);
+                log.info("PAN key rotation to version {} finished, {} cards re-encrypted",
+                        checkpoint.getTargetVersion(), checkpoint.getProcessed());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("PAN key rotation to version {} stopped after {} cards",
+                    checkpoint.getTargetVersion(), checkpoint.getProcessed(), e);
+            error = e.getMessage();
+        } finally {
+            running = false;
+        }
+    }
+
+    //порция перешифровывается один раз, а запись повторяется, если строки заняты дольше lock_timeout
+    private void rotateChunk(PanKeyRotation checkpoint, List<CardBulkRepository.EncryptedPan> chunk)
+            throws InterruptedException {
+        List<byte[]> reencrypted = reencrypt(chunk);
+        UUID last = chunk.get(chunk.size() - 1).cardId();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    int[] counts = cardBulkRepository.updateEncrypted(chunk, reencrypted,
+                            checkpoint.getTargetVersion(), lockTimeoutMs);
+                    int updated = 0;
+                    for (int count : counts) {
+                        updated += count;
+                    }
+                    checkpoint.advance(last, updated, clock.instant());
+                    rotationRepository.save(checkpoint);
+                });
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("PAN key rotation chunk after {} is locked, attempt {} of {}",
+                        checkpoint.getLastCardId(), attempt, MAX_ATTEMPTS);
+                Thread.sleep(pauseMs * attempt);
+            }
+        }
+    }
+
+    private List<byte[]> reencrypt(List<CardBulkRepository.EncryptedPan> chunk) {
+        int parts = Math.min(workers, chunk.size());
+        int partSize = (chunk.size() + parts - 1) / parts;
+
+        List<CompletableFuture<List<byte[]>>> futures = new ArrayList<>(parts);
+        for (int from = 0; from < chunk.size(); from += partSize) {
+            List<CardBulkRepository.EncryptedPan> part = chunk.subList(from, Math.min(chunk.size(), from + partSize));
+            futures.add(CompletableFuture.supplyAsync(() -> part.stream()
+                    .map(pan -> panCryptoService.reencrypt(pan.encrypted(), pan.keyVersion()))
+                    .toList(), workerPool));
+        }
+
+        List<byte[]> result = new ArrayList<>(chunk.size());
+        for (CompletableFuture<List<byte[]>> future : futures) {
+            result.addAll(future.join());
+        }
+        return result;
+    }
+}
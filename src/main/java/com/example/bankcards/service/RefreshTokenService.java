@@ -0,0 +1,108 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InvalidRefreshTokenException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+//ротируемые refresh токены: каждый обмен отзывает предъявленный токен и выдаёт новый в том же семействе.
+//повторное предъявление отозванного токена означает утечку - отзывается всё семейство
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final Clock clock;
+    private final Duration ttl;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               UserRepository userRepository,
+                               Clock clock,
+                               @Value("${card.security.refresh-token.ttl-ms:2592000000}") long ttlMs) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.clock = clock;
+        this.ttl = Duration.ofMillis(ttlMs);
+    }
+
+    //новый токен после входа по паролю открывает новое семейство
+    @Transactional
+    public String issue(UUID userId) {
+        return issue(userId, UUID.randomUUID());
+    }
+
+    //отзыв семейства при повторном предъявлении должен зафиксироваться, несмотря на исключение
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public Rotation rotate(String token) {
+        Instant now = clock.instant();
+        RefreshToken current = refreshTokenRepository.findByTokenHashForUpdate(hash(token))
+                .orElseThrow(InvalidRefreshTokenException::new);
+        if (current.getRevokedAt() != null) {
+            refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            throw new InvalidRefreshTokenException();
+        }
+        if (!current.getExpiresAt().isAfter(now)) {
+            throw new InvalidRefreshTokenException();
+        }
+        User user = userRepository.findById(current.getUserId())
+                .orElseThrow(InvalidRefreshTokenException::new);
+
+        current.setRevokedAt(now);
+        return new Rotation(user, issue(user.getId(), current.getFamilyId()));
+    }
+
+    //выход: отзывается вся цепочка, к которой относится токен
+    @Transactional
+    public void revoke(String token) {
+        refreshTokenRepository.findByTokenHash(hash(token))
+                .ifPresent(stored -> refreshTokenRepository.revokeFamily(stored.getFamilyId(), clock.instant()));
+    }
+
+    @Scheduled(fixedDelayString = "${card.security.refresh-token.cleanup-interval-ms:3600000}",
+            initialDelayString = "${card.security.refresh-token.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        refreshTokenRepository.deleteExpiredBefore(clock.instant());
+    }
+
+    private String issue(UUID userId, UUID familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Instant now = clock.instant();
+        refreshTokenRepository.save(new RefreshToken(UUID.randomUUID(), userId, familyId, hash(token), now, now.plus(ttl)));
+        return token;
+    }
+
+    //в токене 256 случайных бит, поэтому для хранения достаточно SHA-256 без соли
+    public static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Token hashing failed", e);
+        }
+    }
+
+    public record Rotation(User user, String refreshToken) {}
+}
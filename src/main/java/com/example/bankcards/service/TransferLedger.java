@@ -0,0 +1,71 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardBalanceSnapshot;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.enums.LedgerEntryType;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardBalanceSnapshotRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class TransferLedger {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final CardBalanceSnapshotRepository snapshotRepository;
+    private final CardRepository cardRepository;
+    private final Clock clock;
+
+    public TransferLedger(LedgerEntryRepository ledgerEntryRepository,
+                          CardBalanceSnapshotRepository snapshotRepository,
+                          CardRepository cardRepository,
+                          Clock clock) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.cardRepository = cardRepository;
+        this.clock = clock;
+    }
+
+    //вызывается внутри транзакции перевода: по одной вставке на каждую сторону,
+    //обе уходят в БД одним JDBC batch при flush
+    public void record(UUID transferId, UUID ownerId, UUID fromCard, BigDecimal fromBalanceAfter,
+                       UUID toCard, BigDecimal toBalanceAfter, BigDecimal amount) {
+        Instant now = clock.instant();
+        ledgerEntryRepository.saveAll(List.of(
+                new LedgerEntry(transferId, fromCard, ownerId, LedgerEntryType.DEBIT,
+                        amount.negate(), fromBalanceAfter, now),
+                new LedgerEntry(transferId, toCard, ownerId, LedgerEntryType.CREDIT,
+                        amount, toBalanceAfter, now)
+        ));
+    }
+
+    //баланс на момент времени: ближайшая контрольная точка до at плюс короткий хвост журнала
+    @Transactional(readOnly = true)
+    public BigDecimal balanceAt(UUID cardId, Instant at) {
+        Optional<CardBalanceSnapshot> snapshot =
+                snapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByLedgerSeqDesc(cardId, at);
+        if (snapshot.isPresent()) {
+            return snapshot.get().getBalance()
+                    .add(ledgerEntryRepository.sumAmountsAfter(cardId, snapshot.get().getLedgerSeq(), at));
+        }
+
+        Optional<LedgerEntry> first = ledgerEntryRepository.findFirstByCardIdOrderBySeqAsc(cardId);
+        if (first.isEmpty()) {
+            //переводов по карте не было, баланс не менялся
+            return cardRepository.findById(cardId)
+                    .orElseThrow(CardNotFoundException::new)
+                    .getBalance();
+        }
+        BigDecimal opening = first.get().getBalanceAfter().subtract(first.get().getAmount());
+        return opening.add(ledgerEntryRepository.sumAmountsAfter(cardId, 0L, at));
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.service;
+
+public enum TransferMode {
+    //загрузка обеих карт с блокировкой и сохранение через JPA
+    JPA,
+    //списание и зачисление одним условным UPDATE в PostgreSQL
+    SQL
+}
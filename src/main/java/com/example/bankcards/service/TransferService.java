@@ -1,31 +1,185 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.OutcomeTimer;
+import com.example.bankcards.config.ReadYourWrites;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.exception.CardExpiredException;
 import com.example.bankcards.exception.CardNotActiveException;
 import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.InvalidTransferAmountException;
 import com.example.bankcards.exception.InvalidTransferToSameCardException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferLegView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 @Service
 public class TransferService {
 
+    //порядок совпадает с сортировкой uuid в PostgreSQL (беззнаковое сравнение байтов),
+    //поэтому встречные переводы A->B и B->A блокируют строки в одном и том же порядке
+    static final Comparator<UUID> LOCK_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
     private final CardRepository cardRepository;
+    private final LockingTransactionExecutor lockingExecutor;
+    private final CardStripedSequencer sequencer;
+    private final TransferLedger ledger;
+    private final CardViewCache cardViewCache;
+    private final ReadYourWrites readYourWrites;
+    private final Timer lockWaitTimer;
+    private final Timer batchLockWaitTimer;
+    private final OutcomeTimer transferTimer;
+    private final TransferMode mode;
+    private final Clock clock;
 
-    public TransferService(CardRepository cardRepository) {
+    public TransferService(CardRepository cardRepository,
+                           LockingTransactionExecutor lockingExecutor,
+                           CardStripedSequencer sequencer,
+                           TransferLedger ledger,
+                           CardViewCache cardViewCache,
+                           ReadYourWrites readYourWrites,
+                           MeterRegistry meterRegistry,
+                           @Value("${card.transfer.mode:JPA}") TransferMode mode,
+                           Clock clock) {
         this.cardRepository = cardRepository;
+        this.lockingExecutor = lockingExecutor;
+        this.sequencer = sequencer;
+        this.ledger = ledger;
+        this.cardViewCache = cardViewCache;
+        this.readYourWrites = readYourWrites;
+        this.mode = mode;
+        this.clock = clock;
+        //в режиме SQL блокировка и изменение баланса - один запрос, замеряется он целиком
+        this.lockWaitTimer = Timer.builder("bankcards.transfer.lock.wait")
+                .description("Time spent acquiring row locks on both transfer cards")
+                .tag("mode", mode.name().toLowerCase())
+                .register(meterRegistry);
+        this.batchLockWaitTimer = Timer.builder("bankcards.transfer.lock.wait")
+                .description("Time spent acquiring row locks on both transfer cards")
+                .tag("mode", "batch")
+                .register(meterRegistry);
+        this.transferTimer = new OutcomeTimer(meterRegistry, "bankcards.transfer",
+                "Single transfers by outcome: success or the exception type", "mode", mode.name().toLowerCase());
     }
 
-    @Transactional
     public void transfer(UUID ownerId, TransferRequest req) {
+        transfer(ownerId, req, transferId -> true);
+    }
+
+    //claim выполняется первым в транзакции перевода и фиксируется вместе с ним;
+    //false - перевод уже выполнен ранее, карты не блокируются и результат null
+    public UUID transfer(UUID ownerId, TransferRequest req, Predicate<UUID> claim) {
+        return transferTimer.record(() -> {
+            validate(req);
+
+            return sequencer.execute(List.of(req.fromCard(), req.toCard()), () -> lockingExecutor.execute(status -> {
+                UUID transferId = UUID.randomUUID();
+                if (!claim.test(transferId)) {
+                    return null;
+                }
+                if (mode == TransferMode.SQL) {
+                    doAtomicTransfer(transferId, ownerId, req);
+                } else {
+                    doTransfer(transferId, ownerId, req);
+                }
+                return transferId;
+            }));
+        });
+    }
+
+    private void doTransfer(UUID transferId, UUID ownerId, TransferRequest req) {
+        Card fromTransfer;
+        Card toTransfer;
+
+        Timer.Sample lockWait = Timer.start();
+        if (LOCK_ORDER.compare(req.fromCard(), req.toCard()) < 0) {
+            fromTransfer = lockCard(req.fromCard(), ownerId);
+            toTransfer = lockCard(req.toCard(), ownerId);
+        } else {
+            toTransfer = lockCard(req.toCard(), ownerId);
+            fromTransfer = lockCard(req.fromCard(), ownerId);
+        }
+        lockWait.stop(lockWaitTimer);
+
+        move(fromTransfer, toTransfer, req.amount(), YearMonth.now(clock));
+
+        cardRepository.save(fromTransfer);
+        cardRepository.save(toTransfer);
+        evictViews(ownerId, req.fromCard(), req.toCard());
+        recordLedger(transferId, ownerId, fromTransfer, toTransfer, req.amount());
+    }
+
+    //пакет переводов в одной транзакции: все карты пакета блокируются одним запросом в порядке id,
+    //переводы применяются в памяти, а изменённые балансы уходят при commit одним JDBC batch.
+    //через sequencer проходят только небольшие пакеты, крупные сразу идут на упорядоченный FOR UPDATE
+    public BatchTransferResponse transferBatch(UUID ownerId, List<TransferRequest> transfers,
+                                               BatchTransferRequest.Mode batchMode) {
+        Set<UUID> cardIds = new HashSet<>();
+        for (TransferRequest req : transfers) {
+            cardIds.add(req.fromCard());
+            cardIds.add(req.toCard());
+        }
+
+        return sequencer.execute(cardIds, () -> lockingExecutor.execute(status -> {
+            Timer.Sample lockWait = Timer.start();
+            Map<UUID, Card> cards = new HashMap<>();
+            for (Card card : cardRepository.findAllForUpdateByIdInAndOwnerId(cardIds, ownerId)) {
+                cards.put(card.getId(), card);
+            }
+            lockWait.stop(batchLockWaitTimer);
+
+            YearMonth current = YearMonth.now(clock);
+            List<BatchTransferResponse.Item> results = new ArrayList<>(transfers.size());
+            for (int i = 0; i < transfers.size(); i++) {
+                TransferRequest req = transfers.get(i);
+                try {
+                    validate(req);
+                    Card fromTransfer = cards.get(req.fromCard());
+                    Card toTransfer = cards.get(req.toCard());
+                    if (fromTransfer == null || toTransfer == null) {
+                        throw new CardNotFoundException();
+                    }
+                    move(fromTransfer, toTransfer, req.amount(), current);
+                    evictViews(ownerId, req.fromCard(), req.toCard());
+                    recordLedger(UUID.randomUUID(), ownerId, fromTransfer, toTransfer, req.amount());
+                    results.add(new BatchTransferResponse.Item(i, BatchTransferResponse.Status.APPLIED, null));
+                } catch (InvalidTransferAmountException | InvalidTransferToSameCardException | CardNotFoundException
+                         | CardNotActiveException | CardExpiredException | InsufficientFundsException ex) {
+                    results.add(new BatchTransferResponse.Item(i, BatchTransferResponse.Status.FAILED, ex.getMessage()));
+                    if (batchMode == BatchTransferRequest.Mode.ALL_OR_NOTHING) {
+                        status.setRollbackOnly();
+                        return BatchTransferResponse.of(rolledBack(results, transfers.size()));
+                    }
+                }
+            }
+            return BatchTransferResponse.of(results);
+        }));
+    }
+
+    private void validate(TransferRequest req) {
         if (!(req.amount().compareTo(BigDecimal.ZERO) > 0)) {
             throw new InvalidTransferAmountException();
         }
@@ -33,25 +187,116 @@ public class TransferService {
         if (req.fromCard().equals(req.toCard())){
             throw new InvalidTransferToSameCardException();
         }
-        Card fromTransfer = cardRepository.findByIdAndOwnerId(req.fromCard(), ownerId)
-                .orElseThrow(CardNotFoundException::new);
-
-        Card toTransfer = cardRepository.findByIdAndOwnerId(req.toCard(), ownerId)
-                .orElseThrow(CardNotFoundException::new);
+    }
 
+    //срок проверяется по полям карты, а не по статусу EXPIRED: перевод не зависит от того, успел ли пройти CardExpirySweeper
+    private void move(Card fromTransfer, Card toTransfer, BigDecimal amount, YearMonth current) {
         if(fromTransfer.getStatus() != StatusCard.ACTIVE){
             throw new CardNotActiveException(fromTransfer.getPanLastFourNumber());
         }
         if(toTransfer.getStatus() != StatusCard.ACTIVE){
             throw new CardNotActiveException(toTransfer.getPanLastFourNumber());
         }
-        if (fromTransfer.getBalance().compareTo(req.amount()) < 0) {
+        if (isExpired(fromTransfer.getExpiryYear(), fromTransfer.getExpiryMonth(), current)) {
+            throw new CardExpiredException(fromTransfer.getPanLastFourNumber());
+        }
+        if (isExpired(toTransfer.getExpiryYear(), toTransfer.getExpiryMonth(), current)) {
+            throw new CardExpiredException(toTransfer.getPanLastFourNumber());
+        }
+        if (fromTransfer.getBalance().compareTo(amount) < 0) {
             throw new InsufficientFundsException(fromTransfer.getPanLastFourNumber());
         }
-        fromTransfer.setBalance(fromTransfer.getBalance().subtract(req.amount()));
-        toTransfer.setBalance(toTransfer.getBalance().add(req.amount()));
+        fromTransfer.setBalance(fromTransfer.getBalance().subtract(amount));
+        toTransfer.setBalance(toTransfer.getBalance().add(amount));
+    }
 
-        cardRepository.save(fromTransfer);
-        cardRepository.save(toTransfer);
+    private void recordLedger(UUID transferId, UUID ownerId, Card fromTransfer, Card toTransfer, BigDecimal amount) {
+        ledger.record(transferId, ownerId,
+                fromTransfer.getId(), fromTransfer.getBalance(),
+                toTransfer.getId(), toTransfer.getBalance(),
+                amount);
+    }
+
+    //применённые до ошибки переводы откатываются вместе с транзакцией, оставшиеся не выполнялись
+    private static List<BatchTransferResponse.Item> rolledBack(List<BatchTransferResponse.Item> results, int total) {
+        List<BatchTransferResponse.Item> items = new ArrayList<>(total);
+        for (BatchTransferResponse.Item item : results) {
+            items.add(item.status() == BatchTransferResponse.Status.APPLIED
+                    ? new BatchTransferResponse.Item(item.index(), BatchTransferResponse.Status.ROLLED_BACK, null)
+                    : item);
+        }
+        for (int i = results.size(); i < total; i++) {
+            items.add(new BatchTransferResponse.Item(i, BatchTransferResponse.Status.ROLLED_BACK, null));
+        }
+        return items;
+    }
+
+    private Card lockCard(UUID cardId, UUID ownerId) {
+        return cardRepository.findForUpdateByIdAndOwnerId(cardId, ownerId)
+                .orElseThrow(CardNotFoundException::new);
+    }
+
+    //балансы в кэше карточек сбрасываются и после commit, см. CardViewCache.evict;
+    //ближайшие чтения владельца идут на primary, см. ReadYourWrites
+    private void evictViews(UUID ownerId, UUID fromCardId, UUID toCardId) {
+        cardViewCache.evict(ownerId, fromCardId);
+        cardViewCache.evict(ownerId, toCardId);
+        readYourWrites.recordWrite(ownerId);
+    }
+
+    //карта действует до конца месяца expiry включительно
+    static boolean isExpired(short expiryYear, short expiryMonth, YearMonth current) {
+        return expiryYear < current.getYear()
+                || (expiryYear == current.getYear() && expiryMonth < current.getMonthValue());
+    }
+
+    private void doAtomicTransfer(UUID transferId, UUID ownerId, TransferRequest req) {
+        YearMonth current = YearMonth.now(clock);
+        Timer.Sample statement = Timer.start();
+        List<TransferLegView> legs = cardRepository.transferAtomically(
+                ownerId, req.fromCard(), req.toCard(), req.amount(),
+                (short) current.getYear(), (short) current.getMonthValue());
+        statement.stop(lockWaitTimer);
+
+        TransferLegView fromTransfer = null;
+        TransferLegView toTransfer = null;
+        for (TransferLegView leg : legs) {
+            if (leg.getId().equals(req.fromCard())) {
+                fromTransfer = leg;
+            } else if (leg.getId().equals(req.toCard())) {
+                toTransfer = leg;
+            }
+        }
+        if (fromTransfer == null || toTransfer == null) {
+            throw new CardNotFoundException();
+        }
+        if (Boolean.TRUE.equals(fromTransfer.getApplied())) {
+            evictViews(ownerId, req.fromCard(), req.toCard());
+            //строки возвращаются в состоянии до перевода и были заблокированы, новые балансы известны точно
+            ledger.record(transferId, ownerId,
+                    req.fromCard(), fromTransfer.getBalance().subtract(req.amount()),
+                    req.toCard(), toTransfer.getBalance().add(req.amount()),
+                    req.amount());
+            return;
+        }
+
+        if (!StatusCard.ACTIVE.name().equals(fromTransfer.getStatus())) {
+            throw new CardNotActiveException(fromTransfer.getPanLastFour());
+        }
+        if (!StatusCard.ACTIVE.name().equals(toTransfer.getStatus())) {
+            throw new CardNotActiveException(toTransfer.getPanLastFour());
+        }
+        if (isExpired(fromTransfer.getExpiryYear(), fromTransfer.getExpiryMonth(), current)) {
+            throw new CardExpiredException(fromTransfer.getPanLastFour());
+        }
+        if (isExpired(toTransfer.getExpiryYear(), toTransfer.getExpiryMonth(), current)) {
+            throw new CardExpiredException(toTransfer.getPanLastFour());
+        }
+        if (fromTransfer.getBalance().compareTo(req.amount()) < 0) {
+            throw new InsufficientFundsException(fromTransfer.getPanLastFour());
+        }
+        //UPDATE проверял баланс по снимку до ожидания блокировки, а после блокировки условия выполнены:
+        //строку успели изменить параллельно, повторяем перевод в новой транзакции
+        throw new PessimisticLockingFailureException("Card changed concurrently during transfer");
     }
 }
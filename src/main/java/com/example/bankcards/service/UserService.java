@@ -3,19 +3,20 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserPrincipal;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -32,15 +33,22 @@ public class UserService implements UserDetailsService {
                 .map(r -> new SimpleGrantedAuthority("ROLE_" + r.name()))
                 .collect(Collectors.toList());
 
-        return new org.springframework.security.core.userdetails.User(
+        return new UserPrincipal(
+                user.getId(),
                 user.getUsername(),
                 user.getHashPassword(),
                 authorities
         );
     }
 
-    public UUID getIdByUsername(String username) {
-        return findByUsernameOrThrow(username).getId();
+    //вызывается DaoAuthenticationProvider после успешного входа, если стоимость BCrypt в хэше устарела
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = findByUsernameOrThrow(user.getUsername());
+        entity.setHashPassword(newPassword);
+
+        return new UserPrincipal(entity.getId(), entity.getUsername(), newPassword, user.getAuthorities());
     }
 
     private User findByUsernameOrThrow(String username) {
@@ -1,8 +1,24 @@
 package com.example.bankcards.util;
 
+import java.util.List;
+
 public interface PanCryptoService {
 
     //без decrypt так как в ТЗ этого не требовалось
     byte[] encrypt(String pan);
     String hash(String pan);
+
+    //PAN массивом символов: без промежуточных String, вызывающий может затереть массив после вызова
+    byte[] encrypt(char[] pan);
+    String hash(char[] pan);
+
+    //пакетные варианты для массового выпуска и перешифрования, результат в порядке входа
+    List<byte[]> encryptAll(List<char[]> pans);
+    List<String> hashAll(List<char[]> pans);
+
+    //encrypt шифрует активным ключом, его версия сохраняется рядом с шифротекстом
+    short activeKeyVersion();
+
+    //расшифровка ключом указанной версии и шифрование активным, открытый PAN не покидает сервис
+    byte[] reencrypt(byte[] encrypted, short keyVersion);
 }
@@ -1,5 +1,9 @@
 package com.example.bankcards.util;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -7,12 +11,20 @@ import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+//Cipher, MessageDigest и SecureRandom у каждого потока свои: потоки не делят ни объекты, ни блокировки,
+//поэтому пакетные задачи масштабируются по ядрам, если делят работу между своими потоками
 @Component
 public class PanCryptoServiceImpl implements PanCryptoService {
 
@@ -20,48 +32,262 @@ public class PanCryptoServiceImpl implements PanCryptoService {
     private static final String AES_GCM = "AES/GCM/NoPadding";
     private static final int IV_LEN = 12;
     private static final int TAG_BITS = 128;
+    private static final int TAG_LEN = TAG_BITS / 8;
+    //ISO/IEC 7812: не длиннее 19 цифр
+    private static final int MAX_PAN_LEN = 19;
 
+    private final Map<Short, SecretKey> keys;
+    private final short activeKeyVersion;
     private final SecretKey aesKey;
-    private final SecureRandom random = new SecureRandom();
-    private final String pepper;
+    private final byte[] pepper;
+    private final ThreadLocal<Engine> engines = ThreadLocal.withInitial(Engine::new);
+    private final Timer encryptTimer;
+    private final Timer hashTimer;
+    private final Timer encryptAllTimer;
+    private final Timer hashAllTimer;
+    private final Timer reencryptTimer;
 
+    public PanCryptoServiceImpl(String aesKeyBase64, String pepper) {
+        this(aesKeyBase64, "", (short) 1, pepper);
+    }
+
+    //без реестра метрик: пустой CompositeMeterRegistry ничего не записывает
+    public PanCryptoServiceImpl(String aesKeyBase64, String versionedKeys, short activeKeyVersion, String pepper) {
+        this(aesKeyBase64, versionedKeys, activeKeyVersion, pepper, new CompositeMeterRegistry());
+    }
+
+    //aes-key-base64 - ключ версии 1; следующие версии задаются в keys как "2:base64,3:base64"
+    @Autowired
     public PanCryptoServiceImpl(
             @Value("${card.crypto.aes-key-base64}") String aesKeyBase64,
-            @Value("${card.crypto.hash-pepper:}") String pepper
+            @Value("${card.crypto.keys:}") String versionedKeys,
+            @Value("${card.crypto.active-key-version:1}") short activeKeyVersion,
+            @Value("${card.crypto.hash-pepper:}") String pepper,
+            MeterRegistry meterRegistry
     ) {
-        byte[] keyBytes = Base64.getDecoder().decode(aesKeyBase64);
-        this.aesKey = new SecretKeySpec(keyBytes, AES);
-        this.pepper = pepper;
+        Map<Short, SecretKey> parsed = new HashMap<>();
+        parsed.put((short) 1, new SecretKeySpec(Base64.getDecoder().decode(aesKeyBase64), AES));
+        for (String entry : versionedKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 2);
+            short version = Short.parseShort(parts[0].trim());
+            if (parts.length != 2 || version < 2) {
+                throw new IllegalArgumentException("Key entries must look like <version >= 2>:<base64 key>");
+            }
+            parsed.put(version, new SecretKeySpec(Base64.getDecoder().decode(parts[1].trim()), AES));
+        }
+        if (!parsed.containsKey(activeKeyVersion)) {
+            throw new IllegalArgumentException("No key configured for active version " + activeKeyVersion);
+        }
+        this.keys = Map.copyOf(parsed);
+        this.activeKeyVersion = activeKeyVersion;
+        this.aesKey = parsed.get(activeKeyVersion);
+        this.pepper = pepper.getBytes(StandardCharsets.UTF_8);
+        this.encryptTimer = timer(meterRegistry, "encrypt");
+        this.hashTimer = timer(meterRegistry, "hash");
+        this.encryptAllTimer = timer(meterRegistry, "encryptAll");
+        this.hashAllTimer = timer(meterRegistry, "hashAll");
+        this.reencryptTimer = timer(meterRegistry, "reencrypt");
     }
 
     @Override
     public byte[] encrypt(String pan) {
+        long start = System.nanoTime();
         try {
-            byte[] iv = new byte[IV_LEN];
-            random.nextBytes(iv);
+            Engine engine = engines.get();
+            int len = engine.load(pan);
+            return encrypt(engine, len);
+        } finally {
+            record(encryptTimer, start);
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(AES_GCM);
-            cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(TAG_BITS, iv));
+    @Override
+    public byte[] encrypt(char[] pan) {
+        long start = System.nanoTime();
+        try {
+            Engine engine = engines.get();
+            int len = engine.load(pan);
+            return encrypt(engine, len);
+        } finally {
+            record(encryptTimer, start);
+        }
+    }
 
-            byte[] ciphertext = cipher.doFinal(pan.getBytes(StandardCharsets.UTF_8));
+    //хэш совпадает с прежним SHA-256(pan + pepper), поэтому сохранённые pan_hash остаются верными
+    @Override
+    public String hash(String pan) {
+        long start = System.nanoTime();
+        try {
+            Engine engine = engines.get();
+            int len = engine.load(pan);
+            return hash(engine, len);
+        } finally {
+            record(hashTimer, start);
+        }
+    }
 
-            return ByteBuffer.allocate(iv.length + ciphertext.length)
-                    .put(iv)
-                    .put(ciphertext)
-                    .array();
-        } catch (Exception e) {
-            throw new IllegalStateException("PAN encryption failed", e);
+    @Override
+    public String hash(char[] pan) {
+        long start = System.nanoTime();
+        try {
+            Engine engine = engines.get();
+            int len = engine.load(pan);
+            return hash(engine, len);
+        } finally {
+            record(hashTimer, start);
         }
     }
 
     @Override
-    public String hash(String pan) {
+    public List<byte[]> encryptAll(List<char[]> pans) {
+        long start = System.nanoTime();
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest((pan + pepper).getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (Exception e) {
-            throw new IllegalStateException("PAN hashing failed", e);
+            Engine engine = engines.get();
+            List<byte[]> result = new ArrayList<>(pans.size());
+            for (char[] pan : pans) {
+                result.add(encrypt(engine, engine.load(pan)));
+            }
+            return result;
+        } finally {
+            record(encryptAllTimer, start);
+        }
+    }
+
+    @Override
+    public List<String> hashAll(List<char[]> pans) {
+        long start = System.nanoTime();
+        try {
+            Engine engine = engines.get();
+            List<String> result = new ArrayList<>(pans.size());
+            for (char[] pan : pans) {
+                result.add(hash(engine, engine.load(pan)));
+            }
+            return result;
+        } finally {
+            record(hashAllTimer, start);
+        }
+    }
+
+    @Override
+    public short activeKeyVersion() {
+        return activeKeyVersion;
+    }
+
+    @Override
+    public byte[] reencrypt(byte[] encrypted, short keyVersion) {
+        long start = System.nanoTime();
+        try {
+            SecretKey key = keys.get(keyVersion);
+            if (key == null) {
+                throw new IllegalArgumentException("No key configured for version " + keyVersion);
+            }
+            int len = encrypted.length - IV_LEN - TAG_LEN;
+            if (len <= 0 || len > MAX_PAN_LEN) {
+                throw new IllegalArgumentException("Unexpected encrypted PAN length");
+            }
+            Engine engine = engines.get();
+            try {
+                engine.cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, encrypted, 0, IV_LEN));
+                engine.cipher.doFinal(encrypted, IV_LEN, encrypted.length - IV_LEN, engine.pan, 0);
+            } catch (GeneralSecurityException e) {
+                Arrays.fill(engine.pan, (byte) 0);
+                throw new IllegalStateException("PAN decryption failed", e);
+            }
+            return encrypt(engine, len);
+        } finally {
+            record(reencryptTimer, start);
+        }
+    }
+
+    //результат: iv || ciphertext || tag, как и раньше
+    private byte[] encrypt(Engine engine, int len) {
+        try {
+            engine.random.nextBytes(engine.iv);
+            engine.cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(TAG_BITS, engine.iv));
+
+            byte[] out = new byte[IV_LEN + len + TAG_LEN];
+            System.arraycopy(engine.iv, 0, out, 0, IV_LEN);
+            engine.cipher.doFinal(engine.pan, 0, len, out, IV_LEN);
+            return out;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PAN encryption failed", e);
+        } finally {
+            Arrays.fill(engine.pan, 0, len, (byte) 0);
+        }
+    }
+
+    //без гистограммы: операции занимают микросекунды, хватает count/sum/max
+    private static Timer timer(MeterRegistry meterRegistry, String op) {
+        return Timer.builder("bankcards.crypto")
+                .description("PAN crypto operations")
+                .tag("op", op)
+                .register(meterRegistry);
+    }
+
+    private static void record(Timer timer, long start) {
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private String hash(Engine engine, int len) {
+        try {
+            engine.digest.update(engine.pan, 0, len);
+            engine.digest.update(pepper);
+            return Base64.getEncoder().encodeToString(engine.digest.digest());
+        } finally {
+            Arrays.fill(engine.pan, 0, len, (byte) 0);
+        }
+    }
+
+    //состояние одного потока; PAN копируется в переиспользуемый буфер и затирается после операции
+    private static final class Engine {
+
+        private final Cipher cipher;
+        private final MessageDigest digest;
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] iv = new byte[IV_LEN];
+        private final byte[] pan = new byte[MAX_PAN_LEN];
+
+        private Engine() {
+            try {
+                this.cipher = Cipher.getInstance(AES_GCM);
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("PAN crypto is not available", e);
+            }
+        }
+
+        private int load(String value) {
+            int len = checkLength(value.length());
+            for (int i = 0; i < len; i++) {
+                pan[i] = digit(value.charAt(i));
+            }
+            return len;
+        }
+
+        private int load(char[] value) {
+            int len = checkLength(value.length);
+            for (int i = 0; i < len; i++) {
+                pan[i] = digit(value[i]);
+            }
+            return len;
+        }
+
+        private int checkLength(int len) {
+            if (len == 0 || len > MAX_PAN_LEN) {
+                throw new IllegalArgumentException("PAN must have 1.." + MAX_PAN_LEN + " digits");
+            }
+            return len;
+        }
+
+        private byte digit(char c) {
+            if (c < '0' || c > '9') {
+                Arrays.fill(pan, (byte) 0);
+                throw new IllegalArgumentException("PAN must contain digits only");
+            }
+            return (byte) c;
         }
     }
 }
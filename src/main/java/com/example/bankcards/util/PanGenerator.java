@@ -4,15 +4,45 @@ import java.security.SecureRandom;
 
 public class PanGenerator {
 
-    private static final SecureRandom random = new SecureRandom();
+    //у каждого потока свой генератор: массовый выпуск генерирует номера параллельно
+    private static final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
 
-    public static String generate() {
-        StringBuilder pan = new StringBuilder(16);
+    //номер = BIN + случайные цифры + контрольная цифра Луна
+    public static char[] generate(String bin, int length) {
+        if (bin.length() >= length) {
+            throw new IllegalArgumentException("BIN must be shorter than the PAN");
+        }
+        SecureRandom rnd = random.get();
+        char[] pan = new char[length];
 
-        for (int i = 0; i < 16; i++) {
-            pan.append(random.nextInt(10)); // 0..9
+        bin.getChars(0, bin.length(), pan, 0);
+        for (int i = bin.length(); i < length - 1; i++) {
+            pan[i] = (char) ('0' + rnd.nextInt(10)); // 0..9
         }
+        pan[length - 1] = (char) ('0' + luhnCheckDigit(pan, length - 1));
+
+        return pan;
+    }
 
-        return pan.toString();
+    public static boolean isLuhnValid(char[] pan) {
+        return pan.length > 1 && luhnCheckDigit(pan, pan.length - 1) == pan[pan.length - 1] - '0';
+    }
+
+    //удваивается каждая вторая цифра, считая справа от контрольной
+    private static int luhnCheckDigit(char[] pan, int payloadLength) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = payloadLength - 1; i >= 0; i--) {
+            int digit = pan[i] - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
     }
 }
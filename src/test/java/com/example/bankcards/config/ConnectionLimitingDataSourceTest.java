@@ -0,0 +1,83 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class ConnectionLimitingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataSource pool = mock(DataSource.class);
+
+    ConnectionLimitingDataSourceTest() throws SQLException {
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+    }
+
+    @Test
+    @DisplayName("Thousands of virtual threads never hold more connections than there are permits")
+    void virtualThreads_shouldNotExceedPermits() {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, "primary", 4, 5_000, meterRegistry);
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 2_000; i++) {
+                requests.submit(() -> {
+                    try (Connection ignored = limited.getConnection()) {
+                        peak.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                        LockSupport.parkNanos(100_000);
+                        inUse.decrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        assertEquals(4, peak.get());
+        assertEquals(4, permits("available"));
+    }
+
+    @Test
+    @DisplayName("Closing a connection twice returns its permit once")
+    void doubleClose_shouldReleaseOnePermit() throws SQLException {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, "primary", 2, 5_000, meterRegistry);
+
+        Connection connection = limited.getConnection();
+        limited.getConnection();
+        connection.close();
+        connection.close();
+
+        assertEquals(1, permits("available"));
+    }
+
+    @Test
+    @DisplayName("With every permit taken the next caller times out, a failing pool does not leak permits")
+    void exhaustedOrFailingPool_shouldNotLeakPermits() throws SQLException {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, "primary", 1, 10, meterRegistry);
+
+        Connection held = limited.getConnection();
+        assertThrows(SQLTransientConnectionException.class, limited::getConnection);
+        held.close();
+
+        when(pool.getConnection()).thenThrow(new SQLException("connection refused"));
+        assertThrows(SQLException.class, limited::getConnection);
+        assertEquals(1, permits("available"));
+    }
+
+    private double permits(String state) {
+        return meterRegistry.get("bankcards.datasource.permits." + state).tag("pool", "primary").gauge().value();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class DatabaseLockMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final DatabaseLockMetrics metrics = new DatabaseLockMetrics(jdbcTemplate, meterRegistry);
+
+    @Test
+    @DisplayName("Gauges show the last poll and do not query the database when read")
+    void gauges_shouldShowLastPoll() {
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(Map.of("waiting", 3L, "oldest", new BigDecimal("1.5")));
+
+        metrics.poll();
+
+        assertEquals(3, gauge("bankcards.db.lock.waiting"));
+        assertEquals(1.5, gauge("bankcards.db.lock.wait.oldest"));
+        verify(jdbcTemplate, times(1)).queryForMap(anyString());
+    }
+
+    @Test
+    @DisplayName("A failed poll clears the gauges instead of keeping a stale value")
+    void failedPoll_shouldClearGauges() {
+        when(jdbcTemplate.queryForMap(anyString()))
+                .thenReturn(Map.of("waiting", 3L, "oldest", BigDecimal.ONE))
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        metrics.poll();
+        metrics.poll();
+
+        assertTrue(Double.isNaN(gauge("bankcards.db.lock.waiting")));
+        assertTrue(Double.isNaN(gauge("bankcards.db.lock.wait.oldest")));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.enums.Role;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-42";
+
+    @Test
+    @DisplayName("Token signed with the prebuilt key is accepted by the resource server decoder")
+    void generatedToken_shouldBeVerifiedByNimbusDecoder() {
+        JwtService jwtService = new JwtService(SECRET, 60_000);
+        UUID userId = UUID.randomUUID();
+
+        String token = jwtService.generateToken(userId, "alice", List.of(Role.ADMIN));
+
+        Jwt jwt = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"))
+                .build()
+                .decode(token);
+        assertEquals("alice", jwt.getSubject());
+        assertEquals(userId.toString(), jwt.getClaimAsString("userId"));
+        assertEquals(List.of("ADMIN"), jwt.getClaimAsStringList("roles"));
+        assertEquals(Duration.ofMinutes(1), Duration.between(jwt.getIssuedAt(), jwt.getExpiresAt()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadYourWritesTest {
+
+    private final UUID ownerId = UUID.randomUUID();
+
+    @Test
+    @DisplayName("Reads of an owner who just wrote are pinned to the primary, other owners are not")
+    void recentWriter_shouldReadFromPrimary() {
+        ReadYourWrites readYourWrites = new ReadYourWrites("jdbc:postgresql://replica/db", 60_000, 100);
+
+        readYourWrites.recordWrite(ownerId);
+
+        assertTrue(readYourWrites.read(ownerId, ReadYourWrites::isPrimaryRequired));
+        assertFalse(readYourWrites.read(UUID.randomUUID(), ReadYourWrites::isPrimaryRequired));
+        assertFalse(ReadYourWrites.isPrimaryRequired());
+    }
+
+    @Test
+    @DisplayName("Without replicas writes are not tracked")
+    void withoutReplicas_shouldNotPin() {
+        ReadYourWrites readYourWrites = new ReadYourWrites("", 60_000, 100);
+
+        readYourWrites.recordWrite(ownerId);
+
+        assertFalse(readYourWrites.read(ownerId, ReadYourWrites::isPrimaryRequired));
+    }
+
+    @Test
+    @DisplayName("Nested primary sections keep the pin until the outermost one ends")
+    void nestedOnPrimary_shouldKeepPin() {
+        boolean innerPinnedAfterNested = ReadYourWrites.onPrimary(() -> {
+            ReadYourWrites.onPrimary(() -> true);
+            return ReadYourWrites.isPrimaryRequired();
+        });
+
+        assertTrue(innerPinnedAfterNested);
+        assertFalse(ReadYourWrites.isPrimaryRequired());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataSource primary = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final DataSource first = mock(DataSource.class);
+    private final Connection firstConnection = mock(Connection.class);
+    private final DataSource second = mock(DataSource.class);
+    private final Connection secondConnection = mock(Connection.class);
+
+    ReplicaRoutingDataSourceTest() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenReturn(secondConnection);
+    }
+
+    @Test
+    @DisplayName("Round-robin spreads read-only connections across replicas")
+    void roundRobin_shouldAlternateReplicas() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, () -> 0, () -> 0);
+
+        assertSame(firstConnection, routing.getConnection());
+        assertSame(secondConnection, routing.getConnection());
+        assertSame(firstConnection, routing.getConnection());
+        verifyNoInteractions(primary);
+    }
+
+    @Test
+    @DisplayName("Least-loaded picks the replica with fewer busy connections")
+    void leastLoaded_shouldPickLessBusyReplica() throws SQLException {
+        AtomicInteger firstActive = new AtomicInteger(5);
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.LEAST_LOADED, firstActive::get, () -> 2);
+
+        assertSame(secondConnection, routing.getConnection());
+        firstActive.set(1);
+        assertSame(firstConnection, routing.getConnection());
+    }
+
+    @Test
+    @DisplayName("A failing replica is skipped and excluded, with no replicas left reads go to the primary")
+    void failingReplicas_shouldFallBackToPrimary() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, () -> 0, () -> 0);
+        when(first.getConnection()).thenThrow(new SQLException("connection refused", "08001"));
+
+        assertSame(secondConnection, routing.getConnection());
+        assertEquals(List.of("replica-1"), routing.candidates().stream().map(ReplicaRoutingDataSource.Replica::name).toList());
+
+        when(second.getConnection()).thenThrow(new SQLException("connection refused", "08001"));
+        assertSame(primaryConnection, routing.getConnection());
+        assertEquals(1, meterRegistry.counter("bankcards.datasource.replica.fallbacks").count());
+        assertEquals(0, meterRegistry.get("bankcards.datasource.replicas.healthy").gauge().value());
+    }
+
+    @Test
+    @DisplayName("An exhausted replica pool is skipped but stays in rotation")
+    void exhaustedReplicaPool_shouldBeSkippedWithoutMarkingDown() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, () -> 0, () -> 0);
+        when(first.getConnection()).thenThrow(
+                new SQLTransientConnectionException("replica-0 - Connection is not available, request timed out after 30000ms."));
+
+        assertSame(secondConnection, routing.getConnection());
+        assertEquals(2, routing.candidates().size());
+
+        when(second.getConnection()).thenThrow(
+                new SQLTransientConnectionException("No database connection available within 30000 ms"));
+        assertSame(primaryConnection, routing.getConnection());
+        assertEquals(2, routing.candidates().size());
+        assertEquals(2, meterRegistry.get("bankcards.datasource.replicas.healthy").gauge().value());
+    }
+
+    @Test
+    @DisplayName("A pool timeout caused by failed connects marks the replica down")
+    void poolTimeoutAfterConnectFailures_shouldMarkReplicaDown() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, () -> 0, () -> 0);
+        when(first.getConnection()).thenThrow(new SQLTransientConnectionException(
+                "replica-0 - Connection is not available, request timed out after 30000ms.", "08001"));
+
+        assertSame(secondConnection, routing.getConnection());
+        assertEquals(List.of("replica-1"), routing.candidates().stream().map(ReplicaRoutingDataSource.Replica::name).toList());
+    }
+
+    @Test
+    @DisplayName("Health check excludes a lagging replica and brings it back once it catches up")
+    void healthCheck_shouldTrackLag() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, () -> 0, () -> 0);
+        ResultSet lag = lagResult(firstConnection);
+        lagResult(secondConnection);
+        when(lag.getLong(1)).thenReturn(60_000L, 10L);
+
+        routing.checkHealth();
+        assertEquals(List.of("replica-1"), routing.candidates().stream().map(ReplicaRoutingDataSource.Replica::name).toList());
+
+        routing.checkHealth();
+        assertEquals(2, routing.candidates().size());
+    }
+
+    @Test
+    @DisplayName("Reads pinned by read-your-writes go to the primary")
+    void pinnedReads_shouldUsePrimary() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, () -> 0, () -> 0);
+
+        Connection connection = ReadYourWrites.onPrimary(() -> {
+            try {
+                return routing.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertSame(primaryConnection, connection);
+        assertFalse(ReadYourWrites.isPrimaryRequired());
+        assertEquals(2, routing.candidates().size());
+    }
+
+    @Test
+    @DisplayName("Connections with explicit credentials are routed like pool connections and keep the credentials")
+    void explicitCredentials_shouldRouteLikePoolConnections() throws SQLException {
+        ReplicaRoutingDataSource routing = routing(ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, () -> 0, () -> 0);
+        when(first.getConnection("reader", "secret")).thenThrow(new SQLException("connection refused", "08001"));
+        when(second.getConnection("reader", "secret")).thenReturn(secondConnection);
+        when(primary.getConnection("reader", "secret")).thenReturn(primaryConnection);
+
+        assertSame(secondConnection, routing.getConnection("reader", "secret"));
+        assertEquals(List.of("replica-1"), routing.candidates().stream().map(ReplicaRoutingDataSource.Replica::name).toList());
+
+        Connection pinned = ReadYourWrites.onPrimary(() -> {
+            try {
+                return routing.getConnection("reader", "secret");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertSame(primaryConnection, pinned);
+        verify(primary, never()).getConnection();
+    }
+
+    private ReplicaRoutingDataSource routing(ReplicaRoutingDataSource.Strategy strategy,
+                                             IntSupplier firstActive,
+                                             IntSupplier secondActive) {
+        return new ReplicaRoutingDataSource(primary, List.of(
+                new ReplicaRoutingDataSource.Replica("replica-0", first, firstActive),
+                new ReplicaRoutingDataSource.Replica("replica-1", second, secondActive)),
+                strategy, 5_000, meterRegistry);
+    }
+
+    private static ResultSet lagResult(Connection connection) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(ReplicaRoutingDataSource.LAG_QUERY)).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        return rs;
+    }
+}
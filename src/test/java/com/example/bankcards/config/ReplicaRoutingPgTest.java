@@ -0,0 +1,100 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Маршрутизация readOnly-транзакций на двух локальных PostgreSQL: второй экземпляр играет роль реплики,
+// экземпляр определяется по inet_server_port(). Запуск: docker compose --profile replica up -d, затем
+// BANKCARDS_PG_TESTS=true DB_HOST=... DB_REPLICA_URLS=jdbc:postgresql://localhost:5433/... mvn test -Dtest=ReplicaRoutingPgTest
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_PG_TESTS", matches = "true")
+@EnabledIfEnvironmentVariable(named = "DB_REPLICA_URLS", matches = ".+")
+class ReplicaRoutingPgTest {
+
+    private static final String WHICH = "SELECT inet_server_port()";
+
+    private final List<AutoCloseable> pools = new ArrayList<>();
+    private HikariDataSource primary;
+    private int primaryPort;
+    private int replicaPort;
+
+    @BeforeEach
+    void setUp() {
+        primary = pool("jdbc:postgresql://" + System.getenv("DB_HOST") + ":" + System.getenv("DB_PORT") + "/"
+                + System.getenv("DB_NAME"));
+        HikariDataSource replica = pool(System.getenv("DB_REPLICA_URLS").split(",")[0].trim());
+        primaryPort = new JdbcTemplate(primary).queryForObject(WHICH, Integer.class);
+        replicaPort = new JdbcTemplate(replica).queryForObject(WHICH, Integer.class);
+        assertNotEquals(primaryPort, replicaPort, "primary and replica must be different instances");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable pool : pools) {
+            pool.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Read-only transactions go to the replica, read-write transactions and pinned reads to the primary")
+    void shouldRouteByTransactionReadOnlyFlag() {
+        DataSourceRouting routing = routing(System.getenv("DB_REPLICA_URLS").split(",")[0].trim());
+
+        assertEquals(replicaPort, routing.port(true));
+        assertEquals(primaryPort, routing.port(false));
+        assertEquals(primaryPort, ReadYourWrites.onPrimary(() -> routing.port(true)));
+    }
+
+    @Test
+    @DisplayName("Read-only transactions fall back to the primary when the replica is unreachable")
+    void shouldFallBackToPrimaryWhenReplicaIsDown() {
+        DataSourceRouting routing = routing("jdbc:postgresql://127.0.0.1:1/none");
+
+        assertEquals(primaryPort, routing.port(true));
+    }
+
+    private DataSourceRouting routing(String replicaUrl) {
+        HikariDataSource replica = pool(replicaUrl);
+        replica.setConnectionTimeout(500);
+        ReplicaRoutingDataSource replicas = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("replica-0", replica, () -> 0)),
+                ReplicaRoutingDataSource.Strategy.ROUND_ROBIN, 5_000, new SimpleMeterRegistry());
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicas);
+        return new DataSourceRouting(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource));
+    }
+
+    private HikariDataSource pool(String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(url);
+        pool.setUsername(System.getenv("DB_USER"));
+        pool.setPassword(System.getenv("DB_PASSWORD"));
+        pool.setMaximumPoolSize(2);
+        pool.setInitializationFailTimeout(-1);
+        pools.add(pool);
+        return pool;
+    }
+
+    private record DataSourceRouting(JdbcTemplate jdbcTemplate, DataSourceTransactionManager transactionManager) {
+
+        int port(boolean readOnly) {
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setReadOnly(readOnly);
+            return tx.execute(status -> jdbcTemplate.queryForObject(WHICH, Integer.class));
+        }
+    }
+}
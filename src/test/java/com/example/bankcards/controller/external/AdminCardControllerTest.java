@@ -1,11 +1,23 @@
 package com.example.bankcards.controller.external;
 
 import com.example.bankcards.controller.advice.RestExceptionHandler;
+import com.example.bankcards.dto.BulkIssuanceRequest;
+import com.example.bankcards.dto.CardCursor;
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.IssuanceJobResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
 import com.example.bankcards.exception.CardAlreadyExistsException;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.IssuanceJobNotResumableException;
+import com.example.bankcards.exception.IssuanceTooLargeException;
+import com.example.bankcards.exception.UnknownCardOwnerException;
+import com.example.bankcards.service.BulkCardIssuanceService;
+import com.example.bankcards.service.CardExportFormat;
+import com.example.bankcards.service.CardExportService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransferLedger;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,10 +29,16 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -37,6 +55,15 @@ class AdminCardControllerTest{
     @MockitoBean
     private CardService cardService;
 
+    @MockitoBean
+    private TransferLedger transferLedger;
+
+    @MockitoBean
+    private BulkCardIssuanceService bulkCardIssuanceService;
+
+    @MockitoBean
+    private CardExportService cardExportService;
+
     @Test
     @DisplayName("POST /admin/cards/{userId} — creates new card (200)")
     void createNewCard_shouldReturnCardResponse_whenUserIdValid() throws Exception {
@@ -156,7 +183,7 @@ class AdminCardControllerTest{
                 (short) 12, (short) 2026, StatusCard.ACTIVE, BigDecimal.valueOf(200));
 
         Pageable pageable = PageRequest.of(0, 2, Sort.by("id").descending());
-        Page<Card> page = new PageImpl<>(List.of(c1, c2), pageable, 2);
+        Page<CardResponse> page = new PageImpl<>(List.of(c1, c2), pageable, 2).map(CardResponse::from);
 
         when(cardService.adminGetAllByStatus(eq(StatusCard.ACTIVE), any(Pageable.class)))
                 .thenReturn(page);
@@ -180,4 +207,163 @@ class AdminCardControllerTest{
         // опционально: убедимся, что статус реально ушёл в сервис
         verify(cardService).adminGetAllByStatus(eq(StatusCard.ACTIVE), any(Pageable.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("GET /admin/cards?status=...&cursor=... — returns a slice after the cursor (200)")
+    void getAllByStatusByCursor_shouldReturnSliceAfterCursor() throws Exception {
+        UUID afterId = UUID.randomUUID();
+        UUID cardId = UUID.randomUUID();
+        Card card = new Card(cardId, UUID.randomUUID(), new byte[]{}, "hash", "4321",
+                (short) 12, (short) 2030, StatusCard.BLOCKED, BigDecimal.ZERO);
+        when(cardService.adminGetAllByStatusAfter(StatusCard.BLOCKED, afterId, 1))
+                .thenReturn(new SliceImpl<>(List.of(CardResponse.from(card)), PageRequest.ofSize(1), true));
+
+        mvc.perform(get("/admin/cards")
+                        .param("status", "BLOCKED")
+                        .param("cursor", new CardCursor(StatusCard.BLOCKED, afterId).encode())
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].cardId").value(cardId.toString()))
+                .andExpect(jsonPath("$.nextCursor").value(new CardCursor(StatusCard.BLOCKED, cardId).encode()));
+
+        verify(cardService, never()).adminGetAllByStatus(any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /admin/cards/{cardId}/balance?at=... — returns balance from the ledger (200)")
+    void getBalanceAt_shouldReturnLedgerBalance() throws Exception {
+        UUID cardId = UUID.randomUUID();
+        Instant at = Instant.parse("2026-10-01T12:00:00Z");
+
+        when(transferLedger.balanceAt(cardId, at)).thenReturn(new BigDecimal("350.00"));
+
+        mvc.perform(get("/admin/cards/{cardId}/balance", cardId)
+                        .param("at", at.toString())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardId").value(cardId.toString()))
+                .andExpect(jsonPath("$.balance").value(350.00));
+
+        verify(transferLedger).balanceAt(cardId, at);
+    }
+
+    @Test
+    @DisplayName("POST /admin/cards/issuance-jobs — accepts a bulk issuance job (202)")
+    void startBulkIssuance_shouldReturnAcceptedJob() throws Exception {
+        UUID ownerId = UUID.randomUUID();
+        UUID jobId = UUID.randomUUID();
+        BulkIssuanceRequest request = new BulkIssuanceRequest(List.of(new BulkIssuanceRequest.Item(ownerId, 3)));
+
+        when(bulkCardIssuanceService.submit(request)).thenReturn(new IssuanceJobResponse(jobId,
+                IssuanceJobResponse.Status.QUEUED, 3, 0, Instant.parse("2026-10-18T10:00:00Z"), null, null));
+
+        mvc.perform(post("/admin/cards/issuance-jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"ownerId\":\"" + ownerId + "\",\"count\":3}]}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value(jobId.toString()))
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andExpect(jsonPath("$.requested").value(3));
+    }
+
+    @Test
+    @DisplayName("POST /admin/cards/issuance-jobs — rejects invalid counts and oversized jobs (400)")
+    void startBulkIssuance_shouldRejectInvalidRequests() throws Exception {
+        UUID ownerId = UUID.randomUUID();
+
+        mvc.perform(post("/admin/cards/issuance-jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"ownerId\":\"" + ownerId + "\",\"count\":0}]}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(bulkCardIssuanceService);
+
+        when(bulkCardIssuanceService.submit(any())).thenThrow(new IssuanceTooLargeException(100_000));
+
+        mvc.perform(post("/admin/cards/issuance-jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"ownerId\":\"" + ownerId + "\",\"count\":5}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(Matchers.containsString("100000 cards")));
+    }
+
+    @Test
+    @DisplayName("POST /admin/cards/issuance-jobs — rejects unknown owners (400)")
+    void startBulkIssuance_shouldRejectUnknownOwners() throws Exception {
+        UUID ownerId = UUID.randomUUID();
+        when(bulkCardIssuanceService.submit(any())).thenThrow(new UnknownCardOwnerException(List.of(ownerId)));
+
+        mvc.perform(post("/admin/cards/issuance-jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"ownerId\":\"" + ownerId + "\",\"count\":5}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(Matchers.containsString(ownerId.toString())));
+    }
+
+    @Test
+    @DisplayName("POST /admin/cards/issuance-jobs/{jobId}/resume — requeues a failed job (202), otherwise 409")
+    void resumeIssuanceJob_shouldRequeueFailedJob() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        UUID runningJobId = UUID.randomUUID();
+        when(bulkCardIssuanceService.resume(jobId)).thenReturn(new IssuanceJobResponse(jobId,
+                IssuanceJobResponse.Status.QUEUED, 5, 2, Instant.parse("2026-10-18T10:00:00Z"), null, null));
+        when(bulkCardIssuanceService.resume(runningJobId)).thenThrow(new IssuanceJobNotResumableException());
+
+        mvc.perform(post("/admin/cards/issuance-jobs/{jobId}/resume", jobId))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andExpect(jsonPath("$.issued").value(2));
+
+        mvc.perform(post("/admin/cards/issuance-jobs/{jobId}/resume", runningJobId))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("GET /admin/cards/export — streams the export, gzip only when the client accepts it")
+    void exportByStatus_shouldStreamAndGzipOnRequest() throws Exception {
+        String body = "{\"cardId\":\"x\"}\n";
+        when(cardExportService.exportByStatus(eq(StatusCard.BLOCKED), eq(CardExportFormat.NDJSON), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<OutputStream>getArgument(2).write(body.getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        mvc.perform(get("/admin/cards/export").param("status", "BLOCKED"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"cards-blocked.ndjson\""))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(body));
+
+        byte[] gzipped = mvc.perform(get("/admin/cards/export").param("status", "BLOCKED")
+                        .header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertEquals(body, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @DisplayName("GET /admin/cards/export — gzip;q=0 is a refusal, the body goes out uncompressed")
+    void exportByStatus_shouldNotGzip_whenGzipRefused() throws Exception {
+        String body = "{\"cardId\":\"x\"}\n";
+        when(cardExportService.exportByStatus(eq(StatusCard.BLOCKED), eq(CardExportFormat.NDJSON), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<OutputStream>getArgument(2).write(body.getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        mvc.perform(get("/admin/cards/export").param("status", "BLOCKED")
+                        .header("Accept-Encoding", "deflate, gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(body));
+
+        mvc.perform(get("/admin/cards/export").param("status", "BLOCKED")
+                        .header("Accept-Encoding", "gzip;q=0.5, *;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+    }
+}
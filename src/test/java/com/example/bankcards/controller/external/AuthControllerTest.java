@@ -0,0 +1,85 @@
+package com.example.bankcards.controller.external;
+
+import com.example.bankcards.config.JwtService;
+import com.example.bankcards.controller.advice.RestExceptionHandler;
+import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.service.RefreshTokenService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AuthController.class)
+@Import(RestExceptionHandler.class)
+@AutoConfigureMockMvc(addFilters = false)
+class AuthControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private JwtService jwtService;
+
+    @MockitoBean
+    private AuthenticationManager authenticationManager;
+
+    @MockitoBean
+    private RefreshTokenService refreshTokenService;
+
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    @DisplayName("POST /auth/login — issues a refresh token by default")
+    void login_shouldIssueRefreshToken_byDefault() throws Exception {
+        authenticate();
+        when(refreshTokenService.issue(userId)).thenReturn("refresh");
+
+        mvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"alice\",\"password\":\"secret\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("access"))
+                .andExpect(jsonPath("$.refreshToken").value("refresh"));
+
+        verify(refreshTokenService).issue(userId);
+    }
+
+    @Test
+    @DisplayName("POST /auth/login — rememberMe=false opts out of the refresh token")
+    void login_shouldNotIssueRefreshToken_whenRememberMeFalse() throws Exception {
+        authenticate();
+
+        mvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"alice\",\"password\":\"secret\",\"rememberMe\":false}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("access"))
+                .andExpect(jsonPath("$.refreshToken").doesNotExist());
+
+        verifyNoInteractions(refreshTokenService);
+    }
+
+    private void authenticate() {
+        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        UserPrincipal principal = new UserPrincipal(userId, "alice", "hash", authorities);
+        when(authenticationManager.authenticate(any()))
+                .thenReturn(UsernamePasswordAuthenticationToken.authenticated(principal, null, authorities));
+        when(jwtService.generateToken(eq(userId), eq("alice"), anyList())).thenReturn("access");
+    }
+}
@@ -1,10 +1,15 @@
 package com.example.bankcards.controller.external;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CardCursor;
+import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotentTransferService;
 import com.example.bankcards.service.TransferService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
@@ -44,6 +49,9 @@ class UserCardControllerTest {
     @MockitoBean
     private TransferService transferService;
 
+    @MockitoBean
+    private IdempotentTransferService idempotentTransferService;
+
     private final UUID ownerId = UUID.randomUUID();
     private final UUID cardId = UUID.randomUUID();
     private final UUID toCardId = UUID.randomUUID();
@@ -65,7 +73,7 @@ class UserCardControllerTest {
     @Test
     @DisplayName("GET /cards/{cardId} — returns CardResponse (200) when the card belongs to the authenticated user")
     void getCardById_shouldReturnCardResponse_whenCardBelongsToAuthenticatedUser() throws Exception {
-        when(service.getMyById(ownerId, cardId)).thenReturn(card);
+        when(service.getMyById(ownerId, cardId)).thenReturn(CardResponse.from(card));
 
         mvc.perform(get("/api/cards/{cardId}", cardId)
                         .header("X-User-Id", ownerId.toString()))
@@ -91,7 +99,7 @@ class UserCardControllerTest {
                 (short) 12, (short) 2026, StatusCard.ACTIVE, BigDecimal.valueOf(100));
 
         Pageable pageable = PageRequest.of(0, 2, Sort.by("id").descending());
-        Page<Card> page = new PageImpl<>(List.of(card, cardSecond), pageable, 2);
+        Page<CardResponse> page = new PageImpl<>(List.of(card, cardSecond), pageable, 2).map(CardResponse::from);
 
         when(service.getMyCards(eq(ownerId), any(Pageable.class)))
                 .thenReturn(page);
@@ -123,7 +131,7 @@ class UserCardControllerTest {
                 (short) 12, (short) 2026, StatusCard.ACTIVE, BigDecimal.valueOf(100));
 
         Pageable pageable = PageRequest.of(0, 2, Sort.by("id").descending());
-        Page<Card> page = new PageImpl<>(List.of(card, cardSecond), pageable, 2);
+        Page<CardResponse> page = new PageImpl<>(List.of(card, cardSecond), pageable, 2).map(CardResponse::from);
 
         when(service.getMyCardsByStatus(eq(ownerId),eq(StatusCard.ACTIVE), any(Pageable.class)))
                 .thenReturn(page);
@@ -150,6 +158,56 @@ class UserCardControllerTest {
 
     }
 
+    @Test
+    @DisplayName("GET /cards?cursor= — returns the first slice with nextCursor and no total count (200)")
+    void getMyCardsByCursor_shouldReturnFirstSliceWithNextCursor() throws Exception {
+        Slice<CardResponse> slice = new SliceImpl<>(List.of(card), PageRequest.ofSize(1), true).map(CardResponse::from);
+        when(service.getMyCardsAfter(ownerId, StatusCard.ACTIVE, null, 1)).thenReturn(slice);
+
+        mvc.perform(get("/api/cards")
+                        .param("status", "ACTIVE")
+                        .param("cursor", "")
+                        .param("size", "1")
+                        .header("X-User-Id", ownerId.toString())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].cardId").value(cardId.toString()))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value(new CardCursor(StatusCard.ACTIVE, cardId).encode()))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+
+        verify(service, never()).getMyCardsByStatus(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("GET /cards?cursor=... — continues after the card from the cursor (200)")
+    void getMyCardsByCursor_shouldContinueAfterCursor() throws Exception {
+        when(service.getMyCardsAfter(ownerId, null, cardId, 20))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.ofSize(20), false));
+
+        mvc.perform(get("/api/cards")
+                        .param("cursor", new CardCursor(null, cardId).encode())
+                        .header("X-User-Id", ownerId.toString())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasNext").value(false))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /cards?cursor=... — returns 400 when the cursor was issued for another status filter")
+    void getMyCardsByCursor_shouldReturn400_whenCursorFilterDiffers() throws Exception {
+        mvc.perform(get("/api/cards")
+                        .param("status", "BLOCKED")
+                        .param("cursor", new CardCursor(StatusCard.ACTIVE, cardId).encode())
+                        .header("X-User-Id", ownerId.toString())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(service);
+    }
+
     @Test
     @DisplayName("PATCH /cards/{cardId}/block — blocks the card and returns CardResponse with BLOCK status (200)")
     void blockMyCard_shouldReturnBlockedCardResponse_whenRequestIsValid() throws Exception{
@@ -288,4 +346,73 @@ class UserCardControllerTest {
         verify(transferService, times(1)).transfer(eq(ownerId), any(TransferRequest.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("POST /cards/transfers:batch — returns per-item results (200) for BEST_EFFORT batch")
+    void transferBatch_shouldReturnResults_whenBestEffort() throws Exception {
+        BatchTransferResponse response = BatchTransferResponse.of(List.of(
+                new BatchTransferResponse.Item(0, BatchTransferResponse.Status.APPLIED, null),
+                new BatchTransferResponse.Item(1, BatchTransferResponse.Status.FAILED, "Card not found")));
+        when(transferService.transferBatch(eq(ownerId), any(), eq(BatchTransferRequest.Mode.BEST_EFFORT)))
+                .thenReturn(response);
+
+        mvc.perform(post("/api/cards/transfers:batch")
+                        .header("X-User-Id", ownerId.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"mode": "BEST_EFFORT", "transfers": [%s, %s]}
+                                """.formatted(body, body)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.results[1].status").value("FAILED"));
+
+        verify(transferService, times(1)).transferBatch(eq(ownerId), any(), eq(BatchTransferRequest.Mode.BEST_EFFORT));
+    }
+
+    @Test
+    @DisplayName("POST /cards/transfers:batch — returns 409 when ALL_OR_NOTHING batch is rolled back")
+    void transferBatch_shouldReturn409_whenAllOrNothingBatchRolledBack() throws Exception {
+        BatchTransferResponse response = BatchTransferResponse.of(List.of(
+                new BatchTransferResponse.Item(0, BatchTransferResponse.Status.FAILED, "Amount must be > 0")));
+        when(transferService.transferBatch(eq(ownerId), any(), eq(BatchTransferRequest.Mode.ALL_OR_NOTHING)))
+                .thenReturn(response);
+
+        mvc.perform(post("/api/cards/transfers:batch")
+                        .header("X-User-Id", ownerId.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"transfers": [%s]}
+                                """.formatted(body)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.results[0].message").value("Amount must be > 0"));
+    }
+
+    @Test
+    @DisplayName("POST /cards/transfer with Idempotency-Key — delegates to the idempotent transfer (204)")
+    void transferForMyCard_shouldUseIdempotentTransfer_whenIdempotencyKeyProvided() throws Exception {
+        mvc.perform(post("/api/cards/transfer")
+                        .header("X-User-Id", ownerId.toString())
+                        .header("Idempotency-Key", "retry-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isNoContent());
+
+        verify(idempotentTransferService, times(1)).transfer(eq(ownerId), eq("retry-42"), any(TransferRequest.class));
+        verifyNoInteractions(transferService);
+    }
+
+    @Test
+    @DisplayName("POST /cards/transfer with reused Idempotency-Key — returns 422")
+    void transferForMyCard_shouldReturn422_whenIdempotencyKeyReusedForAnotherTransfer() throws Exception {
+        doThrow(new IdempotencyKeyReusedException())
+                .when(idempotentTransferService).transfer(eq(ownerId), eq("retry-42"), any(TransferRequest.class));
+
+        mvc.perform(post("/api/cards/transfer")
+                        .header("X-User-Id", ownerId.toString())
+                        .header("Idempotency-Key", "retry-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isUnprocessableContent())
+                .andExpect(jsonPath("$.message").value(Matchers.containsString("Idempotency-Key was already used")));
+    }
+}
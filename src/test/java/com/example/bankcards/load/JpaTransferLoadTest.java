@@ -0,0 +1,9 @@
+package com.example.bankcards.load;
+
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.context.TestPropertySource;
+
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_PG_TESTS", matches = "true")
+@TestPropertySource(properties = "card.transfer.mode=JPA")
+class JpaTransferLoadTest extends TransferLoadTest {
+}
@@ -0,0 +1,394 @@
+package com.example.bankcards.load;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.example.bankcards.service.TransferMode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Нагрузочный прогон всего приложения по HTTP на реальном PostgreSQL: переводы, списки карт и вход вперемешку.
+// Прогон идёт в обоих режимах переводов (card.transfer.mode), каждый в своём контексте: JpaTransferLoadTest
+// и SqlTransferLoadTest. После каждого печатается сравнение p99 режимов, прогнанных в этой JVM.
+// Запуск: docker compose up -d, затем BANKCARDS_PG_TESTS=true DB_HOST=... mvn test -Dtest='*TransferLoadTest'
+// Параметры (-D): load.clients=32, load.duration-ms=30000, load.users=50, load.cards-per-user=4,
+// load.mix=transfer:70,list:25,login:5, load.skew=1.0 (0 - владельцы и карты равновероятны,
+// больше - запросы сходятся на первых владельцах и их первых картах)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_PG_TESTS", matches = "true")
+@TestPropertySource(properties = {"spring.jpa.show-sql=false", "spring.jpa.properties.hibernate.format_sql=false"})
+abstract class TransferLoadTest {
+
+    private static final String PASSWORD = "load-password";
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+    //пользователи этого прогона, параметр - usernamePattern()
+    private static final String RUN_USERS = "SELECT id FROM users WHERE username LIKE ?";
+
+    private enum Op { TRANSFER, LIST, LOGIN }
+
+    //задержки переводов по режимам, прогнанным в этой JVM
+    private static final Map<TransferMode, ModeResult> MODE_RESULTS = new ConcurrentSkipListMap<>();
+
+    private record ModeResult(long transfers, double perSecond, double p50, double p99, double p999) {}
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${card.transfer.mode:JPA}")
+    private TransferMode mode;
+
+    private final int clients = Integer.getInteger("load.clients", 32);
+    private final long durationMs = Long.getLong("load.duration-ms", 30_000);
+    private final int userCount = Integer.getInteger("load.users", 50);
+    private final int cardsPerUser = Integer.getInteger("load.cards-per-user", 4);
+    private final double skew = Double.parseDouble(System.getProperty("load.skew", "1.0"));
+    private final Map<Op, Integer> mix = parseMix(System.getProperty("load.mix", "transfer:70,list:25,login:5"));
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final List<UUID> userIds = new ArrayList<>();
+    private final Map<UUID, String> usernames = new HashMap<>();
+    private final Map<UUID, List<UUID>> cardsByUser = new HashMap<>();
+    private final Map<UUID, String> tokens = new ConcurrentHashMap<>();
+
+    private final Map<Op, ConcurrentLinkedQueue<Long>> latencies = new EnumMap<>(Op.class);
+    private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final Map<Integer, double[]> zipf = new ConcurrentHashMap<>();
+
+    TransferLoadTest() {
+        for (Op op : Op.values()) {
+            latencies.put(op, new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent transfers, listings and logins keep total money and every card's ledger consistent")
+    void mixedLoad_shouldConserveMoney() throws Exception {
+        seed();
+        BigDecimal totalBefore = totalBalance();
+        long deadlocksBefore = deadlocks();
+        double retriesBefore = lockRetries();
+
+        long started = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                running.add(pool.submit(this::drive));
+            }
+            for (Future<?> client : running) {
+                client.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        BigDecimal totalAfter = totalBalance();
+        long lostUpdates = cardsNotMatchingLedger();
+        long ledgerTransfers = ledgerTransfers();
+        long okTransfers = count(Op.TRANSFER + " 204");
+
+        report(seconds, deadlocks() - deadlocksBefore, lockRetries() - retriesBefore, lostUpdates,
+                ledgerTransfers, totalBefore, totalAfter);
+
+        assertEquals(0, totalBefore.compareTo(totalAfter), "money not conserved: " + totalBefore + " -> " + totalAfter);
+        assertEquals(0, lostUpdates, "cards whose balance disagrees with their ledger");
+        assertEquals(okTransfers, ledgerTransfers, "acknowledged transfers vs transfers in the ledger");
+        assertTrue(okTransfers > 0, "no transfer succeeded");
+        assertEquals(0, statuses.entrySet().stream()
+                .filter(entry -> entry.getKey().endsWith(" 500") || entry.getKey().endsWith(" ERR"))
+                .mapToLong(entry -> entry.getValue().sum()).sum(), "server errors: " + statuses);
+    }
+
+    //сравнение p99 перевода между режимами; режим с наименьшим p99 - кандидат на card.transfer.mode
+    @AfterAll
+    static void compareModes() {
+        if (MODE_RESULTS.isEmpty()) {
+            return;
+        }
+        System.out.printf("%nTransfer latency by card.transfer.mode%n");
+        System.out.printf("%-5s %9s %10s %10s %10s %10s%n", "mode", "requests", "req/s", "p50, ms", "p99, ms", "p999, ms");
+        MODE_RESULTS.forEach((mode, result) -> System.out.printf("%-5s %9d %10.1f %10.2f %10.2f %10.2f%n", mode,
+                result.transfers(), result.perSecond(), result.p50(), result.p99(), result.p999()));
+        MODE_RESULTS.entrySet().stream()
+                .min(Comparator.comparingDouble(entry -> entry.getValue().p99()))
+                .ifPresent(best -> System.out.println("Lowest transfer p99: " + best.getKey()
+                        + (MODE_RESULTS.size() < TransferMode.values().length ? " (not all modes ran)" : "")));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM card_balance_snapshot WHERE card_id IN (SELECT id FROM bank_card WHERE owner_id IN ("
+                + RUN_USERS + "))", usernamePattern());
+        jdbcTemplate.update("DELETE FROM transfer_ledger WHERE owner_id IN (" + RUN_USERS + ")", usernamePattern());
+        jdbcTemplate.update("DELETE FROM bank_card WHERE owner_id IN (" + RUN_USERS + ")", usernamePattern());
+        jdbcTemplate.update("DELETE FROM refresh_token WHERE user_id IN (" + RUN_USERS + ")", usernamePattern());
+        jdbcTemplate.update("DELETE FROM users WHERE id IN (" + RUN_USERS + ")", usernamePattern());
+    }
+
+    //один клиент: запросы подряд до конца отведённого времени
+    private void drive() {
+        long deadline = System.nanoTime() + durationMs * 1_000_000;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            UUID user = userIds.get(skewed(userIds.size(), random));
+            Op op = pick(random);
+            long begin = System.nanoTime();
+            String status;
+            try {
+                status = switch (op) {
+                    case TRANSFER -> transfer(user, random);
+                    case LIST -> String.valueOf(send(authorized(user, "/api/cards?page=0&size=20").GET().build()).statusCode());
+                    case LOGIN -> String.valueOf(login(user).statusCode());
+                };
+            } catch (Exception e) {
+                status = "ERR";
+            }
+            latencies.get(op).add(System.nanoTime() - begin);
+            statuses.computeIfAbsent(op + " " + status, key -> new LongAdder()).increment();
+        }
+    }
+
+    private String transfer(UUID user, ThreadLocalRandom random) throws Exception {
+        List<UUID> cards = cardsByUser.get(user);
+        int from = skewed(cards.size(), random);
+        int to = skewed(cards.size() - 1, random);
+        if (to >= from) {
+            to++;
+        }
+        BigDecimal amount = BigDecimal.valueOf(random.nextLong(1, 2_000), 2);
+        String body = JSON.writeValueAsString(Map.of("fromCard", cards.get(from), "toCard", cards.get(to),
+                "amount", amount));
+        HttpResponse<String> response = send(authorized(user, "/api/cards/transfer")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+        return String.valueOf(response.statusCode());
+    }
+
+    private HttpResponse<String> login(UUID user) throws Exception {
+        String body = JSON.writeValueAsString(Map.of("username", usernames.get(user), "password", PASSWORD));
+        return send(HttpRequest.newBuilder(uri("/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private HttpRequest.Builder authorized(UUID user, String path) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + tokens.get(user))
+                .header("X-User-Id", user.toString());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private void seed() throws Exception {
+        //BCrypt один раз: у всех пользователей прогона одинаковый пароль
+        String hash = passwordEncoder.encode(PASSWORD);
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> roles = new ArrayList<>();
+        List<Object[]> cards = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            UUID userId = UUID.randomUUID();
+            userIds.add(userId);
+            usernames.put(userId, "load-" + runId + "-" + i);
+            users.add(new Object[]{userId, usernames.get(userId), hash});
+            roles.add(new Object[]{userId, "USER"});
+            List<UUID> owned = new ArrayList<>();
+            for (int c = 0; c < cardsPerUser; c++) {
+                UUID cardId = UUID.randomUUID();
+                owned.add(cardId);
+                cards.add(new Object[]{cardId, userId, cardId.toString(), String.format("%04d", c), INITIAL_BALANCE});
+            }
+            cardsByUser.put(userId, owned);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, username, hash_password) VALUES (?, ?, ?)", users);
+        jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role) VALUES (?, ?)", roles);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO bank_card (id, owner_id, pan_encrypted, pan_hash, pan_last4,
+                                       expiry_month, expiry_year, status_card, balance)
+                VALUES (?, ?, '\\x00'::bytea, md5(?), ?, 12, 2099, 'ACTIVE', ?)
+                """, cards);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(clients, 8));
+        try {
+            List<Future<?>> logins = new ArrayList<>();
+            for (UUID user : userIds) {
+                logins.add(pool.submit(() -> {
+                    HttpResponse<String> response = login(user);
+                    assertEquals(200, response.statusCode(), response.body());
+                    tokens.put(user, JSON.readTree(response.body()).get("token").asString());
+                    return null;
+                }));
+            }
+            for (Future<?> login : logins) {
+                login.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private BigDecimal totalBalance() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM bank_card WHERE owner_id IN ("
+                + RUN_USERS + ")", BigDecimal.class, usernamePattern());
+    }
+
+    //потерянное обновление: баланс карты разошёлся с начальным балансом плюс её записи в журнале
+    private long cardsNotMatchingLedger() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM bank_card c WHERE c.owner_id IN (" + RUN_USERS + ")"
+                        + " AND c.balance <> ? + COALESCE((SELECT SUM(l.amount) FROM transfer_ledger l"
+                        + " WHERE l.card_id = c.id), 0)",
+                Long.class, usernamePattern(), INITIAL_BALANCE);
+    }
+
+    private long ledgerTransfers() {
+        return jdbcTemplate.queryForObject("SELECT count(DISTINCT transfer_id) FROM transfer_ledger WHERE owner_id IN ("
+                + RUN_USERS + ")", Long.class, usernamePattern());
+    }
+
+    //счётчик всей базы: параллельная работа других клиентов той же БД тоже попадёт сюда
+    private long deadlocks() {
+        return jdbcTemplate.queryForObject(
+                "SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()", Long.class);
+    }
+
+    private double lockRetries() {
+        Counter retries = meterRegistry.find("bankcards.transfer.lock.retries").counter();
+        return retries == null ? 0 : retries.count();
+    }
+
+    private void report(double seconds, long deadlocks, double lockRetries, long lostUpdates, long ledgerTransfers,
+                        BigDecimal totalBefore, BigDecimal totalAfter) {
+        System.out.printf("%nLoad: mode %s, %d clients, %.1f s, %d users x %d cards, mix %s, skew %.2f%n",
+                mode, clients, seconds, userCount, cardsPerUser, mix, skew);
+        System.out.printf("%-9s %9s %10s %10s %10s %10s%n", "op", "requests", "req/s", "p50, ms", "p99, ms", "p999, ms");
+        for (Op op : Op.values()) {
+            long[] samples = latencies.get(op).stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-9s %9d %10.1f %10.2f %10.2f %10.2f%n", op, samples.length, samples.length / seconds,
+                    percentile(samples, 0.50), percentile(samples, 0.99), percentile(samples, 0.999));
+            if (op == Op.TRANSFER) {
+                MODE_RESULTS.put(mode, new ModeResult(samples.length, samples.length / seconds,
+                        percentile(samples, 0.50), percentile(samples, 0.99), percentile(samples, 0.999)));
+            }
+        }
+        System.out.println("Responses: " + new TreeMap<>(statuses));
+        System.out.printf("PostgreSQL deadlocks: %d, lock retries: %.0f, lock timeouts (503): %d%n",
+                deadlocks, lockRetries, count(Op.TRANSFER + " 503"));
+        System.out.printf("Transfers acknowledged: %d, in ledger: %d, lost updates: %d, money: %s -> %s%n",
+                count(Op.TRANSFER + " 204"), ledgerTransfers, lostUpdates, totalBefore, totalAfter);
+    }
+
+    private long count(String status) {
+        LongAdder adder = statuses.get(status);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    //Zipf: вероятность индекса i пропорциональна 1 / (i + 1)^skew
+    private int skewed(int size, ThreadLocalRandom random) {
+        if (skew <= 0 || size == 1) {
+            return random.nextInt(size);
+        }
+        double[] cumulative = zipf.computeIfAbsent(size, n -> {
+            double[] weights = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, skew);
+                weights[i] = sum;
+            }
+            return weights;
+        });
+        int index = Arrays.binarySearch(cumulative, random.nextDouble(cumulative[size - 1]));
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private Op pick(ThreadLocalRandom random) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = random.nextInt(total);
+        for (Map.Entry<Op, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        return Op.TRANSFER;
+    }
+
+    private String usernamePattern() {
+        return "load-" + runId + "-%";
+    }
+
+    private static Map<Op, Integer> parseMix(String spec) {
+        Map<Op, Integer> parsed = new EnumMap<>(Op.class);
+        for (String part : spec.split(",")) {
+            String[] weight = part.trim().split(":");
+            parsed.put(Op.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        return parsed;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.service.CardExportFormat;
+import com.example.bankcards.service.CardExportService;
+import org.hibernate.Session;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Выгрузка карт курсором на реальном PostgreSQL: в persistence context не копятся сущности,
+// поэтому память не зависит от числа строк. Запуск: BANKCARDS_PG_TESTS=true DB_HOST=... mvn test -Dtest=CardExportPgTest
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_PG_TESTS", matches = "true")
+@TestPropertySource(properties = {"spring.jpa.show-sql=false", "spring.jpa.properties.hibernate.format_sql=false"})
+class CardExportPgTest {
+
+    private static final int CARDS = 200_000;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Streaming export loads no managed entities whatever the row count")
+    void export_shouldNotAccumulateEntities() throws IOException {
+        jdbcTemplate.update("""
+                INSERT INTO bank_card (id, owner_id, pan_encrypted, pan_hash, pan_last4,
+                                       expiry_month, expiry_year, status_card, balance)
+                SELECT gen_random_uuid(), gen_random_uuid(), decode(repeat('ab', 40), 'hex'), md5('export-' || g),
+                       lpad((g % 10000)::text, 4, '0'), 12, 2030, 'BLOCKED', 0
+                FROM generate_series(1, ?) AS g
+                """, CARDS);
+        long blocked = jdbcTemplate.queryForObject("SELECT count(*) FROM bank_card WHERE status_card = 'BLOCKED'",
+                Long.class);
+        entityManager.clear();
+
+        Session session = entityManager.getEntityManager().unwrap(Session.class);
+        CardExportService exportService = new CardExportService(cardRepository, JsonMapper.builder().build());
+        ProbeStream out = new ProbeStream(session);
+
+        long exported = exportService.exportByStatus(StatusCard.BLOCKED, CardExportFormat.NDJSON, out);
+
+        System.out.printf("%nExported %d cards, %d MB of NDJSON, at most %d managed entities%n",
+                exported, out.bytes >> 20, out.maxManaged);
+        assertEquals(blocked, exported);
+        assertEquals(0, out.maxManaged, "managed entities during export");
+    }
+
+    //отбрасывает байты, на каждой записи буфера смотрит размер persistence context
+    private static final class ProbeStream extends OutputStream {
+
+        private final Session session;
+        private long bytes;
+        private int maxManaged;
+
+        private ProbeStream(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            maxManaged = Math.max(maxManaged, session.getStatistics().getEntityCount());
+        }
+    }
+}
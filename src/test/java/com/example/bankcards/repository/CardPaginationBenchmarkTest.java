@@ -0,0 +1,116 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.enums.StatusCard;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Сравнение OFFSET + COUNT (Page) и keyset-пагинации на реальном PostgreSQL.
+// Запуск: docker compose up -d, затем BANKCARDS_PG_TESTS=true DB_HOST=... mvn test -Dtest=CardPaginationBenchmarkTest
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_PG_TESTS", matches = "true")
+@TestPropertySource(properties = {"spring.jpa.show-sql=false", "spring.jpa.properties.hibernate.format_sql=false"})
+class CardPaginationBenchmarkTest {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 10_000;
+    private static final int ACTIVE_CARDS = DEEP_PAGE * PAGE_SIZE + 10_000;
+    private static final int BLOCKED_CARDS = 20_000;
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 10;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Keyset pagination: page 10,000 costs about the same as page 1, unlike OFFSET + COUNT")
+    void keysetDeepPageShouldBeFasterThanOffsetDeepPage() {
+        seed();
+
+        PageRequest firstPage = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        PageRequest deepPage = PageRequest.of(DEEP_PAGE - 1, PAGE_SIZE, Sort.by("id"));
+        UUID deepCursor = jdbcTemplate.queryForObject(
+                "SELECT id FROM bank_card WHERE status_card = 'ACTIVE' ORDER BY id OFFSET ? LIMIT 1",
+                UUID.class, deepPage.getOffset() - 1);
+
+        // обе стратегии должны возвращать одни и те же карты
+        Page<CardResponse> offsetResult = cardRepository.findViewsByStatus(StatusCard.ACTIVE, deepPage);
+        List<CardResponse> keysetResult = cardRepository.findViewsByStatusAfter(
+                StatusCard.ACTIVE, deepCursor, Limit.of(PAGE_SIZE));
+        assertEquals(ids(offsetResult.getContent()), ids(keysetResult));
+
+        double offsetFirst = medianMillis(() -> cardRepository.findViewsByStatus(StatusCard.ACTIVE, firstPage));
+        double offsetDeep = medianMillis(() -> cardRepository.findViewsByStatus(StatusCard.ACTIVE, deepPage));
+        double keysetFirst = medianMillis(() -> cardRepository.findViewsByStatusAfter(
+                StatusCard.ACTIVE, new UUID(0, 0), Limit.of(PAGE_SIZE + 1)));
+        double keysetDeep = medianMillis(() -> cardRepository.findViewsByStatusAfter(
+                StatusCard.ACTIVE, deepCursor, Limit.of(PAGE_SIZE + 1)));
+
+        System.out.printf("%nCard listing by status, %d ACTIVE of %d cards, page size %d, median of %d runs%n",
+                ACTIVE_CARDS, ACTIVE_CARDS + BLOCKED_CARDS, PAGE_SIZE, ITERATIONS);
+        System.out.printf("%-22s %12s %12s%n", "strategy", "page 1, ms", "page " + DEEP_PAGE + ", ms");
+        System.out.printf("%-22s %12.2f %12.2f%n", "OFFSET + COUNT (Page)", offsetFirst, offsetDeep);
+        System.out.printf("%-22s %12.2f %12.2f%n", "keyset (cursor)", keysetFirst, keysetDeep);
+
+        assertTrue(keysetDeep < offsetDeep,
+                "keyset page " + DEEP_PAGE + " took " + keysetDeep + " ms, offset " + offsetDeep + " ms");
+    }
+
+    private void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO bank_card (id, owner_id, pan_encrypted, pan_hash, pan_last4,
+                                       expiry_month, expiry_year, status_card, balance)
+                SELECT gen_random_uuid(), gen_random_uuid(), '\\x00'::bytea, md5('bench-' || g),
+                       lpad((g % 10000)::text, 4, '0'), 12, 2030,
+                       CASE WHEN g <= ? THEN 'ACTIVE' ELSE 'BLOCKED' END, 0
+                FROM generate_series(1, ?) AS g
+                """, ACTIVE_CARDS, ACTIVE_CARDS + BLOCKED_CARDS);
+        jdbcTemplate.execute("ANALYZE bank_card");
+    }
+
+    private double medianMillis(Supplier<?> query) {
+        for (int i = 0; i < WARMUP; i++) {
+            query.get();
+            entityManager.clear();
+        }
+        double[] samples = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long begin = System.nanoTime();
+            query.get();
+            samples[i] = (System.nanoTime() - begin) / 1_000_000.0;
+            entityManager.clear();
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+
+    private static List<UUID> ids(List<CardResponse> cards) {
+        return cards.stream().map(CardResponse::cardId).toList();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.enums.StatusCard;
+import org.hibernate.Session;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Порция карт для ответа API: сущности + CardResponse.from против проекции сразу в CardResponse.
+// Сравниваются размер строки в PostgreSQL, выделенная на порцию память и число управляемых сущностей.
+// Запуск: docker compose up -d, затем BANKCARDS_PG_TESTS=true DB_HOST=... mvn test -Dtest=CardProjectionPgTest
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_PG_TESTS", matches = "true")
+@TestPropertySource(properties = {"spring.jpa.show-sql=false", "spring.jpa.properties.hibernate.format_sql=false"})
+class CardProjectionPgTest {
+
+    private static final int CARDS = 20_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private static final String FULL_ROW = "SELECT * FROM bank_card";
+    private static final String VIEW_ROW = """
+            SELECT id, '**** **** **** ' || pan_last4, expiry_month, expiry_year, status_card, balance
+            FROM bank_card""";
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Projection reads fewer bytes per row, allocates less per page and keeps no managed entities")
+    void projectionShouldBeLighterThanEntities() {
+        // pan_encrypted и pan_hash тех же размеров, что выдаёт PanCryptoServiceImpl: iv + 16 цифр + tag и base64 SHA-256
+        jdbcTemplate.update("""
+                INSERT INTO bank_card (id, owner_id, pan_encrypted, pan_hash, pan_last4,
+                                       expiry_month, expiry_year, status_card, balance)
+                SELECT gen_random_uuid(), gen_random_uuid(),
+                       decode(md5('a' || g) || md5('b' || g) || left(md5('c' || g), 24), 'hex'),
+                       encode(sha256(('proj-' || g)::bytea), 'base64'),
+                       lpad((g % 10000)::text, 4, '0'), 12, 2030, 'ACTIVE', 1234.56
+                FROM generate_series(1, ?) AS g
+                """, CARDS);
+        jdbcTemplate.execute("ANALYZE bank_card");
+
+        double fullRowBytes = rowBytes(FULL_ROW);
+        double viewRowBytes = rowBytes(VIEW_ROW);
+
+        UUID first = new UUID(0, 0);
+        Supplier<List<CardResponse>> entities = () -> entityManager.getEntityManager()
+                .createQuery("select c from Card c where c.status = :status and c.id > :afterId order by c.id", Card.class)
+                .setParameter("status", StatusCard.ACTIVE)
+                .setParameter("afterId", first)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList().stream()
+                .map(CardResponse::from)
+                .toList();
+        Supplier<List<CardResponse>> views = () -> cardRepository.findViewsByStatusAfter(
+                StatusCard.ACTIVE, first, Limit.of(PAGE_SIZE));
+
+        assertEquals(entities.get(), views.get());
+        entityManager.clear();
+
+        Session session = entityManager.getEntityManager().unwrap(Session.class);
+        entities.get();
+        int entitiesManaged = session.getStatistics().getEntityCount();
+        entityManager.clear();
+        views.get();
+        int viewsManaged = session.getStatistics().getEntityCount();
+        entityManager.clear();
+
+        long entitiesAllocated = medianAllocatedBytes(entities);
+        long viewsAllocated = medianAllocatedBytes(views);
+
+        System.out.printf("%nPage of %d cards, median of %d runs%n", PAGE_SIZE, ITERATIONS);
+        System.out.printf("%-32s %14s %18s %16s%n", "read path", "bytes per row", "allocated per page", "managed entities");
+        System.out.printf("%-32s %14.1f %18d %16d%n", "entity + CardResponse.from", fullRowBytes, entitiesAllocated,
+                entitiesManaged);
+        System.out.printf("%-32s %14.1f %18d %16d%n", "constructor projection", viewRowBytes, viewsAllocated,
+                viewsManaged);
+
+        assertEquals(PAGE_SIZE, entitiesManaged);
+        assertEquals(0, viewsManaged);
+        assertTrue(viewRowBytes < fullRowBytes, "row bytes: view " + viewRowBytes + ", full " + fullRowBytes);
+        assertTrue(viewsAllocated < entitiesAllocated,
+                "allocated per page: view " + viewsAllocated + ", entities " + entitiesAllocated);
+    }
+
+    //средний размер строки первой порции в PostgreSQL, вместе с заголовком кортежа
+    private double rowBytes(String select) {
+        return jdbcTemplate.queryForObject("SELECT avg(pg_column_size(r.*)) FROM (" + select
+                + " WHERE status_card = 'ACTIVE' ORDER BY id LIMIT " + PAGE_SIZE + ") r", Double.class);
+    }
+
+    //память, выделенная текущим потоком на чтение порции; снимки для dirty checking входят в неё
+    private long medianAllocatedBytes(Supplier<?> read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < WARMUP; i++) {
+            read.get();
+            entityManager.clear();
+        }
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            read.get();
+            samples[i] = threads.getThreadAllocatedBytes(threadId) - before;
+            entityManager.clear();
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+}
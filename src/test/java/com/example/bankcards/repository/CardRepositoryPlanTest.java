@@ -0,0 +1,295 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.enums.StatusCard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Регрессия планов запросов CardRepository на реальном PostgreSQL: каждый запрос выполняется,
+// его SQL и параметры перехватываются на уровне JDBC и повторяются через EXPLAIN с теми же значениями.
+// Запуск: docker compose up -d, затем BANKCARDS_PG_TESTS=true DB_HOST=... mvn test -Dtest=CardRepositoryPlanTest
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "BANKCARDS_PG_TESTS", matches = "true")
+@TestPropertySource(properties = {"spring.jpa.show-sql=false", "spring.jpa.properties.hibernate.format_sql=false"})
+class CardRepositoryPlanTest {
+
+    private static final int OWNERS = 50_000;
+    private static final int CARDS_PER_OWNER = 10;
+
+    private static final String PK = "bank_card_pkey";
+    private static final String PAN_HASH = "bank_card_pan_hash_key";
+    private static final String OWNER_STATUS_ID = "idx_bank_card_owner_status_id";
+    private static final String STATUS_ID = "idx_bank_card_status_id";
+    private static final String EXPIRY = "idx_bank_card_expiry_not_expired";
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatementCapture capture;
+
+    private UUID ownerId;
+    private UUID fromCardId;
+    private UUID toCardId;
+    private String panHash;
+
+    @BeforeEach
+    void seed() {
+        // 97% ACTIVE, 2.8% EXPIRED, 0.2% BLOCKED - как в рабочей базе, где активных карт большинство
+        jdbcTemplate.update("""
+                INSERT INTO bank_card (id, owner_id, pan_encrypted, pan_hash, pan_last4,
+                                       expiry_month, expiry_year, status_card, balance)
+                SELECT gen_random_uuid(), o.owner_id, '\\x00'::bytea, md5('plan-' || o.n || '-' || c),
+                       lpad(((o.n * 10 + c) % 10000)::text, 4, '0'), 12, 2030,
+                       CASE WHEN (o.n * 10 + c) % 1000 < 2 THEN 'BLOCKED'
+                            WHEN (o.n * 10 + c) % 1000 < 30 THEN 'EXPIRED'
+                            ELSE 'ACTIVE' END,
+                       100
+                FROM (SELECT n, gen_random_uuid() AS owner_id FROM generate_series(1, ?) AS n) o
+                CROSS JOIN generate_series(1, ?) AS c
+                """, OWNERS, CARDS_PER_OWNER);
+        jdbcTemplate.execute("ANALYZE bank_card");
+
+        ownerId = jdbcTemplate.queryForObject("SELECT owner_id FROM bank_card LIMIT 1", UUID.class);
+        List<UUID> ownerCards = jdbcTemplate.queryForList(
+                "SELECT id FROM bank_card WHERE owner_id = ? AND status_card = 'ACTIVE' ORDER BY id LIMIT 2",
+                UUID.class, ownerId);
+        fromCardId = ownerCards.get(0);
+        toCardId = ownerCards.get(1);
+        panHash = jdbcTemplate.queryForObject("SELECT pan_hash FROM bank_card WHERE id = ?", String.class, fromCardId);
+    }
+
+    @Test
+    @DisplayName("Lookups by pan hash use the unique index")
+    void panHashLookupsShouldUseUniqueIndex() {
+        assertPlans(() -> cardRepository.findByPanHash(panHash), PAN_HASH);
+    }
+
+    @Test
+    @DisplayName("Lookups and locks of a user's card by id use the primary key")
+    void cardByIdLookupsShouldUsePrimaryKey() {
+        assertPlans(() -> cardRepository.findByIdAndOwnerId(fromCardId, ownerId), PK);
+        assertPlans(() -> cardRepository.findViewByIdAndOwnerId(fromCardId, ownerId), PK);
+        assertPlans(() -> cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId), PK);
+        assertPlans(() -> cardRepository.findAllForUpdateByIdInAndOwnerId(List.of(fromCardId, toCardId), ownerId), PK);
+        assertPlans(() -> cardRepository.transferAtomically(ownerId, fromCardId, toCardId, BigDecimal.ONE,
+                (short) 2026, (short) 10), PK);
+    }
+
+    @Test
+    @DisplayName("User's card listings, page and count, use the (owner_id, status_card, id) index")
+    void ownerListingsShouldUseOwnerStatusIndex() {
+        PageRequest page = PageRequest.of(0, 20, Sort.by("id"));
+
+        assertPlans(() -> cardRepository.findViewsByOwnerId(ownerId, page), OWNER_STATUS_ID);
+        assertPlans(() -> cardRepository.findViewsByOwnerIdAndStatus(ownerId, StatusCard.ACTIVE, page), OWNER_STATUS_ID);
+        assertPlans(() -> cardRepository.findViewsByOwnerIdAfter(
+                ownerId, new UUID(0, 0), Limit.of(21)), OWNER_STATUS_ID);
+        assertPlans(() -> cardRepository.findViewsByOwnerIdAndStatusAfter(
+                ownerId, StatusCard.ACTIVE, new UUID(0, 0), Limit.of(21)), OWNER_STATUS_ID);
+    }
+
+    @Test
+    @DisplayName("Admin listing by status uses an index, also for the most common status")
+    void statusListingsShouldUseStatusIndex() {
+        // Page с COUNT(*) по статусу, где лежит 97% таблицы, по смыслу читает почти всю таблицу,
+        // поэтому Page проверяется на выборочном статусе, а keyset - на самом массовом
+        assertPlans(() -> cardRepository.findViewsByStatus(StatusCard.BLOCKED, PageRequest.of(0, 20, Sort.by("id"))),
+                STATUS_ID);
+        // для массового статуса обход PK по id с фильтром так же дёшев, как (status_card, id)
+        assertPlans(() -> cardRepository.findViewsByStatusAfter(
+                StatusCard.ACTIVE, new UUID(0, 0), Limit.of(21)), STATUS_ID, PK);
+        UUID middle = jdbcTemplate.queryForObject(
+                "SELECT id FROM bank_card WHERE status_card = 'ACTIVE' ORDER BY id OFFSET ? LIMIT 1",
+                UUID.class, OWNERS * CARDS_PER_OWNER / 2);
+        assertPlans(() -> cardRepository.findViewsByStatusAfter(
+                StatusCard.ACTIVE, middle, Limit.of(21)), STATUS_ID, PK);
+        assertPlans(() -> cardRepository.findViewsByStatusAfter(
+                StatusCard.BLOCKED, middle, Limit.of(21)), STATUS_ID);
+    }
+
+    @Test
+    @DisplayName("Export by status streams in id order straight from the status index, without a sort")
+    void exportByStatusShouldReadStatusIndexInIdOrder() {
+        List<String> plans = assertPlans(() -> {
+            try (var views = cardRepository.streamViewsByStatus(StatusCard.BLOCKED)) {
+                views.count();
+            }
+        }, STATUS_ID);
+        // порядок по id даёт сам индекс (status_card, id), отдельная сортировка всей выгрузки не нужна
+        for (String plan : plans) {
+            assertFalse(plan.contains("Sort"), "export sorts instead of reading the index in order:\n" + plan);
+        }
+    }
+
+    @Test
+    @DisplayName("Expiry sweep finds candidates through the partial expiry index")
+    void expirySweepShouldUseExpiryIndex() {
+        assertPlans(() -> cardRepository.expireBefore((short) 2030, (short) 12, 1000), EXPIRY);
+    }
+
+    //выполняет запрос, затем для каждого его SQL к bank_card строит план с теми же параметрами
+    private List<String> assertPlans(Runnable query, String... expectedIndexes) {
+        capture.start();
+        query.run();
+        List<CapturedStatement> statements = capture.stop();
+        assertFalse(statements.isEmpty(), "no SQL against bank_card was captured");
+
+        List<String> plans = new ArrayList<>(statements.size());
+        for (CapturedStatement statement : statements) {
+            String plan = explain(statement);
+            plans.add(plan);
+            assertFalse(plan.contains("Seq Scan on bank_card"),
+                    "sequential scan on bank_card for:\n" + statement.sql() + "\nplan:\n" + plan);
+            assertTrue(Arrays.stream(expectedIndexes).anyMatch(plan::contains),
+                    "none of " + Arrays.toString(expectedIndexes) + " is used for:\n" + statement.sql()
+                            + "\nplan:\n" + plan);
+        }
+        return plans;
+    }
+
+    private String explain(CapturedStatement statement) {
+        List<String> lines = jdbcTemplate.query("EXPLAIN " + statement.sql(),
+                ps -> {
+                    for (Invocation setter : statement.parameters()) {
+                        setter.applyTo(ps);
+                    }
+                },
+                (rs, rowNum) -> rs.getString(1));
+        return String.join("\n", lines);
+    }
+
+    record Invocation(Method method, Object[] args) {
+        void applyTo(PreparedStatement ps) {
+            try {
+                method.invoke(ps, args);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    record CapturedStatement(String sql, List<Invocation> parameters) {}
+
+    //перехватывает SQL и вызовы setXxx подготовленных запросов к bank_card, пока включён захват
+    static class StatementCapture {
+
+        private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate");
+
+        private final List<CapturedStatement> captured = new CopyOnWriteArrayList<>();
+        private volatile boolean enabled;
+
+        void start() {
+            captured.clear();
+            enabled = true;
+        }
+
+        List<CapturedStatement> stop() {
+            enabled = false;
+            return List.copyOf(captured);
+        }
+
+        DataSource wrap(DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (method, args, result) ->
+                    method.getName().equals("getConnection") ? wrap((Connection) result) : result);
+        }
+
+        private Connection wrap(Connection connection) {
+            return proxy(Connection.class, connection, (method, args, result) -> {
+                if (method.getName().equals("prepareStatement") && args != null && args[0] instanceof String sql) {
+                    return wrap((PreparedStatement) result, sql);
+                }
+                return result;
+            });
+        }
+
+        private PreparedStatement wrap(PreparedStatement statement, String sql) {
+            List<Invocation> parameters = new ArrayList<>();
+            return proxy(PreparedStatement.class, statement, (method, args, result) -> {
+                if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    parameters.add(new Invocation(method, args.clone()));
+                } else if (method.getName().equals("clearParameters")) {
+                    parameters.clear();
+                } else if (EXECUTE.contains(method.getName()) && (args == null || args.length == 0)
+                        && enabled && sql.contains("bank_card") && !sql.startsWith("EXPLAIN")) {
+                    captured.add(new CapturedStatement(sql, List.copyOf(parameters)));
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, AfterCall afterCall) {
+            InvocationHandler handler = (p, method, args) -> {
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                return afterCall.apply(method, args, result);
+            };
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+
+        @FunctionalInterface
+        private interface AfterCall {
+            Object apply(Method method, Object[] args, Object result) throws Throwable;
+        }
+    }
+
+    @TestConfiguration
+    static class CaptureConfig {
+
+        @Bean
+        StatementCapture statementCapture() {
+            return new StatementCapture();
+        }
+
+        @Bean
+        static BeanPostProcessor statementCaptureDataSourcePostProcessor(
+                ObjectProvider<StatementCapture> capture) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? capture.getObject().wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.LoginThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<BoundedPasswordEncoder> encoders = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        encoders.forEach(BoundedPasswordEncoder::close);
+    }
+
+    @Test
+    @DisplayName("Should verify passwords on the pool and record verification time")
+    void shouldVerifyPasswordOnPool() {
+        BoundedPasswordEncoder encoder = encoder(new BCryptPasswordEncoder(4), 2, 4, 5_000);
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(3, meterRegistry.get("bankcards.auth.password.verify").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should reject immediately with LoginThrottledException when threads and queue are full")
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.matches(any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+        BoundedPasswordEncoder encoder = encoder(slow, 1, 1, 5_000);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> running = callers.submit(() -> encoder.matches("a", "hash"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Boolean> queued = callers.submit(() -> encoder.matches("b", "hash"));
+            while (meterRegistry.get("bankcards.auth.password.queue").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            assertThrows(LoginThrottledException.class, () -> encoder.matches("c", "hash"));
+            assertEquals(1, meterRegistry.get("bankcards.auth.password.rejected").counter().count());
+
+            release.countDown();
+            assertTrue(running.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail with LoginThrottledException when verification does not finish in time")
+    void shouldFailWhenVerificationTimesOut() {
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.matches(any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(1_000);
+            return true;
+        });
+        BoundedPasswordEncoder encoder = encoder(slow, 1, 1, 50);
+
+        assertThrows(LoginThrottledException.class, () -> encoder.matches("a", "hash"));
+    }
+
+    @Test
+    @DisplayName("Login should rehash a password stored with a lower BCrypt cost")
+    void login_shouldRehashPasswordWithOutdatedCost() {
+        BoundedPasswordEncoder encoder = encoder(new BCryptPasswordEncoder(5), 1, 4, 5_000);
+        String outdatedHash = new BCryptPasswordEncoder(4).encode("secret");
+        UserPrincipal user = new UserPrincipal(UUID.randomUUID(), "alice", outdatedHash,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        UserDetailsPasswordService passwordService = mock(UserDetailsPasswordService.class);
+        when(passwordService.updatePassword(any(), any())).thenAnswer(invocation -> user);
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(username -> user.copy());
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsPasswordService(passwordService);
+        new ProviderManager(provider).authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        verify(passwordService).updatePassword(any(), argThat(hash -> hash.startsWith("$2a$05$")));
+        assertTrue(encoder.upgradeEncoding(outdatedHash));
+    }
+
+    private BoundedPasswordEncoder encoder(PasswordEncoder delegate, int threads, int queueCapacity, long waitTimeoutMs) {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(delegate, threads, queueCapacity, waitTimeoutMs,
+                meterRegistry);
+        encoders.add(encoder);
+        return encoder;
+    }
+}
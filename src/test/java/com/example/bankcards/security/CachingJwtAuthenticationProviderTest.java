@@ -0,0 +1,100 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtAuthenticationProviderTest {
+
+    @Mock
+    private JwtDecoder jwtDecoder;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CachingJwtAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new CachingJwtAuthenticationProvider(jwtDecoder, new SecurityConfig().jwtAuthConverter(),
+                Clock.systemUTC(), meterRegistry, 100, 60_000);
+    }
+
+    @Test
+    @DisplayName("Repeated token is verified once; every request gets its own authentication with its own details")
+    void repeatedToken_shouldBeVerifiedOnce() {
+        when(jwtDecoder.decode("token-1")).thenReturn(jwt("token-1", Instant.now().plusSeconds(3600)));
+
+        Authentication first = provider.authenticate(bearer("token-1", "request-1"));
+        Authentication second = provider.authenticate(bearer("token-1", "request-2"));
+
+        verify(jwtDecoder, times(1)).decode("token-1");
+        assertNotSame(first, second);
+        assertEquals("request-2", second.getDetails());
+        assertEquals("alice", assertInstanceOf(JwtAuthenticationToken.class, second).getName());
+        assertTrue(second.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "security.jwt").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Cache entry must not outlive the token's exp")
+    void entry_shouldExpireWithToken() throws InterruptedException {
+        when(jwtDecoder.decode("token-1")).thenReturn(jwt("token-1", Instant.now().plusMillis(200)));
+
+        provider.authenticate(bearer("token-1", null));
+        Thread.sleep(300);
+        provider.authenticate(bearer("token-1", null));
+
+        verify(jwtDecoder, times(2)).decode("token-1");
+    }
+
+    @Test
+    @DisplayName("Invalid token is rejected every time and is not cached")
+    void invalidToken_shouldNotBeCached() {
+        when(jwtDecoder.decode("bad")).thenThrow(new BadJwtException("bad signature"));
+
+        assertThrows(InvalidBearerTokenException.class, () -> provider.authenticate(bearer("bad", null)));
+        assertThrows(InvalidBearerTokenException.class, () -> provider.authenticate(bearer("bad", null)));
+
+        verify(jwtDecoder, times(2)).decode("bad");
+    }
+
+    private static BearerTokenAuthenticationToken bearer(String token, Object details) {
+        BearerTokenAuthenticationToken bearer = new BearerTokenAuthenticationToken(token);
+        bearer.setDetails(details);
+        return bearer;
+    }
+
+    private static Jwt jwt(String token, Instant exp) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "HS256")
+                .subject("alice")
+                .claim("roles", List.of("USER"))
+                .issuedAt(exp.minusSeconds(3600))
+                .expiresAt(exp)
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CaffeineUserCacheTest {
+
+    private static final BCryptPasswordEncoder ENCODER = new BCryptPasswordEncoder(4);
+
+    @Mock
+    private UserRepository userRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private CaffeineUserCache userCache;
+    private ProviderManager authenticationManager;
+
+    @BeforeEach
+    void setUp() {
+        userCache = new CaffeineUserCache(new SimpleMeterRegistry(), 100, 60_000);
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(new UserService(userRepository));
+        provider.setPasswordEncoder(ENCODER);
+        provider.setUserCache(userCache);
+        authenticationManager = new ProviderManager(provider);
+    }
+
+    @Test
+    @DisplayName("Login carries the user id in the principal: one DB hit on a cold cache, none on a warm one")
+    void login_shouldHitDatabaseOnceAndCarryUserId() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user("alice", "secret")));
+
+        Authentication first = login("alice", "secret");
+        Authentication second = login("alice", "secret");
+
+        assertEquals(userId, assertInstanceOf(UserPrincipal.class, first.getPrincipal()).getId());
+        assertEquals(userId, assertInstanceOf(UserPrincipal.class, second.getPrincipal()).getId());
+        assertTrue(second.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    @DisplayName("Erasing credentials after login must not wipe the cached password hash")
+    void cachedUser_shouldSurviveCredentialErasure() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user("alice", "secret")));
+
+        Authentication first = login("alice", "secret");
+
+        assertNull(((UserPrincipal) first.getPrincipal()).getPassword());
+        assertNotNull(userCache.getUserFromCache("alice").getPassword());
+    }
+
+    @Test
+    @DisplayName("Wrong password against a cached user re-reads the user from the DB")
+    void wrongPassword_shouldRecheckAgainstDatabase() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user("alice", "secret")));
+        login("alice", "secret");
+
+        assertThrows(BadCredentialsException.class, () -> login("alice", "wrong"));
+
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    @DisplayName("Eviction by id also drops the entry cached under the old username")
+    void removeById_shouldDropRenamedUser() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user("alice", "secret")));
+        login("alice", "secret");
+
+        userCache.removeUserFromCache(userId, "alice-renamed");
+
+        assertNull(userCache.getUserFromCache("alice"));
+    }
+
+    private Authentication login(String username, String password) {
+        return authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
+    }
+
+    private User user(String username, String password) {
+        User user = new User(userId, username, List.of(Role.USER));
+        user.setHashPassword(ENCODER.encode(password));
+        return user;
+    }
+}
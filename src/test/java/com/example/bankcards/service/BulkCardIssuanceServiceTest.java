@@ -0,0 +1,212 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BulkIssuanceRequest;
+import com.example.bankcards.dto.IssuanceJobResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.IssuanceJobNotFoundException;
+import com.example.bankcards.exception.IssuanceJobNotResumableException;
+import com.example.bankcards.exception.IssuanceTooLargeException;
+import com.example.bankcards.exception.UnknownCardOwnerException;
+import com.example.bankcards.repository.CardBulkRepository;
+import com.example.bankcards.util.PanCryptoServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkCardIssuanceServiceTest {
+
+    @Mock
+    private CardBulkRepository cardBulkRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BulkCardIssuanceService service;
+
+    @BeforeEach
+    void setUp() {
+        PanCryptoServiceImpl panCryptoService = new PanCryptoServiceImpl("4NChuYrFKlRukuC57BOLpl6SaAk0gzs64+vAgdRALIE=", "");
+        service = new BulkCardIssuanceService(cardBulkRepository, panCryptoService,
+                new PanAllocator(panCryptoService, cardBulkRepository, new SimpleMeterRegistry(), "400000-400999", 16, 10, 5),
+                transactionManager,
+                Clock.fixed(Instant.parse("2026-10-18T10:00:00Z"), ZoneOffset.UTC),
+                2, 10, 1, 2, 60_000);
+    }
+
+    //все владельцы из запроса существуют, если тест не говорит иного
+    private void ownersExist() {
+        when(cardBulkRepository.findExistingOwnerIds(any())).thenAnswer(inv -> Set.copyOf(inv.<Collection<UUID>>getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should issue every requested card in chunks with one hash check and one batch per chunk")
+    void shouldIssueAllCardsInChunks() throws Exception {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        ownersExist();
+        when(cardBulkRepository.findExistingPanHashes(any())).thenReturn(Set.of());
+        when(cardBulkRepository.insertIgnoringDuplicates(anyList())).thenAnswer(inv -> ones(inv.<List<Card>>getArgument(0).size()));
+
+        IssuanceJobResponse job = service.submit(new BulkIssuanceRequest(List.of(
+                new BulkIssuanceRequest.Item(alice, 3), new BulkIssuanceRequest.Item(bob, 2))));
+        IssuanceJobResponse done = await(job.jobId());
+
+        assertEquals(IssuanceJobResponse.Status.COMPLETED, done.status());
+        assertEquals(5, done.issued());
+
+        ArgumentCaptor<List<Card>> batches = ArgumentCaptor.captor();
+        verify(cardBulkRepository, times(3)).insertIgnoringDuplicates(batches.capture());
+        List<Card> cards = batches.getAllValues().stream().flatMap(List::stream).toList();
+        assertEquals(List.of(alice, alice, alice, bob, bob), cards.stream().map(Card::getOwnerId).toList());
+        assertEquals(5, cards.stream().map(Card::getPanHash).distinct().count());
+        assertTrue(cards.stream().allMatch(card -> card.getExpiryYear() == 2031 && card.getPanLastFourNumber().length() == 4));
+        verify(cardBulkRepository, times(3)).findExistingPanHashes(any());
+    }
+
+    @Test
+    @DisplayName("Should regenerate cards whose hash is already taken in the DB or lost an insert race")
+    void shouldRegenerateTakenHashes() throws Exception {
+        UUID owner = UUID.randomUUID();
+        ownersExist();
+        when(cardBulkRepository.findExistingPanHashes(any()))
+                .thenAnswer(inv -> Set.of(inv.<Collection<String>>getArgument(0).iterator().next()))
+                .thenReturn(Set.of());
+        when(cardBulkRepository.insertIgnoringDuplicates(anyList()))
+                .thenReturn(new int[]{0})
+                .thenReturn(new int[]{1, 1});
+
+        IssuanceJobResponse done = await(service.submit(new BulkIssuanceRequest(
+                List.of(new BulkIssuanceRequest.Item(owner, 2)))).jobId());
+
+        assertEquals(IssuanceJobResponse.Status.COMPLETED, done.status());
+        assertEquals(2, done.issued());
+        ArgumentCaptor<List<Card>> batches = ArgumentCaptor.captor();
+        verify(cardBulkRepository, times(2)).insertIgnoringDuplicates(batches.capture());
+        assertEquals(List.of(1, 2), batches.getAllValues().stream().map(List::size).toList());
+    }
+
+    @Test
+    @DisplayName("Failed chunk should fail the job and keep the count of cards already issued")
+    void failedChunk_shouldFailJob() throws Exception {
+        ownersExist();
+        when(cardBulkRepository.findExistingPanHashes(any())).thenReturn(Set.of());
+        when(cardBulkRepository.insertIgnoringDuplicates(anyList()))
+                .thenReturn(new int[]{1, 1})
+                .thenThrow(new IllegalStateException("connection lost"));
+
+        IssuanceJobResponse done = await(service.submit(new BulkIssuanceRequest(
+                List.of(new BulkIssuanceRequest.Item(UUID.randomUUID(), 4)))).jobId());
+
+        assertEquals(IssuanceJobResponse.Status.FAILED, done.status());
+        assertEquals(2, done.issued());
+        assertEquals("connection lost", done.error());
+    }
+
+    @Test
+    @DisplayName("Failed job should resume with only the cards each owner has not received yet")
+    void failedJob_shouldResumeWithoutDuplicates() throws Exception {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        ownersExist();
+        when(cardBulkRepository.findExistingPanHashes(any())).thenReturn(Set.of());
+        when(cardBulkRepository.insertIgnoringDuplicates(anyList()))
+                .thenAnswer(inv -> ones(inv.<List<Card>>getArgument(0).size()))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenAnswer(inv -> ones(inv.<List<Card>>getArgument(0).size()));
+
+        // порции по 2: alice получает 2 карты, вторая порция (alice, bob) падает
+        UUID jobId = service.submit(new BulkIssuanceRequest(List.of(
+                new BulkIssuanceRequest.Item(alice, 3), new BulkIssuanceRequest.Item(bob, 2)))).jobId();
+        IssuanceJobResponse failed = await(jobId);
+        assertEquals(IssuanceJobResponse.Status.FAILED, failed.status());
+        assertEquals(2, failed.issued());
+
+        service.resume(jobId);
+        IssuanceJobResponse done = await(jobId);
+
+        assertEquals(IssuanceJobResponse.Status.COMPLETED, done.status());
+        assertEquals(5, done.issued());
+        ArgumentCaptor<List<Card>> batches = ArgumentCaptor.captor();
+        verify(cardBulkRepository, times(4)).insertIgnoringDuplicates(batches.capture());
+        List<List<Card>> all = batches.getAllValues();
+        List<UUID> issuedOwners = new ArrayList<>();
+        all.get(0).forEach(card -> issuedOwners.add(card.getOwnerId()));
+        all.subList(2, all.size()).forEach(batch -> batch.forEach(card -> issuedOwners.add(card.getOwnerId())));
+        assertEquals(3, issuedOwners.stream().filter(alice::equals).count());
+        assertEquals(2, issuedOwners.stream().filter(bob::equals).count());
+
+        assertThrows(IssuanceJobNotResumableException.class, () -> service.resume(jobId));
+    }
+
+    @Test
+    @DisplayName("Should reject the job with one owner lookup when any owner is unknown")
+    void unknownOwner_shouldRejectJob() {
+        UUID alice = UUID.randomUUID();
+        UUID typo = UUID.randomUUID();
+        when(cardBulkRepository.findExistingOwnerIds(any())).thenReturn(Set.of(alice));
+
+        UnknownCardOwnerException ex = assertThrows(UnknownCardOwnerException.class, () -> service.submit(
+                new BulkIssuanceRequest(List.of(new BulkIssuanceRequest.Item(alice, 2),
+                        new BulkIssuanceRequest.Item(typo, 1), new BulkIssuanceRequest.Item(alice, 1)))));
+
+        assertTrue(ex.getMessage().contains(typo.toString()));
+        verify(cardBulkRepository).findExistingOwnerIds(Set.of(alice, typo));
+        verifyNoMoreInteractions(cardBulkRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject jobs over the limit and unknown job ids")
+    void shouldRejectOversizedJobAndUnknownId() {
+        assertThrows(IssuanceTooLargeException.class, () -> service.submit(new BulkIssuanceRequest(
+                List.of(new BulkIssuanceRequest.Item(UUID.randomUUID(), 11)))));
+        assertThrows(IssuanceJobNotFoundException.class, () -> service.getJob(UUID.randomUUID()));
+
+        verifyNoInteractions(cardBulkRepository);
+    }
+
+    private IssuanceJobResponse await(UUID jobId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            IssuanceJobResponse job = service.getJob(jobId);
+            if (job.finishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("job " + jobId + " did not finish");
+    }
+
+    private static int[] ones(int size) {
+        int[] counts = new int[size];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardExpirySweeperTest {
+
+    @Mock
+    private CardRepository cardRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private CardViewCache cardViewCache;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CardExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new CardExpirySweeper(cardRepository, cardViewCache, transactionManager,
+                Clock.fixed(Instant.parse("2026-10-18T10:00:00Z"), ZoneOffset.UTC), meterRegistry, 100, 0);
+    }
+
+    @Test
+    @DisplayName("Should expire cards in chunks, one transaction per chunk, until a chunk comes back short")
+    void shouldSweepInChunks() {
+        when(cardRepository.expireBefore((short) 2026, (short) 10, 100)).thenReturn(100, 100, 37);
+
+        assertEquals(237, sweeper.sweep());
+
+        verify(cardRepository, times(3)).expireBefore((short) 2026, (short) 10, 100);
+        verify(transactionManager, times(3)).commit(any());
+        assertEquals(237, meterRegistry.counter("bankcards.card.expired").count());
+        verify(cardViewCache).evictAll();
+    }
+
+    @Test
+    @DisplayName("Should run a single cheap query when nothing is expired")
+    void shouldStopWhenNothingExpired() {
+        when(cardRepository.expireBefore((short) 2026, (short) 10, 100)).thenReturn(0);
+
+        assertEquals(0, sweeper.sweep());
+
+        verify(cardRepository, times(1)).expireBefore(anyShort(), anyShort(), anyInt());
+        verifyNoInteractions(cardViewCache);
+    }
+
+    @Test
+    @DisplayName("Scheduled trigger should hand the sweep to its own thread and not start a second one while it runs")
+    void scheduleSweep_shouldNotBlockTheSchedulerThread() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(cardRepository.expireBefore((short) 2026, (short) 10, 100)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return 0;
+        });
+
+        sweeper.scheduleSweep();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        // поток планировщика уже свободен, повторный вызов при идущем проходе ничего не запускает
+        sweeper.scheduleSweep();
+        release.countDown();
+
+        verify(cardRepository, timeout(5_000).times(1)).expireBefore(anyShort(), anyShort(), anyInt());
+        sweeper.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.repository.CardRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class CardExportServiceTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final CardRepository cardRepository = mock(CardRepository.class);
+    private final CardExportService service = new CardExportService(cardRepository, jsonMapper);
+
+    private final CardResponse first = card("1111", new BigDecimal("10.50"));
+    private final CardResponse second = card("2222", new BigDecimal("0.00"));
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    @Test
+    @DisplayName("NDJSON: one CardResponse per line, the DB stream closed")
+    void ndjson_shouldWriteOneLinePerCard() throws IOException {
+        when(cardRepository.streamViewsByStatus(StatusCard.ACTIVE)).thenReturn(cards());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = service.exportByStatus(StatusCard.ACTIVE, CardExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(2, exported);
+        assertEquals(3, lines.length);
+        assertEquals("", lines[2]);
+        JsonNode row = jsonMapper.readTree(lines[0]);
+        assertEquals(first.cardId().toString(), row.get("cardId").asString());
+        assertEquals("**** **** **** 1111", row.get("panMasked").asString());
+        assertTrue(lines[0].contains("\"balance\":10.50"));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    @DisplayName("CSV: header and one row per card, the output stream is left open for the caller")
+    void csv_shouldWriteHeaderAndRows() throws IOException {
+        when(cardRepository.streamViewsByStatus(StatusCard.ACTIVE)).thenReturn(cards());
+        ByteArrayOutputStream out = spy(new ByteArrayOutputStream());
+
+        service.exportByStatus(StatusCard.ACTIVE, CardExportFormat.CSV, out);
+
+        assertEquals("""
+                cardId,panMasked,expiryMonth,expiryYear,statusCard,balance
+                %s,**** **** **** 1111,12,2030,ACTIVE,10.50
+                %s,**** **** **** 2222,12,2030,ACTIVE,0.00
+                """.formatted(first.cardId(), second.cardId()), out.toString(StandardCharsets.UTF_8));
+        verify(out, never()).close();
+        assertTrue(closed.get());
+    }
+
+    private Stream<CardResponse> cards() {
+        return Stream.of(first, second).onClose(() -> closed.set(true));
+    }
+
+    private static CardResponse card(String last4, BigDecimal balance) {
+        return new CardResponse(UUID.randomUUID(), "**** **** **** " + last4, (short) 12, (short) 2030,
+                StatusCard.ACTIVE, balance);
+    }
+}
@@ -1,24 +1,27 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadYourWrites;
+import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
 import com.example.bankcards.exception.CardAlreadyExistsException;
 import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardBulkRepository;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.util.PanCryptoServiceImpl;
-import com.example.bankcards.util.PanGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.math.BigDecimal;
 import java.time.Clock;
@@ -30,11 +33,13 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,7 +52,10 @@ class CardServiceTest {
     private CardRepository cardRepository;
 
     @Mock
-    private PanCryptoServiceImpl panCryptoService;
+    private CardBulkRepository cardBulkRepository;
+
+    @Mock
+    private PanAllocator panAllocator;
 
     private CardService cardService;
 
@@ -74,137 +82,178 @@ class CardServiceTest {
         );
 
         // ВАЖНО: создаём сервис вручную, чтобы не было сюрпризов от @InjectMocks
-        cardService = new CardService(cardRepository, panCryptoService, clock);
+        cardService = new CardService(cardRepository, cardBulkRepository, panAllocator,
+                new CardViewCache(new SimpleMeterRegistry(), 100, 60_000), new ReadYourWrites("", 0, 0), new SimpleMeterRegistry(), clock);
     }
 
     @Test
-    @DisplayName("Should create card successfully")
+    @DisplayName("Should create card from a prepared PAN without a separate uniqueness query")
     void shouldCreateCardSuccessfully() {
         // given
-        String pan = "4111111111111234";
-        String panHash = "hash_pan";
         byte[] encrypted = new byte[]{1, 2, 3};
 
         stubClock(); // fixedClock = 2026-01-17 => expiryMonth=1, expiryYear=2031
 
-        try (MockedStatic<PanGenerator> panGeneratorMock = mockStatic(PanGenerator.class)) {
-            panGeneratorMock.when(PanGenerator::generate).thenReturn(pan);
+        when(panAllocator.take()).thenReturn(new PanAllocator.AllocatedPan("hash_pan", encrypted, (short) 2, "1234"));
+        when(cardBulkRepository.insertIgnoringDuplicates(anyList())).thenReturn(new int[]{1});
 
-            when(panCryptoService.hash(pan)).thenReturn(panHash);
-            when(cardRepository.existsByPanHash(panHash)).thenReturn(false);
-            when(panCryptoService.encrypt(pan)).thenReturn(encrypted);
-            when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
+        // when
+        Card created = cardService.create(ownerId);
 
-            // when
-            Card created = cardService.create(ownerId);
+        // then
+        ArgumentCaptor<List<Card>> captor = ArgumentCaptor.captor();
+        verify(cardBulkRepository, times(1)).insertIgnoringDuplicates(captor.capture());
 
-            // then
-            ArgumentCaptor<Card> captor = ArgumentCaptor.forClass(Card.class);
-            verify(cardRepository, times(1)).save(captor.capture());
+        Card saved = captor.getValue().get(0);
 
-            Card saved = captor.getValue();
+        assertSame(saved, created);
+        assertNotNull(saved.getId());
 
-            assertNotNull(created);
-            assertNull(saved.getId());
+        assertEquals(ownerId, saved.getOwnerId());
+        assertArrayEquals(encrypted, saved.getPanEncryptedCard());
+        assertEquals("hash_pan", saved.getPanHash());
+        assertEquals("1234", saved.getPanLastFourNumber());
+        assertEquals((short) 2, saved.getPanKeyVersion());
 
-            assertEquals(ownerId, saved.getOwnerId());
-            assertArrayEquals(encrypted, saved.getPanEncryptedCard());
-            assertEquals(panHash, saved.getPanHash());
-            assertEquals("1234", saved.getPanLastFourNumber());
+        assertEquals((short) 1, saved.getExpiryMonth());
+        assertEquals((short) 2031, saved.getExpiryYear());
 
-            assertEquals((short) 1, saved.getExpiryMonth());
-            assertEquals((short) 2031, saved.getExpiryYear());
+        assertEquals(StatusCard.ACTIVE, saved.getStatus());
+        assertEquals(0, saved.getBalance().compareTo(BigDecimal.ZERO));
 
-            assertEquals(StatusCard.ACTIVE, saved.getStatus());
-            assertEquals(0, saved.getBalance().compareTo(BigDecimal.ZERO));
+        verify(panAllocator, times(1)).take();
+        verifyNoInteractions(cardRepository);
+    }
 
-            panGeneratorMock.verify(PanGenerator::generate, times(1));
-            verify(panCryptoService, times(1)).hash(pan);
-            verify(cardRepository, times(1)).existsByPanHash(panHash);
-            verify(panCryptoService, times(1)).encrypt(pan);
-        }
+    @Test
+    @DisplayName("Should take the next PAN when the insert hits a pan_hash conflict")
+    void shouldRetryWithNextPanOnConflict() {
+        stubClock();
+
+        when(panAllocator.take())
+                .thenReturn(new PanAllocator.AllocatedPan("taken", new byte[]{1}, (short) 1, "1111"))
+                .thenReturn(new PanAllocator.AllocatedPan("free", new byte[]{2}, (short) 1, "2222"));
+        when(cardBulkRepository.insertIgnoringDuplicates(anyList()))
+                .thenReturn(new int[]{0})
+                .thenReturn(new int[]{1});
+
+        Card created = cardService.create(ownerId);
+
+        assertEquals("free", created.getPanHash());
+        assertEquals("2222", created.getPanLastFourNumber());
+        verify(panAllocator, times(2)).take();
     }
 
     @Test
-    @DisplayName("Should throw exception when card already exists")
+    @DisplayName("Should throw exception when every attempt hits a conflict")
     void shouldThrowExceptionWhenCardAlreadyExists() {
+        stubClock();
 
-        String pan = "4111111111111234";
-        String panHash = "hash_pan";
-
-        try (MockedStatic<PanGenerator> panGeneratorMock = mockStatic(PanGenerator.class)) {
-            panGeneratorMock.when(PanGenerator::generate).thenReturn(pan);
+        when(panAllocator.take()).thenReturn(new PanAllocator.AllocatedPan("taken", new byte[]{1}, (short) 1, "1111"));
+        when(cardBulkRepository.insertIgnoringDuplicates(anyList())).thenReturn(new int[]{0});
 
-            when(panCryptoService.hash(pan)).thenReturn(panHash);
-            when(cardRepository.existsByPanHash(panHash)).thenReturn(true);
+        assertThrows(CardAlreadyExistsException.class, () -> cardService.create(ownerId));
 
-            assertThrows(CardAlreadyExistsException.class, () -> cardService.create(ownerId));
-
-            panGeneratorMock.verify(PanGenerator::generate, times(1));
-            verify(panCryptoService, times(1)).hash(pan);
-            verify(cardRepository, times(1)).existsByPanHash(panHash);
-            verify(panCryptoService, never()).encrypt(anyString());
-            verify(cardRepository, never()).save(any(Card.class));
-        }
+        verify(panAllocator, times(CardService.MAX_CREATE_ATTEMPTS)).take();
+        verify(cardBulkRepository, times(CardService.MAX_CREATE_ATTEMPTS)).insertIgnoringDuplicates(anyList());
     }
 
     @Test
     @DisplayName("Should return user's card by id")
     void shouldReturnUsersCardById() {
-        when(cardRepository.findByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.of(card));
+        when(cardRepository.findViewByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.of(CardResponse.from(card)));
+
+        CardResponse found = cardService.getMyById(ownerId, cardId);
+
+        assertEquals(cardId, found.cardId());
+        assertEquals("**** **** **** 1234", found.panMasked());
+
+        verify(cardRepository, times(1)).findViewByIdAndOwnerId(cardId, ownerId);
+        verifyNoInteractions(panAllocator);
+    }
 
-        Card found = cardService.getMyById(ownerId, cardId);
+    @Test
+    @DisplayName("Repeated reads of the same card are served from the cache, other owners are not")
+    void shouldServeRepeatedReadsFromCache() {
+        UUID otherOwner = UUID.randomUUID();
+        when(cardRepository.findViewByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.of(CardResponse.from(card)));
+        when(cardRepository.findViewByIdAndOwnerId(cardId, otherOwner)).thenReturn(Optional.empty());
+
+        cardService.getMyById(ownerId, cardId);
+        cardService.getMyById(ownerId, cardId);
+        assertThrows(CardNotFoundException.class, () -> cardService.getMyById(otherOwner, cardId));
+        assertThrows(CardNotFoundException.class, () -> cardService.getMyById(otherOwner, cardId));
+
+        verify(cardRepository, times(1)).findViewByIdAndOwnerId(cardId, ownerId);
+        // отсутствие карты не кэшируется
+        verify(cardRepository, times(2)).findViewByIdAndOwnerId(cardId, otherOwner);
+    }
+
+    @Test
+    @DisplayName("Blocking, admin status change and delete drop the cached view")
+    void writesShouldEvictCachedView() {
+        when(cardRepository.findViewByIdAndOwnerId(cardId, ownerId))
+                .thenAnswer(inv -> Optional.of(CardResponse.from(card)));
+        when(cardRepository.findByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.of(card));
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+        when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        assertEquals(cardId, found.getId());
-        assertEquals(ownerId, found.getOwnerId());
+        assertEquals(StatusCard.ACTIVE, cardService.getMyById(ownerId, cardId).statusCard());
+        cardService.blockMyCard(ownerId, cardId);
+        assertEquals(StatusCard.BLOCKED, cardService.getMyById(ownerId, cardId).statusCard());
+        cardService.adminUpdateStatus(cardId, StatusCard.ACTIVE);
+        assertEquals(StatusCard.ACTIVE, cardService.getMyById(ownerId, cardId).statusCard());
+        cardService.adminDelete(cardId);
+        cardService.getMyById(ownerId, cardId);
 
+        // четыре чтения мимо кэша, сущность загружается только в blockMyCard
+        verify(cardRepository, times(4)).findViewByIdAndOwnerId(cardId, ownerId);
         verify(cardRepository, times(1)).findByIdAndOwnerId(cardId, ownerId);
-        verifyNoInteractions(panCryptoService);
     }
 
     @Test
     @DisplayName("Should throw exception when user's card is not found by id")
     void shouldThrowExceptionWhenUsersCardIsNotFoundById() {
-        when(cardRepository.findByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.empty());
+        when(cardRepository.findViewByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.empty());
 
         assertThrows(CardNotFoundException.class, () -> cardService.getMyById(ownerId, cardId));
 
-        verify(cardRepository, times(1)).findByIdAndOwnerId(cardId, ownerId);
-        verifyNoInteractions(panCryptoService);
+        verify(cardRepository, times(1)).findViewByIdAndOwnerId(cardId, ownerId);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
     @DisplayName("Should return user's cards with pagination")
     void shouldReturnUsersCardsWithPagination() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> page = new PageImpl<Card>(List.of(card), pageable, 1);
+        Page<CardResponse> page = new PageImpl<>(List.of(CardResponse.from(card)), pageable, 1);
 
-        when(cardRepository.findAllByOwnerId(ownerId, pageable)).thenReturn(page);
+        when(cardRepository.findViewsByOwnerId(ownerId, pageable)).thenReturn(page);
 
-        Page<Card> result = cardService.getMyCards(ownerId, pageable);
+        Page<CardResponse> result = cardService.getMyCards(ownerId, pageable);
 
         assertEquals(1, result.getTotalElements());
-        assertEquals(cardId, result.getContent().get(0).getId());
+        assertEquals(cardId, result.getContent().get(0).cardId());
 
-        verify(cardRepository, times(1)).findAllByOwnerId(ownerId, pageable);
-        verifyNoInteractions(panCryptoService);
+        verify(cardRepository, times(1)).findViewsByOwnerId(ownerId, pageable);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
     @DisplayName("Should return user's cards filtered by status with pagination")
     void shouldReturnUsersCardsByStatusWithPagination() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> page = new PageImpl<Card>(List.of(card), pageable, 1);
+        Page<CardResponse> page = new PageImpl<>(List.of(CardResponse.from(card)), pageable, 1);
 
-        when(cardRepository.findAllByOwnerIdAndStatus(ownerId, StatusCard.ACTIVE, pageable)).thenReturn(page);
+        when(cardRepository.findViewsByOwnerIdAndStatus(ownerId, StatusCard.ACTIVE, pageable)).thenReturn(page);
 
-        Page<Card> result = cardService.getMyCardsByStatus(ownerId, StatusCard.ACTIVE, pageable);
+        Page<CardResponse> result = cardService.getMyCardsByStatus(ownerId, StatusCard.ACTIVE, pageable);
 
         assertEquals(1, result.getTotalElements());
-        assertEquals(StatusCard.ACTIVE, result.getContent().get(0).getStatus());
+        assertEquals(StatusCard.ACTIVE, result.getContent().get(0).statusCard());
 
-        verify(cardRepository, times(1)).findAllByOwnerIdAndStatus(ownerId, StatusCard.ACTIVE, pageable);
-        verifyNoInteractions(panCryptoService);
+        verify(cardRepository, times(1)).findViewsByOwnerIdAndStatus(ownerId, StatusCard.ACTIVE, pageable);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
@@ -219,7 +268,7 @@ class CardServiceTest {
 
         verify(cardRepository, times(1)).findByIdAndOwnerId(cardId, ownerId);
         verify(cardRepository, times(1)).save(card);
-        verifyNoInteractions(panCryptoService);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
@@ -231,7 +280,7 @@ class CardServiceTest {
 
         verify(cardRepository, times(1)).findByIdAndOwnerId(cardId, ownerId);
         verify(cardRepository, never()).save(any(Card.class));
-        verifyNoInteractions(panCryptoService);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
@@ -246,7 +295,7 @@ class CardServiceTest {
 
         verify(cardRepository, times(1)).findById(cardId);
         verify(cardRepository, times(1)).save(card);
-        verifyNoInteractions(panCryptoService);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
@@ -258,49 +307,97 @@ class CardServiceTest {
 
         verify(cardRepository, times(1)).findById(cardId);
         verify(cardRepository, never()).save(any(Card.class));
-        verifyNoInteractions(panCryptoService);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
     @DisplayName("Should delete card by admin when card exists")
     void shouldDeleteCardByAdminWhenCardExists() {
-        when(cardRepository.existsById(cardId)).thenReturn(true);
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
 
         cardService.adminDelete(cardId);
 
-        verify(cardRepository, times(1)).existsById(cardId);
-        verify(cardRepository, times(1)).deleteById(cardId);
-        verifyNoInteractions(panCryptoService);
+        verify(cardRepository, times(1)).findById(cardId);
+        verify(cardRepository, times(1)).delete(card);
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
     @DisplayName("Should throw exception when deleting non-existent card by admin")
     void shouldThrowExceptionWhenDeletingNonExistentCardByAdmin() {
-        when(cardRepository.existsById(cardId)).thenReturn(false);
+        when(cardRepository.findById(cardId)).thenReturn(Optional.empty());
 
         assertThrows(CardNotFoundException.class, () -> cardService.adminDelete(cardId));
 
-        verify(cardRepository, times(1)).existsById(cardId);
-        verify(cardRepository, never()).deleteById(any(UUID.class));
-        verifyNoInteractions(panCryptoService);
+        verify(cardRepository, times(1)).findById(cardId);
+        verify(cardRepository, never()).delete(any(Card.class));
+        verifyNoInteractions(panAllocator);
     }
 
     @Test
     @DisplayName("Should return all cards filtered by status for admin with pagination")
     void shouldReturnAllCardsByStatusForAdminWithPagination() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> page = new PageImpl<Card>(List.of(card), pageable, 1);
+        Page<CardResponse> page = new PageImpl<>(List.of(CardResponse.from(card)), pageable, 1);
 
-        when(cardRepository.findAllByStatus(StatusCard.ACTIVE, pageable)).thenReturn(page);
+        when(cardRepository.findViewsByStatus(StatusCard.ACTIVE, pageable)).thenReturn(page);
 
-        Page<Card> result = cardService.adminGetAllByStatus(StatusCard.ACTIVE, pageable);
+        Page<CardResponse> result = cardService.adminGetAllByStatus(StatusCard.ACTIVE, pageable);
 
         assertEquals(1, result.getTotalElements());
-        assertEquals(cardId, result.getContent().get(0).getId());
+        assertEquals(cardId, result.getContent().get(0).cardId());
 
-        verify(cardRepository, times(1)).findAllByStatus(StatusCard.ACTIVE, pageable);
-        verifyNoInteractions(panCryptoService);
+        verify(cardRepository, times(1)).findViewsByStatus(StatusCard.ACTIVE, pageable);
+        verifyNoInteractions(panAllocator);
     }
+
+    @Test
+    @DisplayName("Should return the first slice of user's cards by keyset and detect the next one")
+    void getMyCardsAfter_shouldReturnFirstSliceAndDetectNext() {
+        CardResponse first = CardResponse.from(card);
+        CardResponse second = new CardResponse(UUID.randomUUID(), "**** **** **** 5678",
+                (short) 12, (short) 2030, StatusCard.ACTIVE, BigDecimal.ZERO);
+        CardResponse third = new CardResponse(UUID.randomUUID(), "**** **** **** 9012",
+                (short) 12, (short) 2030, StatusCard.ACTIVE, BigDecimal.ZERO);
+
+        when(cardRepository.findViewsByOwnerIdAfter(ownerId, new UUID(0, 0), Limit.of(3)))
+                .thenReturn(List.of(first, second, third));
+
+        Slice<CardResponse> result = cardService.getMyCardsAfter(ownerId, null, null, 2);
+
+        assertEquals(List.of(first, second), result.getContent());
+        assertTrue(result.hasNext());
+        verify(cardRepository, never()).count();
+        verifyNoMoreInteractions(cardRepository);
+    }
+
+    @Test
+    @DisplayName("Should continue after the cursor id with status filter and report the last slice")
+    void getMyCardsAfter_shouldContinueAfterCursorWithStatus() {
+        UUID afterId = UUID.randomUUID();
+        CardResponse view = CardResponse.from(card);
+        when(cardRepository.findViewsByOwnerIdAndStatusAfter(ownerId, StatusCard.BLOCKED, afterId, Limit.of(21)))
+                .thenReturn(List.of(view));
+
+        Slice<CardResponse> result = cardService.getMyCardsAfter(ownerId, StatusCard.BLOCKED, afterId, 20);
+
+        assertEquals(List.of(view), result.getContent());
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    @DisplayName("Admin: should cap the slice size for keyset listing by status")
+    void adminGetAllByStatusAfter_shouldCapSliceSize() {
+        UUID afterId = UUID.randomUUID();
+        when(cardRepository.findViewsByStatusAfter(StatusCard.ACTIVE, afterId, Limit.of(CardService.MAX_SLICE_SIZE + 1)))
+                .thenReturn(List.of(CardResponse.from(card)));
+
+        Slice<CardResponse> result = cardService.adminGetAllByStatusAfter(StatusCard.ACTIVE, afterId, 10_000);
+
+        assertEquals(CardService.MAX_SLICE_SIZE, result.getSize());
+        assertFalse(result.hasNext());
+    }
+
     private void stubClock() {
         when(clock.getZone()).thenReturn(ZoneOffset.UTC);
         when(clock.instant()).thenReturn(Instant.parse("2026-01-17T10:00:00Z"));
@@ -0,0 +1,241 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.TransferLockTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardStripedSequencerTest {
+
+    private static final int CARDS = 200;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 40;
+    private static final int POOL_SIZE = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should round the number of stripes up to a power of two")
+    void shouldRoundStripeCountUpToPowerOfTwo() {
+        assertEquals(1024, new CardStripedSequencer(true, 1000, 100, 16, meterRegistry).stripeCount());
+        assertEquals(64, new CardStripedSequencer(true, 64, 100, 16, meterRegistry).stripeCount());
+        assertEquals(1, new CardStripedSequencer(true, 1, 100, 16, meterRegistry).stripeCount());
+    }
+
+    @Test
+    @DisplayName("Should fail with TransferLockTimeoutException when the card stays busy")
+    void shouldFailWhenCardStaysBusy() throws Exception {
+        CardStripedSequencer sequencer = new CardStripedSequencer(true, 16, 50, 16, meterRegistry);
+        UUID cardId = UUID.randomUUID();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> sequencer.execute(List.of(cardId), () -> {
+                entered.countDown();
+                await(release);
+                return null;
+            }));
+            entered.await();
+
+            assertThrows(TransferLockTimeoutException.class,
+                    () -> sequencer.execute(List.of(cardId), () -> null));
+            assertEquals(0, sequencer.waitingCount());
+
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Large batch should bypass the stripes and not block single transfers on unrelated cards")
+    void largeBatch_shouldNotBlockUnrelatedSingleTransfers() throws Exception {
+        CardStripedSequencer sequencer = new CardStripedSequencer(true, 1024, 50, 16, meterRegistry);
+        List<UUID> batchCards = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batchCards.add(UUID.randomUUID());
+        }
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> batch = executor.submit(() -> sequencer.execute(batchCards, () -> {
+                entered.countDown();
+                await(release);
+                return null;
+            }));
+            entered.await();
+
+            // 2000 карт пакета покрыли бы большую часть из 1024 stripe, одиночные переводы упали бы по таймауту
+            for (int i = 0; i < 200; i++) {
+                List<UUID> single = List.of(UUID.randomUUID(), UUID.randomUUID());
+                assertEquals("done", sequencer.execute(single, () -> "done"));
+            }
+            assertEquals(0, sequencer.waitingCount());
+
+            release.countDown();
+            batch.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Zipfian load: transfers of hot cards queue in memory instead of holding pool connections")
+    void zipfianLoad_shouldKeepHotCardWaitersOffTheConnectionPool() throws Exception {
+        LoadResult withoutSequencer = runZipfianLoad(new CardStripedSequencer(false, 1024, 10_000, 16, meterRegistry));
+        LoadResult withSequencer = runZipfianLoad(new CardStripedSequencer(true, 1024, 10_000, 16, meterRegistry));
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, withoutSequencer.completed());
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, withSequencer.completed());
+
+        // без sequencer соединения из пула простаивают в ожидании row lock горячей карты
+        assertTrue(withoutSequencer.peakConnectionsWaitingOnRowLock() > 0);
+        assertTrue(withoutSequencer.connectionNanosWaitingOnRowLock() > 0);
+
+        // с sequencer до row lock доходит не больше одного перевода по карте, ожидающих соединений нет
+        assertEquals(0, withSequencer.peakConnectionsWaitingOnRowLock());
+        assertEquals(0, withSequencer.connectionNanosWaitingOnRowLock());
+        // пропускная способность по времени на общем CI шумит, она сравнивается в SequencerContentionBenchmark
+    }
+
+    // имитирует перевод: соединение из пула -> row lock обеих карт по порядку -> работа в БД
+    private LoadResult runZipfianLoad(CardStripedSequencer sequencer) throws Exception {
+        List<UUID> cards = new ArrayList<>(CARDS);
+        List<ReentrantLock> rowLocks = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            cards.add(UUID.randomUUID());
+            rowLocks.add(new ReentrantLock());
+        }
+        double[] zipf = zipfCdf(CARDS, 1.1);
+
+        Semaphore pool = new Semaphore(POOL_SIZE);
+        AtomicInteger waitingOnRowLock = new AtomicInteger();
+        AtomicInteger peakWaitingOnRowLock = new AtomicInteger();
+        AtomicLong nanosWaitingOnRowLock = new AtomicLong();
+        AtomicInteger completed = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                await(start);
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = pick(zipf, random);
+                    int to = pick(zipf, random);
+                    while (to == from) {
+                        to = pick(zipf, random);
+                    }
+                    int first = Math.min(from, to);
+                    int second = Math.max(from, to);
+
+                    sequencer.execute(List.of(cards.get(from), cards.get(to)), () -> {
+                        pool.acquireUninterruptibly();
+                        try {
+                            lockRow(rowLocks.get(first), waitingOnRowLock, peakWaitingOnRowLock, nanosWaitingOnRowLock);
+                            lockRow(rowLocks.get(second), waitingOnRowLock, peakWaitingOnRowLock, nanosWaitingOnRowLock);
+                            try {
+                                sleep(1);
+                            } finally {
+                                rowLocks.get(second).unlock();
+                                rowLocks.get(first).unlock();
+                            }
+                        } finally {
+                            pool.release();
+                        }
+                        completed.incrementAndGet();
+                        return null;
+                    });
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new LoadResult(completed.get(), peakWaitingOnRowLock.get(), nanosWaitingOnRowLock.get());
+    }
+
+    private static void lockRow(ReentrantLock rowLock, AtomicInteger waiting, AtomicInteger peak, AtomicLong waitedNanos) {
+        if (rowLock.tryLock()) {
+            return;
+        }
+        peak.accumulateAndGet(waiting.incrementAndGet(), Math::max);
+        long begin = System.nanoTime();
+        rowLock.lock();
+        waitedNanos.addAndGet(System.nanoTime() - begin);
+        waiting.decrementAndGet();
+    }
+
+    private static double[] zipfCdf(int n, double s) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1.0 / Math.pow(k, s);
+            cdf[k - 1] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int pick(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record LoadResult(int completed, int peakConnectionsWaitingOnRowLock,
+                              long connectionNanosWaitingOnRowLock) {}
+}
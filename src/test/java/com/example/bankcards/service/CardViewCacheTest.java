@@ -0,0 +1,151 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.entity.enums.StatusCard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardViewCacheTest {
+
+    private final UUID ownerId = UUID.randomUUID();
+    private final UUID cardId = UUID.randomUUID();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CardViewCache cache = new CardViewCache(meterRegistry, 1_000, 60_000);
+
+    @Test
+    @DisplayName("Reads without writes are served from the cache and show up in the hit metrics")
+    void repeatedReads_shouldHitCache() {
+        AtomicLong loads = new AtomicLong();
+
+        for (int i = 0; i < 100; i++) {
+            cache.get(ownerId, cardId, () -> {
+                loads.incrementAndGet();
+                return view(1);
+            });
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(99, meterRegistry.get("cache.gets").tag("cache", "cards.view").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "cards.view").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Size-based eviction keeps the cache bounded")
+    void cache_shouldStayBounded() {
+        CardViewCache small = new CardViewCache(new SimpleMeterRegistry(), 10, 60_000);
+
+        for (int i = 0; i < 100; i++) {
+            small.get(ownerId, UUID.randomUUID(), () -> view(1));
+        }
+
+        assertTrue(small.size() <= 10);
+    }
+
+    @Test
+    @DisplayName("Under concurrent reads a committed write is visible to every read that starts after the commit")
+    void concurrentReads_shouldNotResurrectValuesFromBeforeCommit() throws Exception {
+        AtomicLong committed = new AtomicLong(0);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                futures.add(readers.submit(() -> {
+                    while (writing.get()) {
+                        cache.get(ownerId, cardId, () -> {
+                            long version = committed.get();
+                            // медленное чтение из БД расширяет окно гонки с записью
+                            LockSupport.parkNanos(50_000);
+                            return view(version);
+                        });
+                    }
+                }));
+            }
+
+            for (long version = 1; version <= 500; version++) {
+                long next = version;
+                inTransaction(() -> {
+                    cache.evict(ownerId, cardId);
+                    LockSupport.parkNanos(20_000);
+                    committed.set(next);
+                });
+                long seen = cache.get(ownerId, cardId, () -> view(committed.get())).balance().longValue();
+                assertTrue(seen >= next, "read after commit of version " + next + " returned version " + seen);
+            }
+
+            writing.set(false);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A slow load on a virtual thread does not pin its carrier, and concurrent readers share that load")
+    void slowLoadOnVirtualThreads_shouldNotPinCarrier() {
+        AtomicLong loads = new AtomicLong();
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withoutThreshold();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+
+            try (ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int r = 0; r < 8; r++) {
+                    readers.submit(() -> cache.get(ownerId, cardId, () -> {
+                        loads.incrementAndGet();
+                        // запрос к БД
+                        LockSupport.parkNanos(20_000_000);
+                        return view(1);
+                    }));
+                }
+            }
+            recording.stop();
+        }
+
+        assertEquals(1, loads.get());
+        assertTrue(pinned.isEmpty(), "carrier pinned: " + pinned);
+    }
+
+    //то же, что делает транзакция Spring: синхронизации вызываются после commit
+    private static void inTransaction(Runnable body) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            body.run();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private CardResponse view(long version) {
+        return new CardResponse(cardId, "**** **** **** 1234", (short) 12, (short) 2030, StatusCard.ACTIVE,
+                BigDecimal.valueOf(version));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.TransferIdempotency;
+import com.example.bankcards.exception.IdempotencyKeyReusedException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidIdempotencyKeyException;
+import com.example.bankcards.repository.TransferIdempotencyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotentTransferServiceTest {
+
+    @Mock
+    private TransferService transferService;
+    @Mock
+    private TransferIdempotencyRepository idempotencyRepository;
+
+    private final UUID ownerId = UUID.randomUUID();
+    private final TransferRequest req = new TransferRequest(UUID.randomUUID(), UUID.randomUUID(), new BigDecimal("100.00"));
+
+    private IdempotentTransferService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotentTransferService(transferService, idempotencyRepository,
+                Clock.fixed(Instant.parse("2026-10-18T10:00:00Z"), ZoneOffset.UTC),
+                new SimpleMeterRegistry(), 100, 60_000, 5_000, 86_400_000);
+    }
+
+    @Test
+    @DisplayName("Should answer a retry from the cache without a second transfer or DB lookup")
+    void shouldReplayRetryFromCache() {
+        UUID transferId = UUID.randomUUID();
+        when(idempotencyRepository.findByOwnerIdAndIdempotencyKey(ownerId, "key-1")).thenReturn(Optional.empty());
+        when(transferService.transfer(eq(ownerId), eq(req), any())).thenReturn(transferId);
+
+        assertEquals(transferId, service.transfer(ownerId, "key-1", req));
+        // та же сумма в другой записи - тот же перевод
+        assertEquals(transferId, service.transfer(ownerId, "key-1",
+                new TransferRequest(req.fromCard(), req.toCard(), new BigDecimal("100"))));
+
+        verify(transferService, times(1)).transfer(eq(ownerId), eq(req), any());
+        verify(idempotencyRepository, times(1)).findByOwnerIdAndIdempotencyKey(ownerId, "key-1");
+    }
+
+    @Test
+    @DisplayName("Should claim the key inside the transfer transaction")
+    @SuppressWarnings("unchecked")
+    void shouldClaimKeyInsideTransfer() {
+        UUID transferId = UUID.randomUUID();
+        when(idempotencyRepository.findByOwnerIdAndIdempotencyKey(ownerId, "key-1")).thenReturn(Optional.empty());
+        when(idempotencyRepository.claim(eq(transferId), eq(ownerId), eq("key-1"), any(), any())).thenReturn(1);
+        when(transferService.transfer(eq(ownerId), eq(req), any())).thenAnswer(invocation -> {
+            Predicate<UUID> claim = invocation.getArgument(2);
+            return claim.test(transferId) ? transferId : null;
+        });
+
+        assertEquals(transferId, service.transfer(ownerId, "key-1", req));
+
+        verify(idempotencyRepository).claim(transferId, ownerId, "key-1",
+                IdempotentTransferService.requestHash(req), Instant.parse("2026-10-18T10:00:00Z"));
+    }
+
+    @Test
+    @DisplayName("Should return the stored outcome when the key was used before restart")
+    void shouldReturnStoredOutcome() {
+        TransferIdempotency stored = mock(TransferIdempotency.class);
+        UUID transferId = UUID.randomUUID();
+        when(stored.getTransferId()).thenReturn(transferId);
+        when(stored.getRequestHash()).thenReturn(IdempotentTransferService.requestHash(req));
+        when(idempotencyRepository.findByOwnerIdAndIdempotencyKey(ownerId, "key-1")).thenReturn(Optional.of(stored));
+
+        assertEquals(transferId, service.transfer(ownerId, "key-1", req));
+
+        verifyNoInteractions(transferService);
+    }
+
+    @Test
+    @DisplayName("Should reject a key reused for a different transfer")
+    void shouldRejectKeyReusedForDifferentTransfer() {
+        when(idempotencyRepository.findByOwnerIdAndIdempotencyKey(ownerId, "key-1")).thenReturn(Optional.empty());
+        when(transferService.transfer(eq(ownerId), eq(req), any())).thenReturn(UUID.randomUUID());
+        service.transfer(ownerId, "key-1", req);
+
+        TransferRequest other = new TransferRequest(req.fromCard(), req.toCard(), new BigDecimal("5"));
+        assertThrows(IdempotencyKeyReusedException.class, () -> service.transfer(ownerId, "key-1", other));
+
+        verify(transferService, times(1)).transfer(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should not remember failed transfers: a later retry runs the transfer again")
+    void shouldRetryAfterFailedTransfer() {
+        UUID transferId = UUID.randomUUID();
+        when(idempotencyRepository.findByOwnerIdAndIdempotencyKey(ownerId, "key-1")).thenReturn(Optional.empty());
+        when(transferService.transfer(eq(ownerId), eq(req), any()))
+                .thenThrow(new InsufficientFundsException("1234"))
+                .thenReturn(transferId);
+
+        assertThrows(InsufficientFundsException.class, () -> service.transfer(ownerId, "key-1", req));
+        assertEquals(transferId, service.transfer(ownerId, "key-1", req));
+    }
+
+    @Test
+    @DisplayName("Should reject blank and too long keys")
+    void shouldRejectInvalidKeys() {
+        assertThrows(InvalidIdempotencyKeyException.class, () -> service.transfer(ownerId, " ", req));
+        assertThrows(InvalidIdempotencyKeyException.class, () -> service.transfer(ownerId, "k".repeat(256), req));
+
+        verifyNoInteractions(transferService, idempotencyRepository);
+    }
+
+    @Test
+    @DisplayName("Concurrent duplicate should wait for the first request instead of running a second transfer")
+    void concurrentDuplicateShouldWaitForFirstResult() throws Exception {
+        UUID transferId = UUID.randomUUID();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(idempotencyRepository.findByOwnerIdAndIdempotencyKey(ownerId, "key-1")).thenReturn(Optional.empty());
+        when(transferService.transfer(eq(ownerId), eq(req), any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return transferId;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<UUID> first = executor.submit(() -> service.transfer(ownerId, "key-1", req));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            Future<UUID> duplicate = executor.submit(() -> service.transfer(ownerId, "key-1", req));
+
+            release.countDown();
+
+            assertEquals(transferId, first.get(5, TimeUnit.SECONDS));
+            assertEquals(transferId, duplicate.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(transferService, times(1)).transfer(any(), any(), any());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardBulkRepository;
+import com.example.bankcards.util.PanCryptoServiceImpl;
+import com.example.bankcards.util.PanGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PanAllocatorTest {
+
+    private final PanCryptoServiceImpl panCryptoService =
+            new PanCryptoServiceImpl("4NChuYrFKlRukuC57BOLpl6SaAk0gzs64+vAgdRALIE=", "");
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private CardBulkRepository cardBulkRepository;
+
+    private PanAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new PanAllocator(panCryptoService, cardBulkRepository, meterRegistry,
+                "400000-400009, 55000000", 16, 50, 20);
+    }
+
+    @Test
+    @DisplayName("Generated PANs are Luhn-valid and start with a configured BIN")
+    void newPan_shouldBeLuhnValidWithinBinRanges() {
+        for (int i = 0; i < 1_000; i++) {
+            char[] pan = allocator.newPan();
+            String value = new String(pan);
+
+            assertEquals(16, pan.length);
+            assertTrue(PanGenerator.isLuhnValid(pan), value);
+            assertTrue(value.matches("40000\\d{11}") || value.startsWith("55000000"), value);
+        }
+    }
+
+    @Test
+    @DisplayName("Luhn check accepts known test numbers and rejects a changed digit")
+    void luhn_shouldMatchKnownNumbers() {
+        assertTrue(PanGenerator.isLuhnValid("4111111111111111".toCharArray()));
+        assertTrue(PanGenerator.isLuhnValid("5500000000000004".toCharArray()));
+        assertFalse(PanGenerator.isLuhnValid("4111111111111112".toCharArray()));
+    }
+
+    @Test
+    @DisplayName("Refill fills the pool with free PANs in batches and skips hashes already in the DB")
+    void refill_shouldSkipTakenHashes() {
+        when(cardBulkRepository.findExistingPanHashes(any()))
+                .thenAnswer(inv -> Set.of(inv.<Collection<String>>getArgument(0).iterator().next()))
+                .thenReturn(Set.of());
+
+        allocator.refill();
+
+        assertEquals(50, allocator.available());
+        verify(cardBulkRepository, times(3)).findExistingPanHashes(any());
+
+        Set<String> hashes = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            PanAllocator.AllocatedPan pan = allocator.take();
+            assertTrue(hashes.add(pan.panHash()));
+            assertEquals(16 + 12 + 16, pan.encrypted().length);
+        }
+        assertEquals(0, allocator.available());
+        assertEquals(0.0, meterRegistry.get("bankcards.pan.pool.misses").counter().count());
+    }
+
+    @Test
+    @DisplayName("Empty pool still hands out a PAN and counts the miss")
+    void take_emptyPool_shouldPrepareOnTheSpot() {
+        PanAllocator.AllocatedPan pan = allocator.take();
+
+        assertEquals(4, pan.last4().length());
+        assertEquals(1.0, meterRegistry.get("bankcards.pan.pool.misses").counter().count());
+        verifyNoInteractions(cardBulkRepository);
+    }
+
+    @Test
+    @DisplayName("Invalid BIN ranges are rejected at startup")
+    void invalidBinRanges_shouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PanAllocator(panCryptoService, cardBulkRepository,
+                meterRegistry, "400999-400000", 16, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> new PanAllocator(panCryptoService, cardBulkRepository,
+                meterRegistry, "4000-4999", 16, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> new PanAllocator(panCryptoService, cardBulkRepository,
+                meterRegistry, " ", 16, 10, 10));
+    }
+}
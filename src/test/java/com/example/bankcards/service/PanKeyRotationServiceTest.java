@@ -0,0 +1,174 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.KeyRotationResponse;
+import com.example.bankcards.entity.PanKeyRotation;
+import com.example.bankcards.repository.CardBulkRepository;
+import com.example.bankcards.repository.CardBulkRepository.EncryptedPan;
+import com.example.bankcards.repository.PanKeyRotationRepository;
+import com.example.bankcards.util.PanCryptoServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyShort;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PanKeyRotationServiceTest {
+
+    private static final String KEY_V1 = "4NChuYrFKlRukuC57BOLpl6SaAk0gzs64+vAgdRALIE=";
+    private static final String KEY_V2 = "q1bB6WkmJZ0cEXp1fL3nR8yT2vU5oA7sD9gH0jK4mN0=";
+    private static final Instant NOW = Instant.parse("2026-10-18T10:00:00Z");
+
+    @Mock
+    private CardBulkRepository cardBulkRepository;
+    @Mock
+    private PanKeyRotationRepository rotationRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<List<byte[]>> reencrypted;
+
+    private final PanCryptoServiceImpl oldCrypto = new PanCryptoServiceImpl(KEY_V1, "");
+    private final Map<Short, PanKeyRotation> checkpoints = new HashMap<>();
+    private PanKeyRotationService service;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(rotationRepository.findById(anyShort()))
+                .thenAnswer(inv -> Optional.ofNullable(checkpoints.get(inv.<Short>getArgument(0))));
+        lenient().when(rotationRepository.save(any())).thenAnswer(inv -> {
+            PanKeyRotation rotation = inv.getArgument(0);
+            checkpoints.put(rotation.getTargetVersion(), rotation);
+            return rotation;
+        });
+        service = new PanKeyRotationService(cardBulkRepository, rotationRepository,
+                new PanCryptoServiceImpl(KEY_V1, "2:" + KEY_V2, (short) 2, ""),
+                transactionManager, Clock.fixed(NOW, ZoneOffset.UTC), 2, 0, 1_000, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should re-encrypt every chunk with the active key and checkpoint after each one")
+    void shouldRotateAllChunks() throws Exception {
+        EncryptedPan first = pan(1);
+        EncryptedPan second = pan(2);
+        EncryptedPan third = pan(3);
+        when(cardBulkRepository.findNotEncryptedWith(eq((short) 2), any(), eq(2)))
+                .thenReturn(List.of(first, second)).thenReturn(List.of(third)).thenReturn(List.of());
+        when(cardBulkRepository.updateEncrypted(anyList(), anyList(), eq((short) 2), eq(1_000L)))
+                .thenAnswer(inv -> ones(inv.<List<?>>getArgument(0).size()));
+
+        service.start();
+        KeyRotationResponse done = await();
+
+        assertEquals(KeyRotationResponse.Status.COMPLETED, done.status());
+        assertEquals(3, done.processed());
+        assertEquals(third.cardId(), done.lastCardId());
+        verify(cardBulkRepository).findNotEncryptedWith((short) 2, new UUID(0, 0), 2);
+        verify(cardBulkRepository).findNotEncryptedWith((short) 2, second.cardId(), 2);
+
+        verify(cardBulkRepository, times(2)).updateEncrypted(anyList(), reencrypted.capture(), eq((short) 2), eq(1_000L));
+        PanCryptoServiceImpl v2Only = new PanCryptoServiceImpl(KEY_V2, "");
+        for (byte[] encrypted : reencrypted.getAllValues().get(0)) {
+            // новый шифротекст читается ключом версии 2
+            v2Only.reencrypt(encrypted, (short) 1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should resume an unfinished rotation from the saved checkpoint")
+    void shouldResumeFromCheckpoint() throws Exception {
+        UUID lastCardId = UUID.randomUUID();
+        PanKeyRotation checkpoint = new PanKeyRotation((short) 2, NOW.minusSeconds(60));
+        checkpoint.advance(lastCardId, 10, NOW.minusSeconds(30));
+        checkpoints.put((short) 2, checkpoint);
+        when(cardBulkRepository.findNotEncryptedWith((short) 2, lastCardId, 2)).thenReturn(List.of());
+
+        service.resume();
+        KeyRotationResponse done = await();
+
+        assertEquals(KeyRotationResponse.Status.COMPLETED, done.status());
+        assertEquals(10, done.processed());
+        verify(cardBulkRepository, never()).updateEncrypted(anyList(), anyList(), anyShort(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should retry a chunk whose rows stay locked past lock_timeout")
+    void shouldRetryLockedChunk() throws Exception {
+        when(cardBulkRepository.findNotEncryptedWith(anyShort(), any(), anyInt()))
+                .thenReturn(List.of(pan(1))).thenReturn(List.of());
+        when(cardBulkRepository.updateEncrypted(anyList(), anyList(), anyShort(), anyLong()))
+                .thenThrow(new CannotAcquireLockException("lock timeout"))
+                .thenReturn(new int[]{1});
+
+        service.start();
+        KeyRotationResponse done = await();
+
+        assertEquals(KeyRotationResponse.Status.COMPLETED, done.status());
+        assertEquals(1, done.processed());
+        verify(cardBulkRepository, times(2)).updateEncrypted(anyList(), anyList(), anyShort(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should report NOT_STARTED and not resume anything when there is no checkpoint")
+    void shouldReportNotStarted() {
+        service.resume();
+
+        KeyRotationResponse status = service.status();
+
+        assertEquals(KeyRotationResponse.Status.NOT_STARTED, status.status());
+        assertNull(status.startedAt());
+        verifyNoInteractions(cardBulkRepository);
+    }
+
+    private KeyRotationResponse await() throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            KeyRotationResponse status = service.status();
+            if (status.status() != KeyRotationResponse.Status.RUNNING) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("rotation did not finish");
+    }
+
+    private EncryptedPan pan(int n) {
+        return new EncryptedPan(new UUID(0, n), oldCrypto.encrypt(String.format("4000%012d", n)), (short) 1);
+    }
+
+    private static int[] ones(int size) {
+        int[] counts = new int[size];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+}
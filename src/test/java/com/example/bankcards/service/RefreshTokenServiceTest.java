@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.InvalidRefreshTokenException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-18T10:00:00Z");
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+    @Mock
+    private UserRepository userRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID familyId = UUID.randomUUID();
+    private RefreshTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RefreshTokenService(refreshTokenRepository, userRepository,
+                Clock.fixed(NOW, ZoneOffset.UTC), Duration.ofDays(30).toMillis());
+    }
+
+    @Test
+    @DisplayName("Issued token is stored only as its SHA-256 with the configured expiry")
+    void issue_shouldStoreHashOnly() {
+        String token = service.issue(userId);
+
+        RefreshToken stored = captureSaved();
+        assertEquals(RefreshTokenService.hash(token), stored.getTokenHash());
+        assertNotEquals(token, stored.getTokenHash());
+        assertEquals(userId, stored.getUserId());
+        assertEquals(NOW.plus(Duration.ofDays(30)), stored.getExpiresAt());
+        assertNull(stored.getRevokedAt());
+    }
+
+    @Test
+    @DisplayName("Rotation revokes the presented token and issues a new one in the same family")
+    void rotate_shouldRevokeCurrentAndIssueInSameFamily() {
+        RefreshToken current = stored("old", NOW.plusSeconds(60));
+        User user = new User(userId, "alice", List.of(Role.USER));
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("old"))).thenReturn(Optional.of(current));
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+        RefreshTokenService.Rotation rotation = service.rotate("old");
+
+        assertSame(user, rotation.user());
+        assertEquals(NOW, current.getRevokedAt());
+        RefreshToken next = captureSaved();
+        assertEquals(familyId, next.getFamilyId());
+        assertEquals(RefreshTokenService.hash(rotation.refreshToken()), next.getTokenHash());
+    }
+
+    @Test
+    @DisplayName("Reusing a revoked token revokes the whole family")
+    void rotate_revokedToken_shouldRevokeFamily() {
+        RefreshToken current = stored("old", NOW.plusSeconds(60));
+        current.setRevokedAt(NOW.minusSeconds(10));
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("old"))).thenReturn(Optional.of(current));
+
+        assertThrows(InvalidRefreshTokenException.class, () -> service.rotate("old"));
+
+        verify(refreshTokenRepository).revokeFamily(familyId, NOW);
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Expired and unknown tokens are rejected without issuing a new one")
+    void rotate_expiredOrUnknown_shouldBeRejected() {
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("old")))
+                .thenReturn(Optional.of(stored("old", NOW)));
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("unknown")))
+                .thenReturn(Optional.empty());
+
+        assertThrows(InvalidRefreshTokenException.class, () -> service.rotate("old"));
+        assertThrows(InvalidRefreshTokenException.class, () -> service.rotate("unknown"));
+
+        verify(refreshTokenRepository, never()).save(any());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Logout revokes the family of the presented token")
+    void revoke_shouldRevokeFamily() {
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("old")))
+                .thenReturn(Optional.of(stored("old", NOW.plusSeconds(60))));
+
+        service.revoke("old");
+
+        verify(refreshTokenRepository).revokeFamily(familyId, NOW);
+    }
+
+    private RefreshToken stored(String token, Instant expiresAt) {
+        return new RefreshToken(UUID.randomUUID(), userId, familyId, RefreshTokenService.hash(token),
+                NOW.minusSeconds(3600), expiresAt);
+    }
+
+    private RefreshToken captureSaved() {
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceSnapshot;
+import com.example.bankcards.entity.LedgerEntry;
+import com.example.bankcards.entity.enums.LedgerEntryType;
+import com.example.bankcards.entity.enums.StatusCard;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardBalanceSnapshotRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferLedgerTest {
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+    @Mock
+    private CardBalanceSnapshotRepository snapshotRepository;
+    @Mock
+    private CardRepository cardRepository;
+
+    private final Instant now = Instant.parse("2026-10-18T10:00:00Z");
+    private final UUID ownerId = UUID.randomUUID();
+    private final UUID cardId = UUID.randomUUID();
+
+    private TransferLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new TransferLedger(ledgerEntryRepository, snapshotRepository, cardRepository,
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    @DisplayName("Should append a signed debit and a credit entry for one transfer in one call")
+    @SuppressWarnings("unchecked")
+    void shouldAppendDebitAndCreditEntries() {
+        UUID transferId = UUID.randomUUID();
+        UUID toCardId = UUID.randomUUID();
+
+        ledger.record(transferId, ownerId, cardId, new BigDecimal("70.00"), toCardId, new BigDecimal("30.00"),
+                new BigDecimal("30.00"));
+
+        ArgumentCaptor<List<LedgerEntry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerEntryRepository, times(1)).saveAll(captor.capture());
+
+        List<LedgerEntry> entries = captor.getValue();
+        assertEquals(2, entries.size());
+        assertEquals(LedgerEntryType.DEBIT, entries.get(0).getEntryType());
+        assertEquals(new BigDecimal("-30.00"), entries.get(0).getAmount());
+        assertEquals(cardId, entries.get(0).getCardId());
+        assertEquals(LedgerEntryType.CREDIT, entries.get(1).getEntryType());
+        assertEquals(new BigDecimal("30.00"), entries.get(1).getAmount());
+        assertEquals(transferId, entries.get(1).getTransferId());
+        assertEquals(now, entries.get(1).getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("Should compute balance from the nearest snapshot plus the ledger tail")
+    void shouldComputeBalanceFromSnapshotAndTail() {
+        Instant at = now.minusSeconds(60);
+        CardBalanceSnapshot snapshot = new CardBalanceSnapshot(cardId, 42L, new BigDecimal("100.00"), at.minusSeconds(600));
+
+        when(snapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByLedgerSeqDesc(cardId, at))
+                .thenReturn(Optional.of(snapshot));
+        when(ledgerEntryRepository.sumAmountsAfter(cardId, 42L, at)).thenReturn(new BigDecimal("-25.50"));
+
+        assertEquals(new BigDecimal("74.50"), ledger.balanceAt(cardId, at));
+
+        verify(ledgerEntryRepository, never()).findFirstByCardIdOrderBySeqAsc(any());
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    @DisplayName("Should derive the opening balance from the first entry when there is no snapshot yet")
+    void shouldUseOpeningBalanceWhenNoSnapshot() {
+        LedgerEntry first = new LedgerEntry(UUID.randomUUID(), cardId, ownerId, LedgerEntryType.CREDIT,
+                new BigDecimal("50.00"), new BigDecimal("250.00"), now.minusSeconds(3600));
+
+        when(snapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByLedgerSeqDesc(cardId, now))
+                .thenReturn(Optional.empty());
+        when(ledgerEntryRepository.findFirstByCardIdOrderBySeqAsc(cardId)).thenReturn(Optional.of(first));
+        when(ledgerEntryRepository.sumAmountsAfter(cardId, 0L, now)).thenReturn(new BigDecimal("30.00"));
+
+        assertEquals(new BigDecimal("230.00"), ledger.balanceAt(cardId, now));
+    }
+
+    @Test
+    @DisplayName("Should return the current balance for a card without transfers")
+    void shouldReturnCurrentBalanceWhenNoLedgerEntries() {
+        Card card = new Card(cardId, ownerId, new byte[]{}, "hash", "1234",
+                (short) 12, (short) 2030, StatusCard.ACTIVE, new BigDecimal("10.00"));
+
+        when(snapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByLedgerSeqDesc(cardId, now))
+                .thenReturn(Optional.empty());
+        when(ledgerEntryRepository.findFirstByCardIdOrderBySeqAsc(cardId)).thenReturn(Optional.empty());
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+
+        assertEquals(new BigDecimal("10.00"), ledger.balanceAt(cardId, now));
+    }
+
+    @Test
+    @DisplayName("Should throw CardNotFoundException for an unknown card")
+    void shouldThrowWhenCardIsUnknown() {
+        when(snapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByLedgerSeqDesc(cardId, now))
+                .thenReturn(Optional.empty());
+        when(ledgerEntryRepository.findFirstByCardIdOrderBySeqAsc(cardId)).thenReturn(Optional.empty());
+        when(cardRepository.findById(cardId)).thenReturn(Optional.empty());
+
+        assertThrows(CardNotFoundException.class, () -> ledger.balanceAt(cardId, now));
+    }
+}
@@ -1,39 +1,66 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ReadYourWrites;
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.StatusCard;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferLegView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class TransferServiceTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-10-18T10:00:00Z"), ZoneOffset.UTC);
+
     @Mock
     public CardRepository cardRepository;
-    @InjectMocks
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private TransferLedger ledger;
+    @Mock
+    private CardViewCache cardViewCache;
+
     private TransferService transferService;
+    private SimpleMeterRegistry meterRegistry;
 
     UUID ownerId = UUID.randomUUID();
-    UUID fromCardId = UUID.randomUUID();
-    UUID toCardId = UUID.randomUUID();
+    // fromCardId < toCardId в порядке блокировок, чтобы порядок запросов в тестах был детерминированным
+    UUID fromCardId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    UUID toCardId = UUID.fromString("00000000-0000-0000-0000-000000000002");
 
     Card fromCard;
     Card toCard;
@@ -46,14 +73,21 @@ class TransferServiceTest {
                 (short) 12, (short) 2026, StatusCard.ACTIVE, BigDecimal.valueOf(200));
         toCard = new Card(toCardId, ownerId, new byte[]{}, "1020", "5732",
                 (short) 12, (short) 2026, StatusCard.ACTIVE, BigDecimal.valueOf(0));
+
+        meterRegistry = new SimpleMeterRegistry();
+        LockingTransactionExecutor lockingExecutor =
+                new LockingTransactionExecutor(transactionManager, meterRegistry, 3, 0, 0);
+        transferService = new TransferService(cardRepository, lockingExecutor,
+                new CardStripedSequencer(true, 16, 1000, 16, meterRegistry), ledger, cardViewCache,
+                new ReadYourWrites("", 0, 0), meterRegistry, TransferMode.JPA, CLOCK);
     }
 
     @Test
     @DisplayName("Should transfer money successfully between user's cards")
     void shouldTransferMoneySuccessfullyBetweenUsersCards() {
         TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
-        Mockito.when(cardRepository.findByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
-        Mockito.when(cardRepository.findByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
 
         transferService.transfer(ownerId, req);
 
@@ -81,10 +115,36 @@ class TransferServiceTest {
         assertEquals(0, fromCardUpdate.getBalance().compareTo(BigDecimal.valueOf(100)));
         assertEquals(0, toCardUpdate.getBalance().compareTo(BigDecimal.valueOf(100)));
 
-        verify(cardRepository).findByIdAndOwnerId(fromCardId, ownerId);
-        verify(cardRepository).findByIdAndOwnerId(toCardId, ownerId);
+        verify(cardRepository).findForUpdateByIdAndOwnerId(fromCardId, ownerId);
+        verify(cardRepository).findForUpdateByIdAndOwnerId(toCardId, ownerId);
         verifyNoMoreInteractions(cardRepository);
+
+        verify(ledger).record(any(UUID.class), eq(ownerId),
+                eq(fromCardId), eq(fromCardUpdate.getBalance()),
+                eq(toCardId), eq(toCardUpdate.getBalance()),
+                eq(req.amount()));
+        verify(cardViewCache).evict(ownerId, fromCardId);
+        verify(cardViewCache).evict(ownerId, toCardId);
+    }
+    @Test
+    @DisplayName("Transfers are timed per outcome, the failure tag is the exception type")
+    void transferTimer_shouldTagOutcome() {
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+
+        transferService.transfer(ownerId, new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(10)));
+        transferService.transfer(ownerId, new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(10)));
+        assertThrows(InvalidTransferAmountException.class,
+                () -> transferService.transfer(ownerId, new TransferRequest(fromCardId, toCardId, BigDecimal.ZERO)));
+
+        assertEquals(2, transferCount("success"));
+        assertEquals(1, transferCount("InvalidTransferAmountException"));
+    }
+
+    private long transferCount(String outcome) {
+        return meterRegistry.get("bankcards.transfer").tag("mode", "jpa").tag("outcome", outcome).timer().count();
     }
+
     @Test
     @DisplayName("Should throw exception when amount is less than zero")
     void shouldThrowExceptionWhenAmountIsLessThanZero() {
@@ -122,7 +182,7 @@ class TransferServiceTest {
     void shouldThrowExceptionWhenFromCardIsNotFoundById(){
         TransferRequest  req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
 
-        Mockito.when(cardRepository.findByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.empty());
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.empty());
 
         CardNotFoundException ex = assertThrows(CardNotFoundException.class, () -> transferService.transfer(ownerId, req));
         assertEquals("Card not found", ex.getMessage());
@@ -133,8 +193,8 @@ class TransferServiceTest {
     void shouldThrowExceptionWhenToCardIsNotFoundById(){
         TransferRequest  req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
 
-        Mockito.when(cardRepository.findByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
-        Mockito.when(cardRepository.findByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.empty());
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.empty());
 
         CardNotFoundException ex = assertThrows(CardNotFoundException.class, () -> transferService.transfer(ownerId, req));
         assertEquals("Card not found", ex.getMessage());
@@ -146,8 +206,8 @@ class TransferServiceTest {
         TransferRequest  req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
 
         fromCard.setStatus(StatusCard.BLOCKED);
-        Mockito.when(cardRepository.findByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
-        Mockito.when(cardRepository.findByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
 
         CardNotActiveException ex = assertThrows(CardNotActiveException.class, () -> transferService.transfer(ownerId, req));
         assertEquals("Card is not active: **** **** **** " + fromCard.getPanLastFourNumber(), ex.getMessage());
@@ -159,8 +219,8 @@ class TransferServiceTest {
         TransferRequest  req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
 
         toCard.setStatus(StatusCard.EXPIRED);
-        Mockito.when(cardRepository.findByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
-        Mockito.when(cardRepository.findByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
 
         CardNotActiveException ex = assertThrows(CardNotActiveException.class, () -> transferService.transfer(ownerId, req));
         assertEquals("Card is not active: **** **** **** " + toCard.getPanLastFourNumber(), ex.getMessage());
@@ -171,11 +231,249 @@ class TransferServiceTest {
         void shouldFailTransferWhenFromCardHasInsufficientFunds(){
         TransferRequest  req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(1000));
 
-        Mockito.when(cardRepository.findByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
-        Mockito.when(cardRepository.findByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
 
         InsufficientFundsException ex = assertThrows(InsufficientFundsException.class, () -> transferService.transfer(ownerId, req));
         assertEquals("Not enough money to card: **** **** **** " + fromCard.getPanLastFourNumber(), ex.getMessage());
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Should lock cards in a fixed order regardless of transfer direction")
+    void shouldLockCardsInFixedOrderRegardlessOfDirection() {
+        TransferRequest req = new TransferRequest(toCardId, fromCardId, BigDecimal.valueOf(10));
+        toCard.setBalance(BigDecimal.valueOf(10));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+
+        transferService.transfer(ownerId, req);
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findForUpdateByIdAndOwnerId(fromCardId, ownerId);
+        inOrder.verify(cardRepository).findForUpdateByIdAndOwnerId(toCardId, ownerId);
+        assertEquals(0, toCard.getBalance().compareTo(BigDecimal.ZERO));
+        assertEquals(0, fromCard.getBalance().compareTo(BigDecimal.valueOf(210)));
+    }
+
+    @Test
+    @DisplayName("Should retry transfer in a new transaction after a deadlock")
+    void shouldRetryTransferAfterDeadlock() {
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"))
+                .thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+
+        transferService.transfer(ownerId, req);
+
+        verify(cardRepository, times(2)).findForUpdateByIdAndOwnerId(fromCardId, ownerId);
+        verify(transactionManager, times(2)).getTransaction(any());
+        assertEquals(0, fromCard.getBalance().compareTo(BigDecimal.valueOf(100)));
+        assertEquals(0, toCard.getBalance().compareTo(BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    @DisplayName("Should give up with TransferLockTimeoutException when locks keep failing")
+    void shouldFailWithLockTimeoutWhenRetriesAreExhausted() {
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId))
+                .thenThrow(new PessimisticLockingFailureException("lock timeout"));
+
+        assertThrows(TransferLockTimeoutException.class, () -> transferService.transfer(ownerId, req));
+
+        verify(cardRepository, times(3)).findForUpdateByIdAndOwnerId(fromCardId, ownerId);
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+
+    @Test
+    @DisplayName("Should skip the transfer when the claim was already taken by an earlier request")
+    void shouldSkipTransferWhenClaimIsRejected() {
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+
+        UUID transferId = transferService.transfer(ownerId, req, id -> false);
+
+        assertNull(transferId);
+        verifyNoInteractions(cardRepository, ledger);
+    }
+
+    @Test
+    @DisplayName("Should record the ledger under the claimed transfer id")
+    void shouldRecordLedgerUnderClaimedTransferId() {
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+        UUID[] claimed = new UUID[1];
+
+        UUID transferId = transferService.transfer(ownerId, req, id -> {
+            claimed[0] = id;
+            return true;
+        });
+
+        assertEquals(claimed[0], transferId);
+        verify(ledger).record(eq(transferId), eq(ownerId), eq(fromCardId), any(), eq(toCardId), any(), eq(req.amount()));
+    }
+
+    @Test
+    @DisplayName("SQL mode: should transfer with a single conditional update")
+    void sqlMode_shouldTransferWithSingleStatement() {
+        TransferService sqlTransferService = sqlModeService();
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        Mockito.when(cardRepository.transferAtomically(ownerId, fromCardId, toCardId, req.amount(), (short) 2026, (short) 10))
+                .thenReturn(List.of(leg(fromCard, true), leg(toCard, true)));
+
+        sqlTransferService.transfer(ownerId, req);
+
+        verify(cardRepository).transferAtomically(ownerId, fromCardId, toCardId, req.amount(), (short) 2026, (short) 10);
+        verifyNoMoreInteractions(cardRepository);
+        verify(cardViewCache).evict(ownerId, fromCardId);
+        verify(cardViewCache).evict(ownerId, toCardId);
+        verify(ledger).record(any(UUID.class), eq(ownerId),
+                eq(fromCardId), eq(BigDecimal.valueOf(100)),
+                eq(toCardId), eq(BigDecimal.valueOf(100)),
+                eq(req.amount()));
+    }
+
+    @Test
+    @DisplayName("SQL mode: should throw exception when a card is not found")
+    void sqlMode_shouldThrowExceptionWhenCardIsNotFound() {
+        TransferService sqlTransferService = sqlModeService();
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        Mockito.when(cardRepository.transferAtomically(ownerId, fromCardId, toCardId, req.amount(), (short) 2026, (short) 10))
+                .thenReturn(List.of(leg(fromCard, false)));
+
+        assertThrows(CardNotFoundException.class, () -> sqlTransferService.transfer(ownerId, req));
+    }
+
+    @Test
+    @DisplayName("SQL mode: should fail if TO card is not ACTIVE")
+    void sqlMode_shouldFailWhenToCardIsNotActive() {
+        TransferService sqlTransferService = sqlModeService();
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        toCard.setStatus(StatusCard.BLOCKED);
+        Mockito.when(cardRepository.transferAtomically(ownerId, fromCardId, toCardId, req.amount(), (short) 2026, (short) 10))
+                .thenReturn(List.of(leg(fromCard, false), leg(toCard, false)));
+
+        CardNotActiveException ex = assertThrows(CardNotActiveException.class, () -> sqlTransferService.transfer(ownerId, req));
+        assertEquals("Card is not active: **** **** **** " + toCard.getPanLastFourNumber(), ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("SQL mode: should fail if FROM card has insufficient funds")
+    void sqlMode_shouldFailWhenFromCardHasInsufficientFunds() {
+        TransferService sqlTransferService = sqlModeService();
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(1000));
+        Mockito.when(cardRepository.transferAtomically(ownerId, fromCardId, toCardId, req.amount(), (short) 2026, (short) 10))
+                .thenReturn(List.of(leg(toCard, false), leg(fromCard, false)));
+
+        InsufficientFundsException ex = assertThrows(InsufficientFundsException.class, () -> sqlTransferService.transfer(ownerId, req));
+        assertEquals("Not enough money to card: **** **** **** " + fromCard.getPanLastFourNumber(), ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should reject a card past its expiry month even if the sweeper has not marked it EXPIRED yet")
+    void shouldFailWhenCardIsExpired() {
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        fromCard.setExpiryMonth((short) 9);
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(fromCardId, ownerId)).thenReturn(Optional.of(fromCard));
+        Mockito.when(cardRepository.findForUpdateByIdAndOwnerId(toCardId, ownerId)).thenReturn(Optional.of(toCard));
+
+        CardExpiredException ex = assertThrows(CardExpiredException.class, () -> transferService.transfer(ownerId, req));
+        assertEquals("Card is expired: **** **** **** " + fromCard.getPanLastFourNumber(), ex.getMessage());
+        verify(cardRepository, never()).save(any());
+        verifyNoInteractions(ledger);
+    }
+
+    @Test
+    @DisplayName("SQL mode: should report an expired TO card when the conditional update was not applied")
+    void sqlMode_shouldFailWhenToCardIsExpired() {
+        TransferService sqlTransferService = sqlModeService();
+        TransferRequest req = new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100));
+        toCard.setExpiryYear((short) 2025);
+        Mockito.when(cardRepository.transferAtomically(ownerId, fromCardId, toCardId, req.amount(), (short) 2026, (short) 10))
+                .thenReturn(List.of(leg(fromCard, false), leg(toCard, false)));
+
+        assertThrows(CardExpiredException.class, () -> sqlTransferService.transfer(ownerId, req));
+    }
+
+    @Test
+    @DisplayName("Card stays valid through the whole expiry month")
+    void isExpired_shouldTreatExpiryMonthAsValid() {
+        YearMonth current = YearMonth.of(2026, 10);
+
+        assertFalse(TransferService.isExpired((short) 2026, (short) 10, current));
+        assertFalse(TransferService.isExpired((short) 2027, (short) 1, current));
+        assertTrue(TransferService.isExpired((short) 2026, (short) 9, current));
+        assertTrue(TransferService.isExpired((short) 2025, (short) 12, current));
+    }
+
+    private TransferService sqlModeService() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LockingTransactionExecutor lockingExecutor =
+                new LockingTransactionExecutor(transactionManager, meterRegistry, 3, 0, 0);
+        return new TransferService(cardRepository, lockingExecutor,
+                new CardStripedSequencer(true, 16, 1000, 16, meterRegistry), ledger, cardViewCache,
+                new ReadYourWrites("", 0, 0), meterRegistry, TransferMode.SQL, CLOCK);
+    }
+
+    private static TransferLegView leg(Card card, boolean applied) {
+        return new TransferLegView() {
+            public UUID getId() { return card.getId(); }
+            public String getStatus() { return card.getStatus().name(); }
+            public BigDecimal getBalance() { return card.getBalance(); }
+            public String getPanLastFour() { return card.getPanLastFourNumber(); }
+            public Short getExpiryYear() { return card.getExpiryYear(); }
+            public Short getExpiryMonth() { return card.getExpiryMonth(); }
+            public Boolean getApplied() { return applied; }
+        };
+    }
+
+    @Test
+    @DisplayName("Batch BEST_EFFORT: should apply valid transfers and report failed ones")
+    void batchBestEffort_shouldApplyValidTransfersAndReportFailures() {
+        SimpleTransactionStatus txStatus = new SimpleTransactionStatus();
+        Mockito.when(transactionManager.getTransaction(any())).thenReturn(txStatus);
+        Mockito.when(cardRepository.findAllForUpdateByIdInAndOwnerId(Set.of(fromCardId, toCardId), ownerId))
+                .thenReturn(List.of(fromCard, toCard));
+
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(150)),
+                new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(100)),
+                new TransferRequest(toCardId, fromCardId, BigDecimal.valueOf(50)));
+
+        BatchTransferResponse response = transferService.transferBatch(ownerId, transfers, BatchTransferRequest.Mode.BEST_EFFORT);
+
+        assertEquals(2, response.applied());
+        assertEquals(1, response.failed());
+        assertEquals(BatchTransferResponse.Status.FAILED, response.results().get(1).status());
+        assertEquals("Not enough money to card: **** **** **** " + fromCard.getPanLastFourNumber(),
+                response.results().get(1).message());
+        assertEquals(0, fromCard.getBalance().compareTo(BigDecimal.valueOf(100)));
+        assertEquals(0, toCard.getBalance().compareTo(BigDecimal.valueOf(100)));
+        assertFalse(txStatus.isRollbackOnly());
+        verify(ledger, times(2)).record(any(), any(), any(), any(), any(), any(), any());
+        verify(cardRepository, times(1)).findAllForUpdateByIdInAndOwnerId(any(), eq(ownerId));
+    }
+
+    @Test
+    @DisplayName("Batch ALL_OR_NOTHING: should roll back the whole batch on the first failure")
+    void batchAllOrNothing_shouldRollBackOnFirstFailure() {
+        SimpleTransactionStatus txStatus = new SimpleTransactionStatus();
+        Mockito.when(transactionManager.getTransaction(any())).thenReturn(txStatus);
+        Mockito.when(cardRepository.findAllForUpdateByIdInAndOwnerId(Set.of(fromCardId, toCardId), ownerId))
+                .thenReturn(List.of(fromCard));
+
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(fromCardId, fromCardId, BigDecimal.valueOf(10)),
+                new TransferRequest(fromCardId, toCardId, BigDecimal.valueOf(10)));
+
+        BatchTransferResponse response = transferService.transferBatch(ownerId, transfers, BatchTransferRequest.Mode.ALL_OR_NOTHING);
+
+        assertTrue(txStatus.isRollbackOnly());
+        verifyNoInteractions(ledger);
+        assertEquals(0, response.applied());
+        assertEquals(1, response.failed());
+        assertEquals(BatchTransferResponse.Status.FAILED, response.results().get(0).status());
+        assertEquals(BatchTransferResponse.Status.ROLLED_BACK, response.results().get(1).status());
+        verify(cardRepository, never()).save(any(Card.class));
+    }
+}
@@ -3,6 +3,7 @@ package com.example.bankcards.service;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserPrincipal;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -37,6 +38,7 @@ class UserServiceTest {
         UUID userId = UUID.randomUUID();
 
         User user = mock(User.class);
+        when(user.getId()).thenReturn(userId);
         when(user.getUsername()).thenReturn(username);
         when(user.getHashPassword()).thenReturn(hashPassword);
         when(user.getRoles()).thenReturn(List.of(Role.USER, Role.ADMIN));
@@ -50,6 +52,7 @@ class UserServiceTest {
         assertNotNull(details);
         assertEquals(username, details.getUsername());
         assertEquals(hashPassword, details.getPassword());
+        assertEquals(userId, assertInstanceOf(UserPrincipal.class, details).getId());
 
         Set<String> authorities = details.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
@@ -79,37 +82,23 @@ class UserServiceTest {
     }
 
     @Test
-    void getIdByUsername_returnsUserId() {
+    void updatePassword_storesNewHashAndReturnsPrincipalWithIt() {
         // given
-        String username = "bob";
+        String username = "carol";
         UUID userId = UUID.randomUUID();
-
-        User user = mock(User.class);
-        when(user.getId()).thenReturn(userId);
+        User user = new User(userId, username, List.of(Role.USER));
+        user.setHashPassword("$2a$10$old");
 
         when(userRepository.findByUsername(username)).thenReturn(java.util.Optional.of(user));
 
+        UserDetails details = new UserPrincipal(userId, username, "$2a$10$old", List.of());
+
         // when
-        UUID result = userService.getIdByUsername(username);
+        UserDetails updated = userService.updatePassword(details, "$2a$12$new");
 
         // then
-        assertEquals(userId, result);
-
-        verify(userRepository).findByUsername(username);
-        verifyNoMoreInteractions(userRepository);
-    }
-
-    @Test
-    void getIdByUsername_userNotFound_throwsUsernameNotFoundException() {
-        // given
-        String username = "nobody";
-        when(userRepository.findByUsername(username)).thenReturn(java.util.Optional.empty());
-
-        // when + then
-        assertThrows(UsernameNotFoundException.class,
-                () -> userService.getIdByUsername(username));
-
-        verify(userRepository).findByUsername(username);
-        verifyNoMoreInteractions(userRepository);
+        assertEquals("$2a$12$new", user.getHashPassword());
+        assertEquals("$2a$12$new", updated.getPassword());
+        assertEquals(userId, ((UserPrincipal) updated).getId());
     }
 }
@@ -0,0 +1,135 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PanCryptoServiceImplTest {
+
+    private static final String KEY = "4NChuYrFKlRukuC57BOLpl6SaAk0gzs64+vAgdRALIE=";
+    private static final String KEY_V2 = "q1bB6WkmJZ0cEXp1fL3nR8yT2vU5oA7sD9gH0jK4mN0=";
+    private static final String PEPPER = "pepper";
+    private static final String PAN = "4000001234567899";
+
+    private final PanCryptoServiceImpl service = new PanCryptoServiceImpl(KEY, PEPPER);
+
+    @Test
+    @DisplayName("Hash must stay equal to SHA-256(pan + pepper) so stored pan_hash values keep matching")
+    void hash_shouldMatchStoredFormat() throws Exception {
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest((PAN + PEPPER).getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Base64.getEncoder().encodeToString(expected), service.hash(PAN));
+        assertEquals(service.hash(PAN), service.hash(PAN.toCharArray()));
+    }
+
+    @Test
+    @DisplayName("Ciphertext is iv || ciphertext || tag and decrypts with a fresh IV every time")
+    void encrypt_shouldBeDecryptableWithFreshIv() throws Exception {
+        byte[] first = service.encrypt(PAN);
+        byte[] second = service.encrypt(PAN.toCharArray());
+
+        assertEquals(PAN, decrypt(first));
+        assertEquals(PAN, decrypt(second));
+        assertFalse(Arrays.equals(Arrays.copyOf(first, 12), Arrays.copyOf(second, 12)));
+    }
+
+    @Test
+    @DisplayName("Batch methods return results in input order")
+    void batch_shouldKeepOrder() throws Exception {
+        List<char[]> pans = List.of("4000001234567899".toCharArray(), "5500000000000004".toCharArray());
+
+        List<byte[]> encrypted = service.encryptAll(pans);
+        List<String> hashes = service.hashAll(pans);
+
+        assertEquals("4000001234567899", decrypt(encrypted.get(0)));
+        assertEquals("5500000000000004", decrypt(encrypted.get(1)));
+        assertEquals(List.of(service.hash("4000001234567899"), service.hash("5500000000000004")), hashes);
+    }
+
+    @Test
+    @DisplayName("Per-thread engines give the same results under concurrent use")
+    void concurrentUse_shouldNotMixState() throws Exception {
+        List<String> pans = IntStream.range(0, 2_000)
+                .mapToObj(i -> String.format("4000%012d", i))
+                .toList();
+        List<String> expected = pans.stream().map(service::hash).toList();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Boolean>> tasks = IntStream.range(0, 4).<Callable<Boolean>>mapToObj(t -> () -> {
+                for (int i = 0; i < pans.size(); i++) {
+                    if (!expected.get(i).equals(service.hash(pans.get(i))) || !pans.get(i).equals(decrypt(service.encrypt(pans.get(i))))) {
+                        return false;
+                    }
+                }
+                return true;
+            }).toList();
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Non-digit or too long PAN is rejected and does not break the thread's engine")
+    void invalidPan_shouldBeRejected() {
+        String expected = service.hash(PAN);
+
+        assertThrows(IllegalArgumentException.class, () -> service.hash("4000 0012"));
+        assertThrows(IllegalArgumentException.class, () -> service.encrypt("1".repeat(20)));
+
+        assertEquals(expected, service.hash(PAN));
+    }
+
+    @Test
+    @DisplayName("Re-encryption decrypts with the old key version and encrypts with the active one")
+    void reencrypt_shouldMoveToActiveKey() throws Exception {
+        PanCryptoServiceImpl rotated = new PanCryptoServiceImpl(KEY, "2:" + KEY_V2, (short) 2, PEPPER);
+        byte[] old = service.encrypt(PAN);
+
+        byte[] reencrypted = rotated.reencrypt(old, (short) 1);
+
+        assertEquals((short) 2, rotated.activeKeyVersion());
+        assertEquals(PAN, decrypt(reencrypted, KEY_V2));
+        assertEquals(PAN, decrypt(rotated.reencrypt(reencrypted, (short) 2), KEY_V2));
+        assertEquals(service.hash(PAN), rotated.hash(PAN));
+    }
+
+    @Test
+    @DisplayName("Unknown key versions are rejected at startup and on re-encryption")
+    void unknownKeyVersion_shouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PanCryptoServiceImpl(KEY, "", (short) 2, PEPPER));
+        assertThrows(IllegalArgumentException.class, () -> service.reencrypt(service.encrypt(PAN), (short) 3));
+    }
+
+    private static String decrypt(byte[] encrypted) throws Exception {
+        return decrypt(encrypted, KEY);
+    }
+
+    private static String decrypt(byte[] encrypted, String key) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(key), "AES"),
+                new GCMParameterSpec(128, encrypted, 0, 12));
+        return new String(cipher.doFinal(encrypted, 12, encrypted.length - 12), StandardCharsets.UTF_8);
+    }
+}